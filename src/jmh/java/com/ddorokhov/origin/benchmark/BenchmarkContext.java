@@ -0,0 +1,39 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.OriginApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.stream.Stream;
+
+/**
+ * Starts the application for benchmarks that need real beans: a fresh in-memory H2 per fork,
+ * a random server port, no SQL or request logging and, unless configured, no hot key snapshot.
+ */
+final class BenchmarkContext {
+    private static final String SNAPSHOT_ENABLED = "origin.cache.snapshot.enabled";
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * @param properties additional {@code key=value} properties
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        // Passed as command line arguments: default properties would lose to application.yaml
+        Stream<String> snapshot = Stream.of(properties).anyMatch(property -> property.startsWith(SNAPSHOT_ENABLED))
+                ? Stream.empty()
+                : Stream.of(SNAPSHOT_ENABLED + "=false");
+        Stream<String> arguments = Stream.of(Stream.of(
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "spring.h2.console.enabled=false",
+                        "logging.level.root=WARN"),
+                snapshot,
+                Stream.of(properties)).flatMap(stream -> stream);
+        return new SpringApplicationBuilder(OriginApplication.class)
+                .run(arguments.map(property -> "--" + property).toArray(String[]::new));
+    }
+}
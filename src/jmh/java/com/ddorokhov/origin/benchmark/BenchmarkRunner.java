@@ -0,0 +1,34 @@
+package com.ddorokhov.origin.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected benchmarks once per thread count, reporting throughput and allocation rate.
+ * <p>
+ * Arguments: an include regex (default {@code .*}) and a comma-separated list of thread
+ * counts (default {@code 1,4,16}). Results are written to {@code target/jmh-<threads>t.json}.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*";
+        String threadCounts = args.length > 1 ? args[1] : "1,4,16";
+
+        for (String threadCount : threadCounts.split(",")) {
+            int threads = Integer.parseInt(threadCount.trim());
+            Options options = new OptionsBuilder()
+                    .include(BenchmarkRunner.class.getPackageName() + "\\..*" + include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-" + threads + "t.json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent creates of new URLs, each committed on its own or group committed
+ * ({@code groupCommit=true}). Group commit only pays off with many concurrent callers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class GroupCommitBenchmark {
+
+    @Param({"false", "true"})
+    public boolean groupCommit;
+
+    private final AtomicLong counter = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private UrlService urlService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkContext.start("origin.write.group-commit.enabled=" + groupCommit);
+        urlService = context.getBean(UrlService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<UrlEntity> createOrGetNew() {
+        return urlService.createOrGet("https://bench.example.com/campaign?id=" + counter.getAndIncrement());
+    }
+}
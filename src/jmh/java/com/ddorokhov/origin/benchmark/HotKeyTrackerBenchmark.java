@@ -0,0 +1,75 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.cache.HotKeyTracker;
+import com.ddorokhov.origin.cache.UrlCacheProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost the {@link HotKeyTracker} adds to every found redirect lookup.
+ * <p>
+ * With {@code codes=1} every thread records the same viral code, the worst case for contention
+ * on its sketch counters; with {@code codes=100000} the lookups are spread Zipf-like over many
+ * codes, so most fall below the top-K threshold and a few keep competing for the heap.
+ * {@code recordContended} runs on eight threads, where every counted lookup of the viral code
+ * writes the same sketch counters; {@code sampleRate=16} counts one lookup in sixteen.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotKeyTrackerBenchmark {
+    private static final int SAMPLES = 1 << 16;
+
+    @Param({"1", "100000"})
+    public int codes;
+
+    @Param({"1", "16"})
+    public int sampleRate;
+
+    private String[] samples;
+    private HotKeyTracker tracker;
+
+    @Setup
+    public void setUp() {
+        String[] keys = new String[codes];
+        for (int i = 0; i < codes; i++) {
+            keys[i] = String.format("c%05d", i);
+        }
+        samples = new String[SAMPLES];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < SAMPLES; i++) {
+            // Zipf-like: the rank falls off with the inverse of a uniform draw
+            samples[i] = keys[(int) Math.min(codes - 1, 1 / random.nextDouble(1e-5, 1) - 1)];
+        }
+        UrlCacheProperties.HotKeys properties = new UrlCacheProperties.HotKeys();
+        properties.setSampleRate(sampleRate);
+        tracker = new HotKeyTracker(properties);
+    }
+
+    @Benchmark
+    public void record() {
+        tracker.record(samples[ThreadLocalRandom.current().nextInt(SAMPLES)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordContended() {
+        tracker.record(samples[ThreadLocalRandom.current().nextInt(SAMPLES)]);
+    }
+}
@@ -0,0 +1,142 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.UrlHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup of long original URLs in a file-backed H2 table indexed on the full URL text
+ * ({@code TEXT}, the layout before the hash column) versus on its 128-bit hash ({@code HASH}).
+ * <p>
+ * The on-disk size of each table, indexes included, is printed after it is populated. For the
+ * 10M-row comparison run with {@code -Dbenchmark.include=OriginalUrlIndex} and pass
+ * {@code -p rows=10000000} through JMH, which needs several GB of free disk under {@code target/}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OriginalUrlIndexBenchmark {
+    private static final int INSERT_BATCH = 10_000;
+
+    @Param({"TEXT", "HASH"})
+    public String layout;
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"1500"})
+    public int urlLength;
+
+    String jdbcUrl;
+
+    @Setup(Level.Trial)
+    public void populate() throws SQLException {
+        jdbcUrl = "jdbc:h2:./target/benchmark/original-url-" + layout.toLowerCase() + ";DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS url_layout");
+            statement.execute(switch (layout) {
+                case "TEXT" -> "CREATE TABLE url_layout (short_code VARCHAR(16) PRIMARY KEY, original_url VARCHAR(4096) NOT NULL UNIQUE)";
+                case "HASH" -> "CREATE TABLE url_layout (short_code VARCHAR(16) PRIMARY KEY, original_url VARCHAR(4096) NOT NULL, " +
+                        "original_url_hash VARBINARY(16) NOT NULL UNIQUE)";
+                default -> throw new IllegalArgumentException("Unknown layout " + layout);
+            });
+
+            connection.setAutoCommit(false);
+            String insert = layout.equals("TEXT")
+                    ? "INSERT INTO url_layout (short_code, original_url) VALUES (?, ?)"
+                    : "INSERT INTO url_layout (short_code, original_url, original_url_hash) VALUES (?, ?, ?)";
+            try (PreparedStatement prepared = connection.prepareStatement(insert)) {
+                for (int i = 0; i < rows; i++) {
+                    String url = url(i);
+                    prepared.setString(1, Integer.toString(i, 36));
+                    prepared.setString(2, url);
+                    if (layout.equals("HASH")) prepared.setBytes(3, UrlHasher.hash(url));
+                    prepared.addBatch();
+                    if ((i + 1) % INSERT_BATCH == 0) {
+                        prepared.executeBatch();
+                        connection.commit();
+                    }
+                }
+                prepared.executeBatch();
+                connection.commit();
+            }
+
+            try (ResultSet size = statement.executeQuery("SELECT DISK_SPACE_USED('URL_LAYOUT')")) {
+                size.next();
+                System.out.printf("%n%s layout, %d rows: %,d bytes on disk%n", layout, rows, size.getLong(1));
+            }
+        }
+    }
+
+    @Benchmark
+    public String lookup(Lookup lookup) throws SQLException {
+        String url = url(ThreadLocalRandom.current().nextInt(rows));
+        PreparedStatement query = lookup.query;
+        if (layout.equals("TEXT")) {
+            query.setString(1, url);
+        } else {
+            query.setBytes(1, UrlHasher.hash(url));
+        }
+        try (ResultSet resultSet = query.executeQuery()) {
+            while (resultSet.next()) {
+                if (resultSet.getString(2).equals(url)) return resultSet.getString(1);
+            }
+            return null;
+        }
+    }
+
+    String url(int i) {
+        StringBuilder url = new StringBuilder(urlLength)
+                .append("https://www.originenergy.com.au/campaign/").append(i).append("?utm_content=");
+        while (url.length() < urlLength) {
+            url.append((char) ('a' + (url.length() * 31 + i) % 26));
+        }
+        return url.toString();
+    }
+
+    /**
+     * One connection and prepared lookup per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Lookup {
+        Connection connection;
+        PreparedStatement query;
+
+        @Setup(Level.Trial)
+        public void open(OriginalUrlIndexBenchmark benchmark) throws SQLException {
+            connection = DriverManager.getConnection(benchmark.jdbcUrl, "sa", "");
+            query = connection.prepareStatement(benchmark.layout.equals("TEXT")
+                    ? "SELECT short_code, original_url FROM url_layout WHERE original_url = ?"
+                    : "SELECT short_code, original_url FROM url_layout WHERE original_url_hash = ?");
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.ratelimit.RateLimitProperties;
+import com.ddorokhov.origin.ratelimit.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Rate limit decisions under contention: the lock-free {@link RateLimiter} versus a classic
+ * token bucket refilled under a per-client monitor, kept in an unbounded map without idle
+ * eviction.
+ * <p>
+ * With {@code clients=1} every thread hits the same bucket, the worst case of one client
+ * flooding the API from many connections; with {@code clients=1024} the threads mostly hit
+ * different buckets. The rate is high enough that nearly every request is allowed, so every
+ * call updates its bucket. Run it at high thread counts:
+ * {@code -Dbenchmark.include=RateLimiter -Dbenchmark.threads=1,16,64}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+    private static final double REQUESTS_PER_SECOND = 1e9;
+    private static final int BURST = 1000;
+
+    @Param({"1", "1024"})
+    public int clients;
+
+    private String[] keys;
+    private RateLimiter lockFree;
+    private final Map<String, SynchronizedBucket> synchronizedBuckets = new ConcurrentHashMap<>();
+
+    @Setup
+    public void setUp() {
+        keys = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            keys[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRequestsPerSecond(REQUESTS_PER_SECOND);
+        properties.setBurst(BURST);
+        lockFree = new RateLimiter(properties);
+    }
+
+    @Benchmark
+    public long lockFree() {
+        return lockFree.tryAcquire(nextKey());
+    }
+
+    @Benchmark
+    public long synchronizedBucket() {
+        return synchronizedBuckets.computeIfAbsent(nextKey(), key -> new SynchronizedBucket()).tryAcquire();
+    }
+
+    private String nextKey() {
+        return keys[clients == 1 ? 0 : ThreadLocalRandom.current().nextInt(clients)];
+    }
+
+    private static final class SynchronizedBucket {
+        private double tokens = BURST;
+        private long refilledAt = System.nanoTime();
+
+        synchronized long tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(BURST, tokens + (now - refilledAt) * REQUESTS_PER_SECOND / 1e9);
+            refilledAt = now;
+            if (tokens < 1) return (long) ((1 - tokens) * 1e9 / REQUESTS_PER_SECOND);
+            tokens--;
+            return 0;
+        }
+    }
+}
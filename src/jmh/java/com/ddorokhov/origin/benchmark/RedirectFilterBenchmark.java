@@ -0,0 +1,65 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.DomainRedirectFilter;
+import com.ddorokhov.origin.UrlService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static com.ddorokhov.origin.Constants.DOMAIN_SHORT;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Full redirect path through MockMvc: Host check, code extraction, cached lookup and the
+ * 302 response. Unknown codes fall through to the dispatcher and end in a 404.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedirectFilterBenchmark {
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private String knownPath;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkContext.start();
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .addFilters(context.getBean(DomainRedirectFilter.class))
+                .build();
+        String code = context.getBean(UrlService.class)
+                .createOrGet("https://www.originenergy.com.au/electricity-gas/plans.html")
+                .getBody().getShortCode();
+        knownPath = "/" + code;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public int redirect() throws Exception {
+        return mockMvc.perform(get(knownPath).header(HttpHeaders.HOST, DOMAIN_SHORT)).andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int unknownCode() throws Exception {
+        return mockMvc.perform(get("/Unknwn").header(HttpHeaders.HOST, DOMAIN_SHORT)).andReturn().getResponse().getStatus();
+    }
+}
@@ -0,0 +1,92 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.UrlService;
+import com.ddorokhov.origin.redirect.RedirectServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import static com.ddorokhov.origin.Constants.DOMAIN_SHORT;
+
+/**
+ * Cached redirects over real HTTP: the servlet filter on Tomcat against the reactive redirect
+ * server. Sampling mode reports the latency distribution, so tail percentiles can be compared;
+ * run with {@code -prof gc} or a fixed {@code origin.redirect-server.event-loop-threads} to
+ * compare work per core. Each benchmark thread keeps one keep-alive connection.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.httpclient.allowRestrictedHeaders=host")
+@State(Scope.Benchmark)
+public class RedirectServerBenchmark {
+
+    @Param({"servlet", "reactive"})
+    public String server;
+
+    private ConfigurableApplicationContext context;
+    private HttpRequest redirectRequest;
+
+    @State(Scope.Thread)
+    public static class Client {
+        HttpClient httpClient;
+
+        @Setup(Level.Trial)
+        public void open() {
+            httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .build();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            httpClient.close();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkContext.start("origin.redirect-server.port=0");
+        String code = context.getBean(UrlService.class)
+                .createOrGet("https://www.originenergy.com.au/electricity-gas/plans.html")
+                .getBody().getShortCode();
+        int port = server.equals("reactive")
+                ? context.getBean(RedirectServer.class).getPort()
+                : ((WebServerApplicationContext) context).getWebServer().getPort();
+        redirectRequest = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/" + code))
+                .header("Host", DOMAIN_SHORT)
+                .GET()
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public int redirect(Client client) throws IOException, InterruptedException {
+        return client.httpClient.send(redirectRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,43 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.shortcode.Base62;
+import com.ddorokhov.origin.shortcode.IdScrambler;
+import com.ddorokhov.origin.shortcode.RandomShortCodeGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Code generation without the database: UUID-based random codes (including case
+ * randomization) versus scrambled sequence ids encoded in base62.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShortCodeBenchmark {
+    private static final int LENGTH = 6;
+
+    private final RandomShortCodeGenerator random = new RandomShortCodeGenerator(LENGTH);
+    private final IdScrambler scrambler = new IdScrambler(Base62.space(LENGTH), 0x5DEECE66DL);
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Benchmark
+    public String random() {
+        return random.next();
+    }
+
+    @Benchmark
+    public String sequence() {
+        long id = sequence.getAndIncrement() % Base62.space(LENGTH);
+        return Base62.encode(scrambler.scramble(id), LENGTH);
+    }
+}
@@ -0,0 +1,121 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.UrlService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.ddorokhov.origin.Constants.DOMAIN_SHORT;
+
+/**
+ * Tomcat on its platform thread pool against Tomcat on virtual threads
+ * ({@code spring.threads.virtual.enabled}). Each invocation sends one wave of
+ * {@code connections} concurrent requests over that many keep-alive connections, split evenly
+ * between the benchmark threads, and waits for all responses; the score is the time per wave.
+ * {@code redirect} is served from the cache, {@code shorten} writes through JPA to H2 for every
+ * request.
+ * <p>
+ * Client and server share the fork, so it needs about two file descriptors per connection:
+ * raise {@code ulimit -n} above 20000 for the default 10k connections.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.httpclient.allowRestrictedHeaders=host")
+@State(Scope.Benchmark)
+public class ThreadModelBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"10000"})
+    public int connections;
+
+    @Param({"redirect", "shorten"})
+    public String request;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private int requestsPerWave;
+    private String baseUrl;
+    private URI redirectUri;
+
+    @Setup(Level.Trial)
+    public void start(BenchmarkParams params) {
+        requestsPerWave = Math.max(1, connections / params.getThreads());
+        context = BenchmarkContext.start(
+                "spring.threads.virtual.enabled=" + threads.equals("virtual"),
+                "server.tomcat.max-connections=" + (connections + 1000),
+                "server.tomcat.accept-count=" + connections,
+                "server.tomcat.keep-alive-timeout=5m",
+                "server.tomcat.max-keep-alive-requests=-1");
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://127.0.0.1:" + port;
+        String code = context.getBean(UrlService.class)
+                .createOrGet("https://www.originenergy.com.au/electricity-gas/plans.html")
+                .getBody().getShortCode();
+        redirectUri = URI.create(baseUrl + "/" + code);
+
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(clientExecutor)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        client.close();
+        clientExecutor.close();
+        context.close();
+    }
+
+    @Benchmark
+    public int wave() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<HttpResponse<Void>>[] responses = new CompletableFuture[requestsPerWave];
+        for (int i = 0; i < requestsPerWave; i++) {
+            responses[i] = client.sendAsync(nextRequest(), HttpResponse.BodyHandlers.discarding());
+        }
+        int statusSum = 0;
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            statusSum += response.join().statusCode();
+        }
+        return statusSum;
+    }
+
+    private HttpRequest nextRequest() {
+        if (request.equals("redirect")) {
+            return HttpRequest.newBuilder(redirectUri).header("Host", DOMAIN_SHORT).GET().build();
+        }
+        URI uri = URI.create(baseUrl + "/shorten?originalUrl=https://load.example.com/" + sequence.incrementAndGet());
+        return HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+}
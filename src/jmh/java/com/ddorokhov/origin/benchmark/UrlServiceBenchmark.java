@@ -0,0 +1,79 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link UrlService} through its caching proxy against the in-memory H2 database.
+ * <p>
+ * Misses and creates use a fresh key on every call, so they always reach the database
+ * unless the short code filter ({@code filter=true}) rejects the missing code first.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlServiceBenchmark {
+    private static final String KNOWN_URL = "https://www.originenergy.com.au/electricity-gas/plans.html";
+
+    @Param({"true", "false"})
+    public boolean filter;
+
+    private final AtomicLong counter = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private UrlService urlService;
+    private String knownCode;
+
+    @Setup(Level.Trial)
+    public void start() {
+        // The filter needs a transport to learn codes created elsewhere; loopback has no peers here
+        context = BenchmarkContext.start("origin.cache.short-code-filter.enabled=" + filter,
+                "origin.invalidation.transport=" + (filter ? "loopback" : "none"));
+        urlService = context.getBean(UrlService.class);
+        knownCode = urlService.createOrGet(KNOWN_URL).getBody().getShortCode();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<UrlEntity> getOriginalHit() {
+        return urlService.getOriginal(knownCode);
+    }
+
+    @Benchmark
+    public Optional<UrlEntity> getOriginalMiss() {
+        // Seven characters never collide with the six-character generated codes
+        return urlService.getOriginal("m" + (1_000_000 + counter.getAndIncrement() % 9_000_000));
+    }
+
+    @Benchmark
+    public ResponseEntity<UrlEntity> createOrGetExisting() {
+        return urlService.createOrGet(KNOWN_URL);
+    }
+
+    @Benchmark
+    public ResponseEntity<UrlEntity> createOrGetNew() {
+        return urlService.createOrGet("https://bench.example.com/item?id=" + counter.getAndIncrement());
+    }
+}
@@ -0,0 +1,90 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.store.UrlStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link UrlStore} lookups and inserts below the caches, per engine, with {@value #PRELOADED}
+ * stored mappings; the sharded engine spreads them over {@value #SHARDS} in-memory databases.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlStoreBenchmark {
+    private static final int PRELOADED = 100_000;
+    private static final int SHARDS = 4;
+
+    @Param({"jpa", "log", "sharded"})
+    public String engine;
+
+    private final AtomicLong counter = new AtomicLong();
+    private final List<UrlEntity> stored = new ArrayList<>(PRELOADED);
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private UrlStore urlStore;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        directory = Files.createTempDirectory("url-store-bench");
+        List<String> properties = new ArrayList<>(List.of("origin.store.engine=" + engine, "origin.store.log.directory=" + directory));
+        for (int i = 0; i < SHARDS; i++) {
+            properties.add("origin.store.sharded.shards[%d].url=jdbc:h2:mem:benchmark-shard-%d;DB_CLOSE_DELAY=-1".formatted(i, i));
+        }
+        context = BenchmarkContext.start(properties.toArray(String[]::new));
+        urlStore = context.getBean(UrlStore.class);
+        for (int i = 0; i < PRELOADED; i++) {
+            UrlEntity urlEntity = new UrlEntity(String.format("p%06d", i), "https://preloaded.example.com/item?id=" + i);
+            stored.add(urlEntity);
+        }
+        for (int i = 0; i < PRELOADED; i += 1000) {
+            urlStore.insertAll(stored.subList(i, i + 1000));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Optional<UrlEntity> findByShortCode() {
+        return urlStore.findByShortCode(stored.get(ThreadLocalRandom.current().nextInt(PRELOADED)).getShortCode());
+    }
+
+    @Benchmark
+    public Optional<UrlEntity> findByOriginalUrl() {
+        return urlStore.findByOriginalUrl(stored.get(ThreadLocalRandom.current().nextInt(PRELOADED)).getOriginalUrl());
+    }
+
+    @Benchmark
+    public boolean insertIfAbsent() {
+        long id = counter.getAndIncrement();
+        return urlStore.insertIfAbsent(new UrlEntity("n" + id, "https://bench.example.com/item?id=" + id));
+    }
+}
@@ -0,0 +1,82 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.validator.UrlCanonicalizer;
+import com.ddorokhov.origin.validator.UrlValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URL;
+
+/**
+ * URL validation of a typical tracking URL, a rejected value and a long marketing URL, against
+ * the previous {@code java.net.URL} based check, and canonicalization of a differently spelled URL.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlValidatorBenchmark {
+    private final UrlValidator validator = new UrlValidator();
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(true);
+
+    private final String valid = "https://www.originenergy.com.au/electricity-gas/plans.html?utm_source=mail&utm_campaign=spring";
+    private final String invalid = "htp:/not a url";
+    private final String longUrl = "https://www.originenergy.com.au/campaign?" + "utm_content=banner-variant-a&".repeat(60) + "id=1";
+    private final String uncanonical = "HTTPS://www.OriginEnergy.com.au:443/electricity-gas/plans.html?utm_source=mail&utm_campaign=spring&%7Eref=a%2f";
+
+    @Benchmark
+    public boolean valid() {
+        return validator.isValid(valid, null);
+    }
+
+    @Benchmark
+    public boolean invalid() {
+        return validator.isValid(invalid, null);
+    }
+
+    @Benchmark
+    public boolean validLong() {
+        return validator.isValid(longUrl, null);
+    }
+
+    @Benchmark
+    public boolean validLegacy() {
+        return legacyIsValid(valid);
+    }
+
+    @Benchmark
+    public boolean invalidLegacy() {
+        return legacyIsValid(invalid);
+    }
+
+    @Benchmark
+    public boolean validLongLegacy() {
+        return legacyIsValid(longUrl);
+    }
+
+    @Benchmark
+    public String canonicalize() {
+        return canonicalizer.canonicalize(uncanonical);
+    }
+
+    /**
+     * The check {@link UrlValidator} made before it parsed URLs itself.
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean legacyIsValid(String value) {
+        try {
+            if (!value.contains("http://") && !value.contains("https://")) return false;
+            new URL(value).toURI();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
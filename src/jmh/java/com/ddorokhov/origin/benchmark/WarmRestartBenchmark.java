@@ -0,0 +1,139 @@
+package com.ddorokhov.origin.benchmark;
+
+import com.ddorokhov.origin.BatchShortenResult;
+import com.ddorokhov.origin.ShortUrls;
+import com.ddorokhov.origin.UrlService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
+
+/**
+ * Redirect cache hit ratio during the first minute after a restart, with the cache warmed from
+ * a hot key snapshot ({@code snapshot=true}) or cold.
+ * <p>
+ * The first instance stores {@value #KEYS} mappings, serves Zipf-distributed lookups and
+ * writes its snapshot on shutdown; the in-memory database outlives it. The measured instance
+ * then serves the same distribution, checking the cache first like the redirect server does.
+ * The {@code hits} and {@code misses} counters give the hit ratio.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1, time = 60)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class WarmRestartBenchmark {
+    private static final int KEYS = 100_000;
+    private static final int CACHE_SIZE = 20_000;
+    private static final int WARMING_LOOKUPS = 1_000_000;
+
+    @Param({"false", "true"})
+    public boolean snapshot;
+
+    private final List<String> codes = new ArrayList<>(KEYS);
+    private double[] cumulative;
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private UrlService urlService;
+    private Cache cache;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        cumulative = zipf(KEYS);
+        directory = Files.createTempDirectory("warm-restart-bench");
+        String path = "origin.cache.snapshot.path=" + directory.resolve("hot-keys.snapshot");
+        String cacheSize = "origin.cache.short-to-original.maximum-size=" + CACHE_SIZE;
+
+        ConfigurableApplicationContext previous = BenchmarkContext.start("origin.cache.snapshot.enabled=true", path, cacheSize);
+        UrlService previousService = previous.getBean(UrlService.class);
+        List<String> urls = new ArrayList<>(1000);
+        for (int i = 0; i < KEYS; i++) {
+            urls.add("https://warm.example.com/item?id=" + i);
+            if (urls.size() == 1000) {
+                for (BatchShortenResult result : previousService.createOrGetAll(urls)) {
+                    codes.add(ShortUrls.toCode(result.getShortenedUrl()));
+                }
+                urls.clear();
+            }
+        }
+        for (int i = 0; i < WARMING_LOOKUPS; i++) {
+            previousService.getOriginal(nextCode());
+        }
+        previous.close();
+
+        context = BenchmarkContext.start("origin.cache.snapshot.enabled=" + snapshot, path, cacheSize);
+        urlService = context.getBean(UrlService.class);
+        cache = context.getBean(CacheManager.class).getCache(CACHE_SHORT_TO_ORIGINAL);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Object lookup(Counters counters) {
+        String code = nextCode();
+        Cache.ValueWrapper cached = cache.get(code);
+        if (cached != null) {
+            counters.hits++;
+            return cached.get();
+        }
+        counters.misses++;
+        return urlService.getOriginal(code);
+    }
+
+    private String nextCode() {
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return codes.get(Math.min(index < 0 ? -index - 1 : index, KEYS - 1));
+    }
+
+    /**
+     * @return cumulative probabilities of a Zipf distribution with exponent 1 over {@code n} ranks
+     */
+    private static double[] zipf(int n) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            sum += 1.0 / rank;
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long hits;
+        public long misses;
+    }
+}
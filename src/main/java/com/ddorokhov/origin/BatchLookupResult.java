@@ -0,0 +1,20 @@
+package com.ddorokhov.origin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of resolving one key of a bulk lookup request.
+ * <p>
+ * The requested key is always echoed back; the other side of the mapping is {@code null}
+ * when the key is unknown.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchLookupResult {
+    String shortenedUrl;
+    String originalUrl;
+    boolean found;
+}
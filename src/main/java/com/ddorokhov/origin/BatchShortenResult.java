@@ -0,0 +1,32 @@
+package com.ddorokhov.origin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of shortening one URL of a batch request.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchShortenResult {
+    String shortenedUrl;
+    String originalUrl;
+    Status status;
+
+    public enum Status {
+        /**
+         * The mapping was created by this request.
+         */
+        CREATED,
+        /**
+         * The mapping already existed.
+         */
+        EXISTING,
+        /**
+         * The input is not a valid URL; nothing was stored.
+         */
+        INVALID
+    }
+}
@@ -6,8 +6,17 @@ import lombok.experimental.UtilityClass;
 @UtilityClass
 public class Constants {
     public static final String PATH_SHORTEN = "/shorten";
+    public static final String PATH_SHORTEN_BATCH = "/shorten/batch";
+    public static final String PATH_SHORTEN_LOOKUP = "/shorten/lookup";
+    public static final int BATCH_MAX_SIZE = 50_000;
     public static final String DOMAIN_SHORT = "short.ly";
     public static final String PATH_ORIGINAL = "/original";
+    public static final String PATH_ORIGINAL_LOOKUP = "/original/lookup";
+    public static final String PATH_STATS = "/stats";
+    public static final int SHORT_CODE_MAX_LENGTH = 16;
+    public static final int ORIGINAL_URL_MAX_LENGTH = 4096;
     public static final String ERROR_MESSAGE_SHORT_URL_EXISTS = "Entry with the same shortened URL already exists";
+    public static final String CACHE_SHORT_TO_ORIGINAL = "shortToOriginal";
+    public static final String CACHE_ORIGINAL_TO_SHORT = "originalToShort";
     public static final String HTTP_PROTOCOL_DOMAIN_SHORT = "http://" + DOMAIN_SHORT+"/";
 }
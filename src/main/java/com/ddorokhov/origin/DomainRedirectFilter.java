@@ -1,32 +1,109 @@
 package com.ddorokhov.origin;
 
+import com.ddorokhov.origin.analytics.ClickCounter;
+import com.ddorokhov.origin.redirect.RedirectPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+import static com.ddorokhov.origin.Constants.DOMAIN_SHORT;
+
+/**
+ * Redirects requests addressed to the short domain to their original URL.
+ * <p>
+ * Only requests whose {@code Host} is the short domain and whose path is a single
+ * alphanumeric segment reach a lookup; all other traffic (API, static files, H2 console)
+ * goes straight down the filter chain. The path segment is the short code itself, so it is
+ * used as the lookup key as is. Status and caching of redirects follow the
+ * {@link RedirectPolicy}. Each redirect is counted in memory by {@link ClickCounter}.
+ * Requests reaching a lookup are timed by outcome with pre-registered timers, so timing
+ * allocates nothing per request.
+ */
 @Component
 public class DomainRedirectFilter extends OncePerRequestFilter {
     private final UrlService urlService;
+    private final RedirectPolicy redirectPolicy;
+    private final ClickCounter clickCounter;
+    private final Timer foundTimer;
+    private final Timer notFoundTimer;
 
-    public DomainRedirectFilter(UrlService urlService) {
+    public DomainRedirectFilter(UrlService urlService, RedirectPolicy redirectPolicy, ClickCounter clickCounter,
+                                MeterRegistry meterRegistry) {
         this.urlService = urlService;
+        this.redirectPolicy = redirectPolicy;
+        this.clickCounter = clickCounter;
+        this.foundTimer = redirectTimer(meterRegistry, "found");
+        this.notFoundTimer = redirectTimer(meterRegistry, "not_found");
+    }
+
+    private static Timer redirectTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("origin.redirect")
+                .description("Short domain requests reaching a lookup, excluding the rest of the chain on a miss")
+                .tag("server", "servlet")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        Optional<UrlEntity> urlEntityOptional = urlService.getOriginal(request.getRequestURL().toString());
+        if (!isShortDomain(request.getHeader(HttpHeaders.HOST))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String code = extractCode(request.getRequestURI());
+        if (code == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Optional<UrlEntity> urlEntityOptional = urlService.getOriginal(code);
         if (urlEntityOptional.isPresent()){
-            String originalUrl = urlEntityOptional.get().getOriginalUrl();
-            response.setStatus(HttpServletResponse.SC_FOUND); // 302
-            response.setHeader("Location", originalUrl);
+            UrlEntity urlEntity = urlEntityOptional.get();
+            response.setStatus(redirectPolicy.status());
+            response.setHeader(HttpHeaders.LOCATION, urlEntity.getOriginalUrl());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, redirectPolicy.cacheControl(urlEntity));
+            clickCounter.record(code);
+            foundTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             return;
         }
+        notFoundTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Checks whether the Host header names the short domain, with or without a port,
+     * without allocating.
+     *
+     * @param host the raw Host header value, may be {@code null}
+     * @return {@code true} if the request is addressed to the short domain
+     */
+    static boolean isShortDomain(String host) {
+        if (host == null) return false;
+        int length = DOMAIN_SHORT.length();
+        if (!host.regionMatches(true, 0, DOMAIN_SHORT, 0, length)) return false;
+        return host.length() == length || host.charAt(length) == ':';
+    }
+
+    /**
+     * Extracts the short code from a request URI of the form {@code /<code>}.
+     *
+     * @param requestUri the request URI without query string
+     * @return the code, or {@code null} if the path is not a single alphanumeric segment
+     */
+    static String extractCode(String requestUri) {
+        return ShortUrls.fromPath(requestUri);
+    }
 }
@@ -2,10 +2,12 @@ package com.ddorokhov.origin;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 
 @SpringBootApplication
 @EnableCaching
+@EnableConfigurationProperties(UrlWriteProperties.class)
 public class OriginApplication {
 
 	public static void main(String[] args) {
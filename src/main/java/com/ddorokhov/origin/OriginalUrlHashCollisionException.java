@@ -0,0 +1,17 @@
+package com.ddorokhov.origin;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when an original URL cannot be stored because another stored URL has the same
+ * {@link UrlHasher} hash, which is unique per store. Not expected in practice: the hash is
+ * collision resistant.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class OriginalUrlHashCollisionException extends RuntimeException {
+
+    public OriginalUrlHashCollisionException(String originalUrl) {
+        super("Another stored URL has the same hash as " + originalUrl);
+    }
+}
@@ -0,0 +1,56 @@
+package com.ddorokhov.origin;
+
+import lombok.experimental.UtilityClass;
+
+import static com.ddorokhov.origin.Constants.HTTP_PROTOCOL_DOMAIN_SHORT;
+import static com.ddorokhov.origin.Constants.SHORT_CODE_MAX_LENGTH;
+
+/**
+ * Converts between short codes, which are stored and cached, and the shortened URLs
+ * exposed by the API.
+ */
+@UtilityClass
+public class ShortUrls {
+
+    /**
+     * @param shortCode the short code
+     * @return the shortened URL on the short domain
+     */
+    public static String toShortenedUrl(String shortCode) {
+        return HTTP_PROTOCOL_DOMAIN_SHORT + shortCode;
+    }
+
+    /**
+     * @param shortenedUrl a shortened URL, may be {@code null}
+     * @return its short code, or {@code null} if it is not a URL on the short domain
+     */
+    public static String toCode(String shortenedUrl) {
+        if (shortenedUrl == null || !shortenedUrl.startsWith(HTTP_PROTOCOL_DOMAIN_SHORT)) return null;
+        int start = HTTP_PROTOCOL_DOMAIN_SHORT.length();
+        return isCode(shortenedUrl, start) ? shortenedUrl.substring(start) : null;
+    }
+
+    /**
+     * @param path a request path without query string, may be {@code null}
+     * @return the short code if the path is a single code segment ({@code /<code>}), otherwise {@code null}
+     */
+    public static String fromPath(String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') return null;
+        return isCode(path, 1) ? path.substring(1) : null;
+    }
+
+    /**
+     * Checks without allocating whether the tail of a string from {@code start} is a short code:
+     * one to {@link Constants#SHORT_CODE_MAX_LENGTH} ASCII letters or digits.
+     */
+    static boolean isCode(String value, int start) {
+        int length = value.length() - start;
+        if (length < 1 || length > SHORT_CODE_MAX_LENGTH) return false;
+        for (int i = start; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean alphanumeric = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+            if (!alphanumeric) return false;
+        }
+        return true;
+    }
+}
@@ -1,21 +1,40 @@
 package com.ddorokhov.origin;
 
 import com.ddorokhov.origin.validator.ValidUrl;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.constraints.NotBlank;
+import org.hibernate.validator.constraints.time.DurationMin;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static com.ddorokhov.origin.Constants.BATCH_MAX_SIZE;
 import static com.ddorokhov.origin.Constants.PATH_ORIGINAL;
+import static com.ddorokhov.origin.Constants.PATH_ORIGINAL_LOOKUP;
 import static com.ddorokhov.origin.Constants.PATH_SHORTEN;
+import static com.ddorokhov.origin.Constants.PATH_SHORTEN_BATCH;
+import static com.ddorokhov.origin.Constants.PATH_SHORTEN_LOOKUP;
 
 /**
  * REST controller for managing URL shortening operations.
@@ -27,6 +46,8 @@ import static com.ddorokhov.origin.Constants.PATH_SHORTEN;
 @RestController
 @Validated
 public class UrlController {
+    private static final ObjectReader NDJSON_READER = new ObjectMapper().readerFor(String.class);
+
     private final UrlService urlService;
     /**
      * Constructs a controller with the required URL service.
@@ -41,23 +62,73 @@ public class UrlController {
      * Retrieves a shortened URL for the given original URL.
      *
      * @param originalUrl the original URL to look up (must be valid and non-blank)
-     * @return {@code 200 OK} with {@link UrlEntity} if found, or {@code 404 Not Found}
+     * @return {@code 200 OK} with {@link UrlEntity} if found, {@code 304 Not Modified} if it
+     * matches the request's validators, or {@code 404 Not Found}
      */
     @GetMapping(path = PATH_SHORTEN)
     public ResponseEntity<UrlEntity> getShorten(@NotBlank @ValidUrl @RequestParam String originalUrl) {
-        return ResponseEntity.of(urlService.get(originalUrl));
+        return revalidated(urlService.get(originalUrl));
+    }
+
+    /**
+     * Retrieves shortened URLs for many original URLs in one call.
+     *
+     * @param originalUrls the original URLs to look up
+     * @return {@code 200 OK} with one {@link BatchLookupResult} per input URL, in input order;
+     * unknown URLs are marked as not found
+     */
+    @PostMapping(path = PATH_SHORTEN_LOOKUP, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchLookupResult> getShortenBatch(@RequestBody List<String> originalUrls) {
+        checkBatchSize(originalUrls);
+        return urlService.getAll(originalUrls);
     }
 
     /**
      * Creates a shortened URL for the given original URL, or returns an existing one.
      *
      * @param originalUrl the original URL to shorten (must be valid and non-blank)
+     * @param ttl         optional lifetime of a new link, as ISO-8601 duration, e.g. {@code P90D}; an existing link keeps its own
      * @return {@code 201 Created} if new, or {@code 200 OK} if already exists
      */
     @PostMapping(path = PATH_SHORTEN)
-    public ResponseEntity<UrlEntity> createShorten(@NotBlank  @ValidUrl @RequestParam String originalUrl) {
+    public ResponseEntity<UrlEntity> createShorten(@NotBlank  @ValidUrl @RequestParam String originalUrl,
+                                                   @DurationMin(seconds = 1) @RequestParam(required = false) Duration ttl) {
+
+        return urlService.createOrGet(originalUrl, expiresAt(ttl));
+    }
+
+    /**
+     * Creates shortened URLs for a JSON array of original URLs.
+     *
+     * @param originalUrls the original URLs to shorten
+     * @param ttl          optional lifetime of the new links
+     * @return {@code 200 OK} with one {@link BatchShortenResult} per input URL, in input order
+     */
+    @PostMapping(path = PATH_SHORTEN_BATCH, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchShortenResult> createShortenBatch(@RequestBody List<String> originalUrls,
+                                                       @DurationMin(seconds = 1) @RequestParam(required = false) Duration ttl) {
+        checkBatchSize(originalUrls);
+        return urlService.createOrGetAll(originalUrls, expiresAt(ttl));
+    }
 
-        return urlService.createOrGet(originalUrl);
+    /**
+     * Creates shortened URLs for a newline-delimited stream of JSON strings.
+     *
+     * @param body NDJSON request body, one quoted original URL per line
+     * @param ttl  optional lifetime of the new links
+     * @return {@code 200 OK} with one {@link BatchShortenResult} per input URL, in input order
+     */
+    @PostMapping(path = PATH_SHORTEN_BATCH, consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<BatchShortenResult> createShortenBatchNdjson(InputStream body,
+                                                             @DurationMin(seconds = 1) @RequestParam(required = false) Duration ttl) {
+        List<String> originalUrls;
+        try (MappingIterator<String> lines = NDJSON_READER.readValues(body)) {
+            originalUrls = lines.readAll();
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed NDJSON body", e);
+        }
+        checkBatchSize(originalUrls);
+        return urlService.createOrGetAll(originalUrls, expiresAt(ttl));
     }
 
     /**
@@ -74,11 +145,52 @@ public class UrlController {
      * Resolves a shortened URL to its original form.
      *
      * @param shortenedUrl the shortened URL to resolve (must be valid and non-blank)
-     * @return {@code 200 OK} with {@link UrlEntity} if found, or {@code 404 Not Found}
+     * @return {@code 200 OK} with {@link UrlEntity} if found, {@code 304 Not Modified} if it
+     * matches the request's validators, or {@code 404 Not Found}
      */
     @GetMapping(path = PATH_ORIGINAL)
     public ResponseEntity<UrlEntity> getOriginal(@NotBlank  @ValidUrl @RequestParam String shortenedUrl)  {
-        return ResponseEntity.of(urlService.getOriginal(shortenedUrl));
+        String shortCode = ShortUrls.toCode(shortenedUrl);
+        if (shortCode == null) return ResponseEntity.notFound().build();
+        return revalidated(urlService.getOriginal(shortCode));
+    }
+
+    /**
+     * Resolves many shortened URLs to their original form in one call.
+     *
+     * @param shortenedUrls the shortened URLs to resolve
+     * @return {@code 200 OK} with one {@link BatchLookupResult} per input URL, in input order;
+     * unknown URLs are marked as not found
+     */
+    @PostMapping(path = PATH_ORIGINAL_LOOKUP, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchLookupResult> getOriginalBatch(@RequestBody List<String> shortenedUrls) {
+        checkBatchSize(shortenedUrls);
+        return urlService.getOriginalAll(shortenedUrls);
+    }
+
+    /**
+     * Adds the mapping's {@code ETag} and, if known, its creation time as {@code Last-Modified};
+     * a matching conditional request is then answered with {@code 304} by Spring MVC. Responses
+     * may be stored but must be revalidated, so a deleted link is never served from a cache.
+     */
+    private static ResponseEntity<UrlEntity> revalidated(Optional<UrlEntity> urlEntityOptional) {
+        if (urlEntityOptional.isEmpty()) return ResponseEntity.notFound().build();
+        UrlEntity urlEntity = urlEntityOptional.get();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(urlEntity.getEntityTag())
+                .cacheControl(CacheControl.noCache());
+        if (urlEntity.getCreatedAt() != null) response.lastModified(urlEntity.getCreatedAt());
+        return response.body(urlEntity);
+    }
+
+    private static Instant expiresAt(Duration ttl) {
+        return ttl == null ? null : Instant.now().plus(ttl);
+    }
+
+    private static void checkBatchSize(List<String> originalUrls) {
+        if (originalUrls.size() > BATCH_MAX_SIZE) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Batch exceeds " + BATCH_MAX_SIZE + " URLs");
+        }
     }
 
     /**
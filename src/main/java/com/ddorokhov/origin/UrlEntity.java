@@ -1,27 +1,148 @@
 package com.ddorokhov.origin;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
-import lombok.AllArgsConstructor;
+import jakarta.persistence.Transient;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+import java.util.HexFormat;
 
 @Entity
-@AllArgsConstructor
 @NoArgsConstructor
+@JsonPropertyOrder({"shortenedUrl", "originalUrl", "expiresAt"})
 @Data
 @Table(
         name = "url_entity",
         indexes = {
-                @Index(name = "idx_original_url", columnList = "originalUrl")
+                @Index(name = "idx_original_url_hash", columnList = "originalUrlHash", unique = true),
+                @Index(name = "idx_expires_at", columnList = "expiresAt")
         }
 )
-public class UrlEntity {
+public class UrlEntity implements Persistable<String> {
+    /**
+     * Only the code is stored and used as cache key; the shortened URL exposed by the API
+     * is derived from it, see {@link #getShortenedUrl()}.
+     */
     @Id
-    String shortenedUrl;
-    @Column(unique = true)
+    @Column(length = Constants.SHORT_CODE_MAX_LENGTH)
+    @JsonIgnore
+    String shortCode;
+    @Column(length = Constants.ORIGINAL_URL_MAX_LENGTH)
     String originalUrl;
+
+    /**
+     * {@link UrlHasher} hash of {@link #originalUrl}: the fixed-width, indexed key of
+     * original URL lookups, keeping the long URL text itself out of the index.
+     */
+    @Column(length = UrlHasher.HASH_BYTES)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    byte[] originalUrlHash;
+
+    /**
+     * End of the link's lifetime, or {@code null} if it never expires. An expired mapping is
+     * treated as absent until it is purged.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Instant expiresAt;
+
+    /**
+     * Creation time, served as {@code Last-Modified}; {@code null} where it is not kept, e.g.
+     * in the log store.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    Instant createdAt;
+
+    /**
+     * Ids are assigned by the application, so JPA cannot tell new entities apart on its own.
+     * Tracking it here lets {@code save} persist without a preceding SELECT.
+     */
+    @Transient
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    boolean isNew = true;
+
+    public UrlEntity(String shortCode, String originalUrl) {
+        this.shortCode = shortCode;
+        this.originalUrl = originalUrl;
+    }
+
+    public UrlEntity(String shortCode, String originalUrl, Instant expiresAt) {
+        this(shortCode, originalUrl);
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return {@code true} if the link has an expiry that has passed
+     */
+    @JsonIgnore
+    public boolean isExpired() {
+        return expiresAt != null && expiresAt.toEpochMilli() <= System.currentTimeMillis();
+    }
+
+    /**
+     * Strong entity tag of the mapping: a hash of everything the API returns for it, so it
+     * changes whenever a URL is mapped to another code or gets another expiry.
+     */
+    @JsonIgnore
+    public String getEntityTag() {
+        byte[] hash = UrlHasher.hash(shortCode + '\n' + originalUrl + '\n' + (expiresAt == null ? "" : expiresAt.toEpochMilli()));
+        return '"' + HexFormat.of().formatHex(hash, 0, 8) + '"';
+    }
+
+    @JsonProperty("shortenedUrl")
+    public String getShortenedUrl() {
+        return shortCode == null ? null : ShortUrls.toShortenedUrl(shortCode);
+    }
+
+    @JsonProperty("shortenedUrl")
+    public void setShortenedUrl(String shortenedUrl) {
+        this.shortCode = ShortUrls.toCode(shortenedUrl);
+    }
+
+    public void setOriginalUrl(String originalUrl) {
+        this.originalUrl = originalUrl;
+        this.originalUrlHash = null;
+    }
+
+    @PrePersist
+    void computeOriginalUrlHash() {
+        if (originalUrlHash == null && originalUrl != null) originalUrlHash = UrlHasher.hash(originalUrl);
+    }
+
+    @Override
+    @JsonIgnore
+    public String getId() {
+        return shortCode;
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
 }
@@ -0,0 +1,44 @@
+package com.ddorokhov.origin;
+
+import lombok.experimental.UtilityClass;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Fixed-width 128-bit hash of original URLs, used as their indexed lookup key.
+ * <p>
+ * SHA-256 over the UTF-8 bytes of the URL, truncated to its first 16 bytes. The hash index is
+ * unique, so a URL sharing the hash of a stored one cannot be stored: the hash must be
+ * collision resistant, or anyone could block a URL by storing a crafted one first.
+ */
+@UtilityClass
+public class UrlHasher {
+    public static final int HASH_BYTES = 16;
+
+    private static final MessageDigest SHA_256;
+
+    static {
+        try {
+            SHA_256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * @param url the URL to hash
+     * @return the first 16 bytes of the URL's SHA-256 digest
+     */
+    public static byte[] hash(String url) {
+        MessageDigest digest;
+        try {
+            digest = (MessageDigest) SHA_256.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        return Arrays.copyOf(digest.digest(url.getBytes(StandardCharsets.UTF_8)), HASH_BYTES);
+    }
+}
@@ -1,9 +1,106 @@
 package com.ddorokhov.origin;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface UrlRepository extends JpaRepository<UrlEntity, String> {
-    Optional<UrlEntity> findByOriginalUrl(String originalUrl);
+
+    Optional<UrlEntity> findByOriginalUrlHash(byte[] originalUrlHash);
+
+    List<UrlEntity> findAllByOriginalUrlHashIn(Collection<byte[]> originalUrlHashes);
+
+    /**
+     * Finds the mapping of an original URL through its hash index. The full URL is compared
+     * only to rule out a hash collision.
+     */
+    default Optional<UrlEntity> findByOriginalUrl(String originalUrl) {
+        return findByOriginalUrlHash(UrlHasher.hash(originalUrl))
+                .filter(urlEntity -> urlEntity.getOriginalUrl().equals(originalUrl));
+    }
+
+    /**
+     * Finds the mappings of many original URLs through their hash index in one query.
+     */
+    default List<UrlEntity> findAllByOriginalUrlIn(Collection<String> originalUrls) {
+        List<byte[]> hashes = new ArrayList<>(originalUrls.size());
+        for (String originalUrl : originalUrls) {
+            hashes.add(UrlHasher.hash(originalUrl));
+        }
+        Set<String> requested = new HashSet<>(originalUrls);
+        List<UrlEntity> found = findAllByOriginalUrlHashIn(hashes);
+        found.removeIf(urlEntity -> !requested.contains(urlEntity.getOriginalUrl()));
+        return found;
+    }
+
+    /**
+     * @return up to {@code limit} short codes greater than {@code after}, in ascending order
+     */
+    @Query(value = "SELECT short_code FROM url_entity WHERE short_code > :after ORDER BY short_code FETCH FIRST :limit ROWS ONLY",
+            nativeQuery = true)
+    List<String> findShortCodesAfter(@Param("after") String after, @Param("limit") int limit);
+
+    /**
+     * Inserts the mapping in one statement unless the original URL is already mapped.
+     *
+     * The URL is cast without a length, so that one too long for the column fails the insert
+     * instead of being cut.
+     *
+     * @return {@code 1} if inserted, {@code 0} if the original URL already exists
+     * @throws org.springframework.dao.DataIntegrityViolationException if the short code is taken,
+     * a concurrent insert of the same original URL committed first, or the URL is too long
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "MERGE INTO url_entity t " +
+            "USING (SELECT CAST(:shortCode AS VARCHAR(16)) AS short_code, CAST(:originalUrl AS VARCHAR) AS original_url, " +
+            "CAST(:originalUrlHash AS VARBINARY(16)) AS original_url_hash, " +
+            "CAST(:expiresAt AS TIMESTAMP(6) WITH TIME ZONE) AS expires_at, " +
+            "CAST(:createdAt AS TIMESTAMP(6) WITH TIME ZONE) AS created_at) s " +
+            "ON t.original_url_hash = s.original_url_hash " +
+            "WHEN NOT MATCHED THEN INSERT (short_code, original_url, original_url_hash, expires_at, created_at) " +
+            "VALUES (s.short_code, s.original_url, s.original_url_hash, s.expires_at, s.created_at)",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("shortCode") String shortCode, @Param("originalUrl") String originalUrl,
+                       @Param("originalUrlHash") byte[] originalUrlHash, @Param("expiresAt") Instant expiresAt,
+                       @Param("createdAt") Instant createdAt);
+
+    /**
+     * Inserts the mapping in one statement unless the original URL is already mapped.
+     *
+     * @see #insertIfAbsent(String, String, byte[], Instant, Instant)
+     */
+    default int insertIfAbsent(UrlEntity urlEntity) {
+        return insertIfAbsent(urlEntity.getShortCode(), urlEntity.getOriginalUrl(), UrlHasher.hash(urlEntity.getOriginalUrl()),
+                urlEntity.getExpiresAt(), urlEntity.getCreatedAt());
+    }
+
+    /**
+     * Walks the expiry index from the oldest expiry.
+     *
+     * @return up to {@code limit} mappings expired at {@code now}, earliest expiry first
+     */
+    List<UrlEntity> findByExpiresAtLessThanEqualOrderByExpiresAt(Instant now, Limit limit);
+
+    /**
+     * Deletes those of the mappings that expired at {@code now} in one statement, leaving a
+     * mapping alone if its code was taken again since it was read.
+     *
+     * @return number of mappings deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UrlEntity u WHERE u.shortCode IN :shortCodes AND u.expiresAt <= :now")
+    int deleteExpired(@Param("shortCodes") Collection<String> shortCodes, @Param("now") Instant now);
 }
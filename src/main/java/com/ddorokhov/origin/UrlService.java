@@ -1,160 +1,596 @@
 package com.ddorokhov.origin;
 
 
+import com.ddorokhov.origin.BatchShortenResult.Status;
+import com.ddorokhov.origin.cache.HotKeyTracker;
+import com.ddorokhov.origin.cache.ShortCodeFilter;
+import com.ddorokhov.origin.invalidation.InvalidationBus;
+import com.ddorokhov.origin.shortcode.ShortCodeGenerator;
+import com.ddorokhov.origin.store.UrlStore;
+import com.ddorokhov.origin.validator.UrlCanonicalizer;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.net.URI;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+import static com.ddorokhov.origin.Constants.CACHE_ORIGINAL_TO_SHORT;
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
 import static com.ddorokhov.origin.Constants.ERROR_MESSAGE_SHORT_URL_EXISTS;
-import static com.ddorokhov.origin.Constants.HTTP_PROTOCOL_DOMAIN_SHORT;
 
 /**
  * Service responsible for URL shortening operations.
  * <p>
- * Supports resolving, caching, generating, and deleting shortened URLs.
+ * Supports resolving, caching, generating, and deleting shortened URLs, kept in the configured
+ * {@link UrlStore}. Short codes that {@link ShortCodeFilter} has never seen are not found
+ * without a cache or store lookup. Expired mappings are treated as absent until
+ * {@link #purgeExpired} deletes them. Original URLs are stored, looked up and cached in the
+ * form of {@link UrlCanonicalizer}; invalid ones are used as given. Short codes found by a
+ * lookup are counted by {@link HotKeyTracker}.
  */
 @Service
 @Slf4j
 public class UrlService {
-    private final UrlRepository urlRepository;
+    /**
+     * Maximum number of keys bound into a single {@code IN (...)} query.
+     */
+    static final int IN_QUERY_CHUNK_SIZE = 1000;
+    static final String METRIC_SERVICE = "origin.url.service";
+
+    private final UrlStore urlStore;
+    private final Cache shortToOriginalCache;
+    private final Cache originalToShortCache;
+    private final ShortCodeFilter shortCodeFilter;
+    private final HotKeyTracker hotKeyTracker;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final InvalidationBus invalidationBus;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final Counter collisions;
+    private final MeterRegistry meterRegistry;
+    private final Timer getOriginalTimer;
+
+    public UrlService(UrlStore urlStore, CacheManager cacheManager, ShortCodeFilter shortCodeFilter,
+                      HotKeyTracker hotKeyTracker, ShortCodeGenerator shortCodeGenerator,
+                      UrlCanonicalizer urlCanonicalizer, InvalidationBus invalidationBus, MeterRegistry meterRegistry) {
+        this.urlStore = urlStore;
+        this.shortCodeFilter = shortCodeFilter;
+        this.hotKeyTracker = hotKeyTracker;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.urlCanonicalizer = urlCanonicalizer;
+        this.invalidationBus = invalidationBus;
+        this.shortToOriginalCache = cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL);
+        this.originalToShortCache = cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT);
+        this.collisions = Counter.builder("origin.shortcode.collisions")
+                .description("Generated short codes that were already taken and had to be regenerated")
+                .register(meterRegistry);
+        this.meterRegistry = meterRegistry;
+        this.getOriginalTimer = serviceTimer("getOriginal", "none");
+    }
 
-    public UrlService(UrlRepository urlRepository) {
-        this.urlRepository = urlRepository;
+    /**
+     * Timer of the same name and tags as the {@code @Timed} ones, for methods on the redirect
+     * path that are timed without the aspect's per-call tag and meter lookup.
+     */
+    private Timer serviceTimer(String method, String exception) {
+        return Timer.builder(METRIC_SERVICE)
+                .tags("class", UrlService.class.getName(), "method", method, "exception", exception)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     /**
-     * Retrieves an existing shortened URL by original URL.
+     * Retrieves an existing shortened URL by original URL, read through the cache under its
+     * canonical form.
      *
      * @param originalUrl the original URL
      * @return optional containing the URL mapping if found
      */
-    @Cacheable(value = "urlEntity", key = "#originalUrl")
+    @Timed(value = METRIC_SERVICE, histogram = true)
     public Optional<UrlEntity> get(String originalUrl){
-        return urlRepository.findByOriginalUrl(originalUrl);
+        String canonicalUrl = canonicalize(originalUrl);
+        try {
+            UrlEntity urlEntity = originalToShortCache.get(canonicalUrl, () -> urlStore.findByOriginalUrl(canonicalUrl)
+                    .filter(found -> !found.isExpired())
+                    .orElse(null));
+            return Optional.ofNullable(urlEntity).filter(found -> !found.isExpired());
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
     }
 
     /**
-     * Retrieves the original URL by shortened URL.
+     * @return the canonical form of the URL, or the URL itself if it is invalid
+     */
+    private String canonicalize(String originalUrl) {
+        String canonicalUrl = urlCanonicalizer.canonicalize(originalUrl);
+        return canonicalUrl != null ? canonicalUrl : originalUrl;
+    }
+
+    /**
+     * Retrieves the original URL by short code.
+     * <p>
+     * Codes rejected by the short code filter are not found right away and leave no cached
+     * miss behind; other codes are read through the cache, which coalesces concurrent misses.
+     * Timed with a pre-registered timer rather than {@code @Timed}, being on the redirect path.
      *
-     * @param shortenedUrl the shortened URL
+     * @param shortCode the short code, see {@link ShortUrls#toCode(String)}
      * @return optional containing the URL mapping if found
      */
-    @Cacheable(value = "urlEntity", key = "#shortenedUrl")
-    public Optional<UrlEntity> getOriginal(String shortenedUrl){
-        return urlRepository.findById(shortenedUrl);
+    public Optional<UrlEntity> getOriginal(String shortCode){
+        long start = System.nanoTime();
+        try {
+            Optional<UrlEntity> result = lookupOriginal(shortCode);
+            getOriginalTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            serviceTimer("getOriginal", e.getClass().getSimpleName()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Optional<UrlEntity> lookupOriginal(String shortCode) {
+        if (!shortCodeFilter.mightExist(shortCode)) return Optional.empty();
+        try {
+            UrlEntity urlEntity = shortToOriginalCache.get(shortCode, () -> urlStore.findByShortCode(shortCode)
+                    .filter(found -> !found.isExpired())
+                    .orElse(null));
+            if (urlEntity == null || urlEntity.isExpired()) return Optional.empty();
+            hotKeyTracker.record(shortCode);
+            return Optional.of(urlEntity);
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+
+    /**
+     * Resolves many original URLs to their mappings.
+     * <p>
+     * Cache hits are served in one pass; all misses are loaded with chunked {@code IN} queries
+     * and written back to the cache, including misses for unknown keys.
+     *
+     * @param originalUrls the original URLs
+     * @return one result per requested URL, in request order
+     */
+    public List<BatchLookupResult> getAll(List<String> originalUrls){
+        List<String> canonicalUrls = originalUrls.stream().map(this::canonicalize).toList();
+        Map<String, UrlEntity> resolved = resolveAll(canonicalUrls, originalToShortCache,
+                urlStore::findAllByOriginalUrlIn, UrlEntity::getOriginalUrl);
+
+        List<BatchLookupResult> results = new ArrayList<>(originalUrls.size());
+        for (int i = 0; i < originalUrls.size(); i++) {
+            String originalUrl = originalUrls.get(i);
+            UrlEntity urlEntity = resolved.get(canonicalUrls.get(i));
+            results.add(urlEntity != null
+                    ? new BatchLookupResult(urlEntity.getShortenedUrl(), originalUrl, true)
+                    : new BatchLookupResult(null, originalUrl, false));
+        }
+        return results;
     }
 
+    /**
+     * Resolves many shortened URLs to their mappings.
+     * <p>
+     * Codes rejected by the short code filter are not found without a lookup. Cache hits are
+     * served in one pass; all misses are loaded with chunked {@code IN} queries and
+     * written back to the cache, including misses for unknown keys.
+     *
+     * @param shortenedUrls the shortened URLs; URLs outside the short domain are reported as not found
+     * @return one result per requested URL, in request order
+     */
+    public List<BatchLookupResult> getOriginalAll(List<String> shortenedUrls){
+        List<String> shortCodes = new ArrayList<>(shortenedUrls.size());
+        for (String shortenedUrl : shortenedUrls) {
+            String shortCode = ShortUrls.toCode(shortenedUrl);
+            shortCodes.add(shortCode != null && shortCodeFilter.mightExist(shortCode) ? shortCode : null);
+        }
+        Map<String, UrlEntity> resolved = resolveAll(shortCodes, shortToOriginalCache,
+                urlStore::findAllByShortCodeIn, UrlEntity::getShortCode);
+
+        List<BatchLookupResult> results = new ArrayList<>(shortenedUrls.size());
+        for (int i = 0; i < shortenedUrls.size(); i++) {
+            String shortenedUrl = shortenedUrls.get(i);
+            String shortCode = shortCodes.get(i);
+            UrlEntity urlEntity = shortCode == null ? null : resolved.get(shortCode);
+            if (urlEntity != null) hotKeyTracker.record(shortCode);
+            results.add(urlEntity != null
+                    ? new BatchLookupResult(shortenedUrl, urlEntity.getOriginalUrl(), true)
+                    : new BatchLookupResult(shortenedUrl, null, false));
+        }
+        return results;
+    }
 
     /**
      * Creates a shortened URL if it does not exist yet,
      * or returns the existing mapping.
+     * <p>
+     * The mapping is written with a single insert-if-absent call to the store, so a new URL
+     * costs one write. A create racing with another create of the
+     * same URL, or hitting a taken short code, is recovered by re-reading the winner or by
+     * retrying with a fresh code, never surfacing the constraint violation. A URL whose hash
+     * belongs to another stored URL fails with {@link OriginalUrlHashCollisionException}.
      *
      * @param originalUrl the original URL to shorten
      * @return 201 if new, or 200 if already exists
      */
-    @Transactional
+    @Timed(value = METRIC_SERVICE, histogram = true)
     public ResponseEntity<UrlEntity> createOrGet(String originalUrl){
-        Optional<UrlEntity> urlEntityOptional = urlRepository.findByOriginalUrl(originalUrl);
-        if (urlEntityOptional.isPresent()) return ResponseEntity.ok().body(urlEntityOptional.get());
+        return createOrGet(originalUrl, null);
+    }
 
-        String shortenedUrl;
+    /**
+     * Creates a shortened URL that expires at the given time, or returns the existing mapping.
+     * <p>
+     * A live existing mapping keeps its own expiry. An expired one is deleted and replaced by
+     * a new mapping with a fresh short code.
+     *
+     * @param originalUrl the original URL to shorten
+     * @param expiresAt   end of the new link's lifetime, or {@code null} for a permanent link
+     * @return 201 if new, or 200 if already exists
+     */
+    @Timed(value = METRIC_SERVICE, histogram = true)
+    public ResponseEntity<UrlEntity> createOrGet(String originalUrl, Instant expiresAt){
+        originalUrl = canonicalize(originalUrl);
+        expiresAt = truncate(expiresAt);
+        Cache.ValueWrapper cached = originalToShortCache.get(originalUrl);
+        if (cached != null && cached.get() instanceof UrlEntity urlEntity && !urlEntity.isExpired()) {
+            return ResponseEntity.ok().body(urlEntity);
+        }
 
+        boolean unexplained = false;
         while(true){
-            shortenedUrl = HTTP_PROTOCOL_DOMAIN_SHORT + generateShortenedUrl();
-            Optional<UrlEntity> existingEntryOptional = urlRepository.findById(shortenedUrl);
-            if (existingEntryOptional.isEmpty()) break;
-            log.warn("{}: {}", ERROR_MESSAGE_SHORT_URL_EXISTS, shortenedUrl);
+            UrlEntity candidate = new UrlEntity(shortCodeGenerator.next(), originalUrl, expiresAt);
+            candidate.setCreatedAt(Instant.now());
+            if (insertRecorded(candidate)) {
+                UrlEntity result = saveToCache(candidate);
+                URI location = URI.create(result.getShortenedUrl());
+                return ResponseEntity.created(location).body(result);
+            }
+
+            Optional<UrlEntity> urlEntityOptional = urlStore.findByOriginalUrl(originalUrl);
+            if (urlEntityOptional.isPresent()) {
+                UrlEntity existing = urlEntityOptional.get();
+                if (!existing.isExpired()) return ResponseEntity.ok().body(saveToCache(existing));
+                removeExpired(List.of(existing), Instant.now());
+                continue;
+            }
+            if (urlStore.findByShortCode(candidate.getShortCode()).isEmpty()) {
+                // Neither the URL nor the code is stored: the blocking row was deleted meanwhile,
+                // or, if it happens again, another URL has the same hash
+                if (unexplained) throw new OriginalUrlHashCollisionException(originalUrl);
+                unexplained = true;
+                continue;
+            }
+            log.warn("{}: {}", ERROR_MESSAGE_SHORT_URL_EXISTS, candidate.getShortCode());
+            collisions.increment();
         }
+    }
 
-        UrlEntity result = urlRepository.save(new UrlEntity(shortenedUrl,originalUrl));
-        saveToCache(result);
+    /**
+     * Inserts the mapping unless the original URL is already mapped, recording the code in the
+     * short code filter before the insert and forgetting it again if nothing was inserted.
+     * Other instances are told once the insert committed.
+     *
+     * @return {@code true} if inserted, {@code false} if the URL or the short code is already taken
+     */
+    private boolean insertRecorded(UrlEntity urlEntity) {
+        shortCodeFilter.add(urlEntity.getShortCode());
+        boolean inserted = false;
+        try {
+            inserted = urlStore.insertIfAbsent(urlEntity);
+            if (inserted) {
+                afterCompletion(committed -> {
+                    if (committed) invalidationBus.created(urlEntity);
+                });
+            }
+            return inserted;
+        } finally {
+            if (!inserted) shortCodeFilter.remove(urlEntity.getShortCode());
+        }
+    }
 
-        URI location = URI.create(result.getShortenedUrl());
 
-        return ResponseEntity.created(location).body(result);
+    /**
+     * Creates shortened URLs for a batch of original URLs in one transaction.
+     * <p>
+     * Duplicates, also differently spelled ones, are collapsed, existing mappings are fetched
+     * with {@code IN} queries and the remaining mappings are inserted in one batch.
+     *
+     * @param originalUrls the original URLs to shorten
+     * @return one result per input URL, in input order
+     */
+    @Transactional
+    public List<BatchShortenResult> createOrGetAll(List<String> originalUrls){
+        return createOrGetAll(originalUrls, null);
     }
 
+    /**
+     * Cuts an expiry down to the millisecond precision every store keeps, so a stored expiry
+     * is never rounded up past the time it was requested for.
+     */
+    private static Instant truncate(Instant expiresAt) {
+        return expiresAt == null ? null : expiresAt.truncatedTo(ChronoUnit.MILLIS);
+    }
 
     /**
-     * Deletes a mapping by original URL and evicts both cache entries.
+     * Creates shortened URLs that expire at the given time for a batch of original URLs in one
+     * transaction, see {@link #createOrGet(String, Instant)}.
+     * <p>
+     * Expired existing mappings are deleted in one batch and replaced like missing ones. New
+     * mappings are cached only once the transaction committed.
      *
-     * @param originalUrl the original URL
+     * @param originalUrls the original URLs to shorten
+     * @param expiresAt    end of the new links' lifetime, or {@code null} for permanent links
+     * @return one result per input URL, in input order
      */
-    @CacheEvict(value = "urlEntity", key = "#originalUrl")
     @Transactional
-    public void delete(String originalUrl){
-        Optional<UrlEntity> urlEntityOptional = urlRepository.findByOriginalUrl(originalUrl);
-        if (urlEntityOptional.isEmpty()) return;
+    public List<BatchShortenResult> createOrGetAll(List<String> originalUrls, Instant expiresAt){
+        expiresAt = truncate(expiresAt);
+        List<String> canonicalUrls = new ArrayList<>(originalUrls.size());
+        Set<String> uniqueUrls = new LinkedHashSet<>();
+        for (String originalUrl : originalUrls) {
+            String canonicalUrl = urlCanonicalizer.canonicalize(originalUrl);
+            canonicalUrls.add(canonicalUrl);
+            if (canonicalUrl != null) uniqueUrls.add(canonicalUrl);
+        }
 
-        UrlEntity urlEntity = urlEntityOptional.get();
+        Map<String, UrlEntity> existing = new HashMap<>();
+        for (List<String> chunk : chunks(uniqueUrls)) {
+            for (UrlEntity urlEntity : urlStore.findAllByOriginalUrlIn(chunk)) {
+                existing.put(urlEntity.getOriginalUrl(), urlEntity);
+            }
+        }
+        List<UrlEntity> expired = existing.values().stream().filter(UrlEntity::isExpired).toList();
+        if (!expired.isEmpty()) {
+            removeExpired(expired, Instant.now());
+            expired.forEach(urlEntity -> existing.remove(urlEntity.getOriginalUrl()));
+        }
 
-        urlRepository.delete(urlEntity);
-        evictShortened(urlEntity.getShortenedUrl());
+        Map<String, UrlEntity> created = new LinkedHashMap<>();
+        Instant now = Instant.now();
+        for (String originalUrl : uniqueUrls) {
+            if (existing.containsKey(originalUrl)) continue;
+            UrlEntity urlEntity = new UrlEntity(null, originalUrl, expiresAt);
+            urlEntity.setCreatedAt(now);
+            created.put(originalUrl, urlEntity);
+        }
+        assignShortCodes(created.values());
+        created.values().forEach(urlEntity -> shortCodeFilter.add(urlEntity.getShortCode()));
+        afterCompletion(committed -> {
+            if (committed) {
+                created.values().forEach(this::saveToCache);
+                created.values().forEach(invalidationBus::created);
+            } else {
+                created.values().forEach(urlEntity -> shortCodeFilter.remove(urlEntity.getShortCode()));
+            }
+        });
+        urlStore.insertAll(created.values());
 
+        List<BatchShortenResult> results = new ArrayList<>(originalUrls.size());
+        for (int i = 0; i < originalUrls.size(); i++) {
+            String originalUrl = originalUrls.get(i);
+            String canonicalUrl = canonicalUrls.get(i);
+            UrlEntity urlEntity;
+            if ((urlEntity = created.get(canonicalUrl)) != null) {
+                results.add(new BatchShortenResult(urlEntity.getShortenedUrl(), originalUrl, Status.CREATED));
+            } else if ((urlEntity = existing.get(canonicalUrl)) != null) {
+                results.add(new BatchShortenResult(urlEntity.getShortenedUrl(), originalUrl, Status.EXISTING));
+            } else {
+                results.add(new BatchShortenResult(null, originalUrl, Status.INVALID));
+            }
+        }
+        return results;
     }
 
+    /**
+     * Deletes a mapping by original URL and evicts both cache entries, here and, once
+     * committed, on the other instances.
+     *
+     * @param originalUrl the original URL
+     */
+    @Timed(value = METRIC_SERVICE, histogram = true)
+    @Transactional
+    public void delete(String originalUrl){
+        originalUrl = canonicalize(originalUrl);
+        Optional<UrlEntity> urlEntityOptional = urlStore.findByOriginalUrl(originalUrl);
+        if (urlEntityOptional.isEmpty()) {
+            originalToShortCache.evict(originalUrl);
+            return;
+        }
+
+        UrlEntity urlEntity = urlEntityOptional.get();
 
+        urlStore.delete(urlEntity);
+        evict(urlEntity);
+        afterCompletion(committed -> {
+            if (!committed) return;
+            // Again, in case a concurrent lookup cached the row before the delete committed
+            evict(urlEntity);
+            shortCodeFilter.remove(urlEntity.getShortCode());
+            invalidationBus.deleted(urlEntity);
+        });
+    }
 
     /**
-     * Updates the cache with the newly saved entity (keyed by original URL).
+     * Deletes expired mappings in batches of at most {@code batchSize}, reading them from the
+     * store's expiry index and evicting both cache entries of each.
      *
-     * @param result the saved entity
-     * @return the same entity
+     * @param now       mappings expiring at or before this instant are deleted
+     * @param batchSize maximum number of mappings per delete
+     * @return number of mappings deleted
      */
-    @CachePut(value = "urlEntity", key = "#result.originalUrl")
-    public UrlEntity saveToCache(UrlEntity result) {
-        return result;
+    public int purgeExpired(Instant now, int batchSize) {
+        int purged = 0;
+        List<UrlEntity> batch;
+        do {
+            batch = urlStore.findExpired(now, batchSize);
+            if (!batch.isEmpty()) purged += removeExpired(batch, now);
+        } while (batch.size() == batchSize);
+        return purged;
     }
 
     /**
-     * Evicts the cache entry by shortened URL.
+     * Deletes expired mappings with one store call and evicts them from both caches, here and
+     * on the other instances. Their codes are removed from the short code filter once
+     * committed, but only if every one was deleted by this call: removing a code twice could
+     * drop another code's entry, while a code left behind only costs a lookup.
      *
-     * @param shortenedUrl the shortened URL
+     * @return number of mappings deleted
      */
-    @CacheEvict(value = "urlEntity", key = "#shortenedUrl")
-    public void evictShortened(String shortenedUrl) {
+    private int removeExpired(List<UrlEntity> expired, Instant now) {
+        int deleted = urlStore.deleteExpired(expired, now);
+        expired.forEach(this::evict);
+        afterCompletion(committed -> {
+            if (!committed) return;
+            expired.forEach(this::evict);
+            if (deleted == expired.size()) expired.forEach(urlEntity -> shortCodeFilter.remove(urlEntity.getShortCode()));
+            expired.forEach(invalidationBus::deleted);
+        });
+        return deleted;
     }
 
     /**
-     * Generates a 6-character case-randomized alphanumeric string based on UUID.
+     * Runs the action once the surrounding transaction completes, or right away outside of one.
      *
-     * @return randomized shortened ID
+     * @param action receives {@code true} if the transaction committed
      */
-    protected String generateShortenedUrl(){
-        return randomizeCase(UUID.randomUUID().toString().replace("-","").substring(0,6));
+    private static void afterCompletion(Consumer<Boolean> action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.accept(status == STATUS_COMMITTED);
+            }
+        });
     }
 
+
+
     /**
-     * Randomizes the case of each alphabetic character in the input string.
-     *
-     * @param input the base string
-     * @return a string with randomly upper/lowercased letters
+     * Assigns a fresh short code to every entity. Unless the generator is collision free,
+     * taken codes are detected with one {@code IN} query per round and regenerated.
      */
-    protected String randomizeCase(String input) {
-        Random random = new Random();
-        StringBuilder result = new StringBuilder();
+    private void assignShortCodes(Collection<UrlEntity> urlEntities) {
+        Collection<UrlEntity> pending = urlEntities;
+        while (!pending.isEmpty()) {
+            Map<String, UrlEntity> byShortCode = new HashMap<>();
+            for (UrlEntity urlEntity : pending) {
+                String shortCode;
+                do {
+                    shortCode = shortCodeGenerator.next();
+                } while (byShortCode.containsKey(shortCode));
+                urlEntity.setShortCode(shortCode);
+                byShortCode.put(shortCode, urlEntity);
+            }
+            if (shortCodeGenerator.isCollisionFree()) return;
 
-        for (char c : input.toCharArray()) {
-            if (Character.isLetter(c)) {
-                if (random.nextBoolean()) {
-                    result.append(Character.toUpperCase(c));
-                } else {
-                    result.append(Character.toLowerCase(c));
+            List<UrlEntity> collided = new ArrayList<>();
+            for (List<String> chunk : chunks(byShortCode.keySet())) {
+                for (UrlEntity taken : urlStore.findAllByShortCodeIn(chunk)) {
+                    log.warn("{}: {}", ERROR_MESSAGE_SHORT_URL_EXISTS, taken.getShortCode());
+                    collisions.increment();
+                    collided.add(byShortCode.get(taken.getShortCode()));
                 }
-            } else {
-                result.append(c);
+            }
+            pending = collided;
+        }
+    }
+
+    /**
+     * Looks keys up in the cache and loads the misses in bulk.
+     *
+     * @return found mappings by key; unknown keys are absent
+     */
+    private Map<String, UrlEntity> resolveAll(Collection<String> keys, Cache cache,
+                                              Function<List<String>, List<UrlEntity>> loader,
+                                              Function<UrlEntity, String> keyOf) {
+        Map<String, UrlEntity> resolved = new HashMap<>();
+        Set<String> misses = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (key == null || resolved.containsKey(key) || misses.contains(key)) continue;
+            Cache.ValueWrapper cached = cache.get(key);
+            if (cached == null) {
+                misses.add(key);
+            } else if (cached.get() instanceof UrlEntity urlEntity && !urlEntity.isExpired()) {
+                resolved.put(key, urlEntity);
             }
         }
 
-        return result.toString();
+        for (List<String> chunk : chunks(misses)) {
+            for (UrlEntity urlEntity : loader.apply(chunk)) {
+                if (urlEntity.isExpired()) continue;
+                String key = keyOf.apply(urlEntity);
+                resolved.put(key, urlEntity);
+                cache.put(key, urlEntity);
+            }
+            for (String key : chunk) {
+                if (!resolved.containsKey(key)) cache.put(key, null);
+            }
+        }
+        return resolved;
+    }
+
+    private static List<List<String>> chunks(Collection<String> keys) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(Math.min(keys.size(), IN_QUERY_CHUNK_SIZE));
+        for (String key : keys) {
+            chunk.add(key);
+            if (chunk.size() == IN_QUERY_CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(IN_QUERY_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) chunks.add(chunk);
+        return chunks;
+    }
+
+    /**
+     * Puts the newly saved entity into both lookup caches, replacing any cached miss.
+     *
+     * @param result the saved entity
+     * @return the same entity
+     */
+    public UrlEntity saveToCache(UrlEntity result) {
+        originalToShortCache.put(result.getOriginalUrl(), result);
+        shortToOriginalCache.put(result.getShortCode(), result);
+        return result;
+    }
+
+    /**
+     * Evicts the mapping from both lookup caches.
+     *
+     * @param urlEntity the removed mapping
+     */
+    public void evict(UrlEntity urlEntity) {
+        originalToShortCache.evict(urlEntity.getOriginalUrl());
+        shortToOriginalCache.evict(urlEntity.getShortCode());
     }
 }
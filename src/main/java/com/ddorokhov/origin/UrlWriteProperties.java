@@ -0,0 +1,54 @@
+package com.ddorokhov.origin;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Write path settings, bound to {@code origin.write.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.write")
+public class UrlWriteProperties {
+    /**
+     * How a new mapping is inserted without racing concurrent creates of the same URL.
+     */
+    private UpsertStrategy upsert = UpsertStrategy.MERGE;
+    private GroupCommit groupCommit = new GroupCommit();
+
+    public enum UpsertStrategy {
+        /**
+         * Single SQL:2003 {@code MERGE ... WHEN NOT MATCHED THEN INSERT} statement (H2, PostgreSQL 15+, Oracle, SQL Server).
+         */
+        MERGE,
+        /**
+         * Plain insert, recovering from the unique constraint violation. For databases without {@code MERGE}.
+         */
+        INSERT
+    }
+
+    /**
+     * Queues single creates and writes them in shared batches, see
+     * {@link com.ddorokhov.origin.store.GroupCommitUrlStore}.
+     */
+    @Data
+    public static class GroupCommit {
+        /**
+         * Whether single creates are group committed.
+         */
+        private boolean enabled = false;
+        /**
+         * Largest number of creates written in one batch.
+         */
+        private int maxBatchSize = 256;
+        /**
+         * Longest time the first create of a batch waits for others to join it.
+         */
+        private Duration maxDelay = Duration.ofMillis(2);
+        /**
+         * Creates that may wait for the writer before callers block.
+         */
+        private int queueCapacity = 4096;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ddorokhov.origin.analytics;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the scheduled click flushes configured by {@code origin.clicks.*}.
+ */
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(ClickProperties.class)
+public class ClickConfig {
+}
@@ -0,0 +1,77 @@
+package com.ddorokhov.origin.analytics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Striped in-memory click counters keyed by short code.
+ * <p>
+ * Recording a click of a link that was already clicked since the last drain is a lock-free
+ * {@link LongAdder} increment and allocates nothing. Counters left idle for a whole drain
+ * interval are removed; a click racing with that removal may be lost.
+ */
+@Component
+public class ClickCounter {
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param shortCode the clicked short code
+     */
+    public void record(String shortCode) {
+        LongAdder counter = counters.get(shortCode);
+        if (counter == null) counter = counters.computeIfAbsent(shortCode, code -> new LongAdder());
+        counter.increment();
+    }
+
+    /**
+     * @param shortCode the short code
+     * @return clicks recorded but not drained yet
+     */
+    public long pending(String shortCode) {
+        LongAdder counter = counters.get(shortCode);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Takes the clicks recorded since the previous drain and resets the counters.
+     *
+     * @return clicks per short code, only codes with at least one click
+     */
+    public Map<String, Long> drain() {
+        Map<String, Long> clicks = new HashMap<>();
+        counters.forEach((shortCode, counter) -> {
+            long count = counter.sumThenReset();
+            if (count == 0 && counters.remove(shortCode, counter)) count = counter.sumThenReset();
+            if (count > 0) clicks.put(shortCode, count);
+        });
+        return clicks;
+    }
+
+    /**
+     * Adds drained clicks back, e.g. after a failed write.
+     *
+     * @param clicks clicks per short code
+     */
+    public void restore(Map<String, Long> clicks) {
+        clicks.forEach((shortCode, count) -> counters.computeIfAbsent(shortCode, code -> new LongAdder()).add(count));
+    }
+
+    /**
+     * @param clicks clicks per short code that will never be written
+     */
+    public void drop(Map<String, Long> clicks) {
+        clicks.values().forEach(dropped::add);
+    }
+
+    /**
+     * @return total clicks discarded by the {@link ClickProperties.OverflowPolicy#DROP} policy
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,120 @@
+package com.ddorokhov.origin.analytics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves clicks from {@link ClickCounter} to the {@code url_click_stats} table.
+ * <p>
+ * Every {@code origin.clicks.flush-interval} the counters are drained into one batch and
+ * handed to a single writer thread through a bounded queue, so a slow database never delays
+ * aggregation or the redirect path. The writer adds each batch to the stored counts with
+ * one batched {@code MERGE} in a single transaction. A batch that finds the queue full or
+ * fails to be written is handled by {@code origin.clicks.overflow}.
+ */
+@Component
+@Slf4j
+public class ClickFlusher {
+    private static final String MERGE_CLICKS = "MERGE INTO url_click_stats t " +
+            "USING (SELECT CAST(? AS VARCHAR(16)) AS short_code, CAST(? AS BIGINT) AS clicks) s " +
+            "ON t.short_code = s.short_code " +
+            "WHEN MATCHED THEN UPDATE SET t.clicks = t.clicks + s.clicks " +
+            "WHEN NOT MATCHED THEN INSERT (short_code, clicks) VALUES (s.short_code, s.clicks)";
+
+    private final ClickCounter clickCounter;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClickProperties properties;
+    private final BlockingQueue<Map<String, Long>> queue;
+    private final Thread writer = new Thread(this::writeLoop, "click-writer");
+    private volatile boolean running = true;
+
+    public ClickFlusher(ClickCounter clickCounter, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                        ClickProperties properties) {
+        this.clickCounter = clickCounter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    void start() {
+        writer.start();
+    }
+
+    /**
+     * Drains the counters into a batch for the writer.
+     */
+    @Scheduled(fixedDelayString = "${origin.clicks.flush-interval:5s}")
+    public void flush() {
+        Map<String, Long> batch = clickCounter.drain();
+        if (batch.isEmpty()) return;
+        if (!queue.offer(batch)) {
+            log.warn("Click queue full, applying {} policy to {} links", properties.getOverflow(), batch.size());
+            overflow(batch);
+        }
+    }
+
+    /**
+     * Lets the writer finish the queued batches, then writes what is left in the counters.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        Map<String, Long> remaining = clickCounter.drain();
+        if (!remaining.isEmpty() && !write(remaining)) log.warn("Lost clicks of {} links on shutdown", remaining.size());
+    }
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            Map<String, Long> batch;
+            try {
+                batch = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch != null && !write(batch)) overflow(batch);
+        }
+    }
+
+    /**
+     * @return {@code true} if the batch was committed
+     */
+    boolean write(Map<String, Long> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        batch.forEach((shortCode, clicks) -> rows.add(new Object[]{shortCode, clicks}));
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(MERGE_CLICKS, rows));
+            return true;
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Failed to write clicks of {} links", batch.size(), e);
+            return false;
+        }
+    }
+
+    private void overflow(Map<String, Long> batch) {
+        switch (properties.getOverflow()) {
+            case RETAIN -> clickCounter.restore(batch);
+            case DROP -> clickCounter.drop(batch);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.ddorokhov.origin.analytics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Click analytics settings, bound to {@code origin.clicks.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.clicks")
+public class ClickProperties {
+    /**
+     * Interval between aggregations of the in-memory counters into a write batch.
+     */
+    private Duration flushInterval = Duration.ofSeconds(5);
+    /**
+     * Number of aggregated batches that may wait for the database writer.
+     */
+    private int queueCapacity = 16;
+    /**
+     * What happens to a batch that finds the queue full or fails to be written.
+     */
+    private OverflowPolicy overflow = OverflowPolicy.RETAIN;
+
+    public enum OverflowPolicy {
+        /**
+         * Add the counts back to the in-memory counters, to be written with a later batch.
+         * Memory stays bounded by the number of clicked links; nothing is lost while the
+         * application runs.
+         */
+        RETAIN,
+        /**
+         * Discard the counts and record them as dropped.
+         */
+        DROP
+    }
+}
@@ -0,0 +1,17 @@
+package com.ddorokhov.origin.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Redirect count of one short link: the flushed count plus clicks still held in memory.
+ * Clicks of a batch waiting for the database writer are briefly not included.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ClickStats {
+    String shortenedUrl;
+    long clicks;
+}
@@ -0,0 +1,49 @@
+package com.ddorokhov.origin.analytics;
+
+import com.ddorokhov.origin.ShortUrls;
+import com.ddorokhov.origin.store.UrlStore;
+import jakarta.validation.constraints.NotBlank;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static com.ddorokhov.origin.Constants.PATH_STATS;
+
+/**
+ * Serves redirect counts per short link.
+ * <p>
+ * The link is looked up in the store, not through the redirect cache, so reading stats
+ * neither counts as a hit of the code nor warms the cache with it.
+ */
+@RestController
+@Validated
+public class ClickStatsController {
+    private final UrlStore urlStore;
+    private final UrlClickStatsRepository clickStatsRepository;
+    private final ClickCounter clickCounter;
+
+    public ClickStatsController(UrlStore urlStore, UrlClickStatsRepository clickStatsRepository, ClickCounter clickCounter) {
+        this.urlStore = urlStore;
+        this.clickStatsRepository = clickStatsRepository;
+        this.clickCounter = clickCounter;
+    }
+
+    /**
+     * Returns the number of redirects issued for a shortened URL.
+     *
+     * @param shortenedUrl the shortened URL
+     * @return {@code 200 OK} with {@link ClickStats}, or {@code 404 Not Found} if the link does not exist
+     */
+    @GetMapping(path = PATH_STATS)
+    public ResponseEntity<ClickStats> getStats(@NotBlank @RequestParam String shortenedUrl) {
+        String shortCode = ShortUrls.toCode(shortenedUrl);
+        if (shortCode == null || urlStore.findByShortCode(shortCode).filter(urlEntity -> !urlEntity.isExpired()).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        long flushed = clickStatsRepository.findById(shortCode).map(UrlClickStats::getClicks).orElse(0L);
+        return ResponseEntity.ok(new ClickStats(shortenedUrl, flushed + clickCounter.pending(shortCode)));
+    }
+}
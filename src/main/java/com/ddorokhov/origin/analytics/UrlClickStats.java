@@ -0,0 +1,25 @@
+package com.ddorokhov.origin.analytics;
+
+import com.ddorokhov.origin.Constants;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Flushed click count of one short link. Rows are only written by {@link ClickFlusher}.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "url_click_stats")
+public class UrlClickStats {
+    @Id
+    @Column(length = Constants.SHORT_CODE_MAX_LENGTH)
+    String shortCode;
+    long clicks;
+}
@@ -0,0 +1,6 @@
+package com.ddorokhov.origin.analytics;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface UrlClickStatsRepository extends JpaRepository<UrlClickStats, String> {
+}
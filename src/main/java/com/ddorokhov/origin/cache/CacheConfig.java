@@ -0,0 +1,134 @@
+package com.ddorokhov.origin.cache;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.ddorokhov.origin.store.UrlStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.support.NullValue;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.ddorokhov.origin.Constants.CACHE_ORIGINAL_TO_SHORT;
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
+
+/**
+ * Configures bounded Caffeine caches for both lookup directions.
+ * <p>
+ * Each cache is size-bounded (W-TinyLFU eviction), records hit/miss/eviction statistics
+ * and keeps cached misses for a much shorter time than cached mappings. Concurrent misses
+ * for the same key are coalesced into one load by {@link SingleFlightCache}. Unknown short
+ * codes are stopped before the cache by {@link ShortCodeFilter}. The redirect cache is warmed on
+ * startup from a {@link HotKeySnapshot}.
+ * <p>
+ * The redirect cache weighs the short codes pinned by {@link HotKeyTracker} as zero, which
+ * exempts them from size-based eviction; it is bounded by the maximum size plus at most the
+ * top K pinned mappings. A mapping is re-weighed when written, so mappings pinned or unpinned
+ * are written again in place, which also restarts their lifetime.
+ */
+@Configuration
+@EnableConfigurationProperties(UrlCacheProperties.class)
+public class CacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(UrlCacheProperties properties, HotKeyTracker hotKeyTracker) {
+        long loadTimeoutNanos = properties.getLoadTimeout().toNanos();
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return new SingleFlightCache(super.adaptCaffeineCache(name, cache), loadTimeoutNanos);
+            }
+        };
+        cacheManager.setAllowNullValues(true);
+        cacheManager.setCacheNames(List.of());
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> shortToOriginal = buildCache(properties.getShortToOriginal(), hotKeyTracker);
+        hotKeyTracker.setPinListener(changed -> changed.forEach(code -> shortToOriginal.asMap().computeIfPresent(code, (key, value) -> value)));
+        cacheManager.registerCustomCache(CACHE_SHORT_TO_ORIGINAL, shortToOriginal);
+        cacheManager.registerCustomCache(CACHE_ORIGINAL_TO_SHORT, buildCache(properties.getOriginalToShort(), null));
+        return cacheManager;
+    }
+
+    @Bean
+    public HotKeyTracker hotKeyTracker(UrlCacheProperties properties) {
+        return new HotKeyTracker(properties.getHotKeys());
+    }
+
+    @Bean
+    public HotKeysEndpoint hotKeysEndpoint(HotKeyTracker hotKeyTracker) {
+        return new HotKeysEndpoint(hotKeyTracker);
+    }
+
+    @Bean
+    public ShortCodeFilter shortCodeFilter(UrlCacheProperties properties) {
+        return new ShortCodeFilter(properties.getShortCodeFilter());
+    }
+
+    @Bean
+    public ShortCodeFilterLoader shortCodeFilterLoader(ShortCodeFilter shortCodeFilter, UrlStore urlStore) {
+        return new ShortCodeFilterLoader(shortCodeFilter, urlStore);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "origin.cache.snapshot", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public HotKeySnapshot hotKeySnapshot(UrlCacheProperties properties, CacheManager cacheManager, UrlStore urlStore) {
+        return new HotKeySnapshot(properties.getSnapshot(), cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL), urlStore);
+    }
+
+    /**
+     * @param hotKeyTracker tracker whose pinned keys are never evicted for size, or {@code null}
+     */
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> buildCache(UrlCacheProperties.Spec spec, HotKeyTracker hotKeyTracker) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        if (hotKeyTracker == null) {
+            builder.maximumSize(spec.getMaximumSize());
+        } else {
+            builder.maximumWeight(spec.getMaximumSize())
+                    .weigher((key, value) -> value instanceof UrlEntity && hotKeyTracker.isPinned(key) ? 0 : 1);
+        }
+        return builder
+                .expireAfter(new NegativeAwareExpiry(spec.getExpireAfterWrite().toNanos(), spec.getNegativeTtl().toNanos()))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Expires cached misses ({@link NullValue}) after the negative TTL and mappings after the regular TTL,
+     * or when the link expires if that comes first.
+     */
+    static class NegativeAwareExpiry implements Expiry<Object, Object> {
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        NegativeAwareExpiry(long ttlNanos, long negativeTtlNanos) {
+            this.ttlNanos = ttlNanos;
+            this.negativeTtlNanos = negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            if (value == NullValue.INSTANCE) return negativeTtlNanos;
+            if (value instanceof UrlEntity urlEntity && urlEntity.getExpiresAt() != null) {
+                long untilExpiry = TimeUnit.MILLISECONDS.toNanos(urlEntity.getExpiresAt().toEpochMilli() - System.currentTimeMillis());
+                return Math.max(0, Math.min(ttlNanos, untilExpiry));
+            }
+            return ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
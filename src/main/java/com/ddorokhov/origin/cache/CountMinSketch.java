@@ -0,0 +1,74 @@
+package com.ddorokhov.origin.cache;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Approximate counts of many keys in fixed memory.
+ * <p>
+ * The sketch has {@code depth} rows of {@code width} counters; a key adds to one counter
+ * per row, chosen from its 64-bit hash by double hashing. The estimate of a key is the
+ * smallest of its counters: it never undercounts, and exceeds the true count by more than
+ * {@code e / width} of all increments only with a probability of {@code e^-depth}.
+ * Additions are lock free; counts racing with {@link #halve()} may lose half an addition.
+ * Callers that count a sample of the occurrences add the sampling rate at once, which keeps
+ * the estimates unbiased and the shared counters written that many times less often.
+ */
+class CountMinSketch {
+    private static final int MAX_COUNTERS = 1 << 26;
+
+    private final AtomicIntegerArray counters;
+    private final int width;
+    private final int depth;
+    private final int mask;
+
+    CountMinSketch(int width, int depth) {
+        if (width < 1 || Integer.bitCount(width) != 1) throw new IllegalArgumentException("Sketch width must be a power of two: " + width);
+        if (depth < 1 || (long) width * depth > MAX_COUNTERS) throw new IllegalArgumentException("Invalid sketch depth: " + depth);
+        this.counters = new AtomicIntegerArray(width * depth);
+        this.width = width;
+        this.depth = depth;
+        this.mask = width - 1;
+    }
+
+    /**
+     * Counts occurrences of the key.
+     *
+     * @param hash  hash of the key
+     * @param count number of occurrences
+     * @return the estimate of the key including these occurrences
+     */
+    int add(long hash, int count) {
+        int first = (int) hash;
+        int step = (int) (hash >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int sum = counters.addAndGet(row * width + ((first + row * step) & mask), count);
+            if (sum < estimate) estimate = sum;
+        }
+        return estimate;
+    }
+
+    /**
+     * @param hash hash of the key
+     * @return the estimated number of occurrences of the key
+     */
+    int estimate(long hash) {
+        int first = (int) hash;
+        int step = (int) (hash >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int count = counters.get(row * width + ((first + row * step) & mask));
+            if (count < estimate) estimate = count;
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves all counters, so older occurrences weigh less than recent ones.
+     */
+    void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, count -> count >>> 1);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.ddorokhov.origin.cache;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Approximate set of strings that supports deletion.
+ * <p>
+ * Each entry is stored as a 16-bit fingerprint in one of two candidate buckets of four slots
+ * (partial-key cuckoo hashing); a bucket is packed into a single {@code long}. Lookups never
+ * miss an added entry and report an absent one as present with a probability of about
+ * 8 / 65536 (0.012%). Removing an entry that was never added may remove another entry's
+ * fingerprint, so only added entries may be removed. The same entry may be added more than
+ * once and then has to be removed as often.
+ * <p>
+ * Lookups are lock free and retry under a read lock only if they overlap a write; additions
+ * and removals take the write lock.
+ */
+public class CuckooFilter {
+    static final int SLOTS_PER_BUCKET = 4;
+    private static final double MAX_LOAD = 0.95;
+    private static final int MAX_KICKS = 500;
+    private static final long LANE_LOW_BITS = 0x0001_0001_0001_0001L;
+    private static final long LANE_HIGH_BITS = 0x8000_8000_8000_8000L;
+
+    private final long[] buckets;
+    private final int mask;
+    private final StampedLock lock = new StampedLock();
+    private long size;
+    private long random = 0x9E37_79B9_7F4A_7C15L;
+    // Fingerprint displaced by the last failed insertion; once set the filter is full.
+    private boolean hasVictim;
+    private int victimIndex;
+    private int victimFingerprint;
+
+    /**
+     * @param expectedEntries number of entries the filter must hold
+     */
+    public CuckooFilter(long expectedEntries) {
+        long needed = Math.max(1, (long) Math.ceil(expectedEntries / (SLOTS_PER_BUCKET * MAX_LOAD)));
+        if (needed > 1 << 30) throw new IllegalArgumentException("Too many entries: " + expectedEntries);
+        int bucketCount = Integer.highestOneBit((int) needed);
+        if (bucketCount < needed) bucketCount <<= 1;
+        this.buckets = new long[bucketCount];
+        this.mask = bucketCount - 1;
+    }
+
+    /**
+     * @param value the entry
+     * @return {@code false} if the entry was definitely never added (or has been removed)
+     */
+    public boolean mightContain(CharSequence value) {
+        long hash = hash(value);
+        int fingerprint = fingerprint(hash);
+        int index = (int) hash & mask;
+        long stamp = lock.tryOptimisticRead();
+        boolean found = contains(index, fingerprint);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = contains(index, fingerprint);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param value the entry
+     * @return {@code false} if the filter is full and the entry was not added
+     */
+    public boolean add(CharSequence value) {
+        long hash = hash(value);
+        int fingerprint = fingerprint(hash);
+        int index = (int) hash & mask;
+        long stamp = lock.writeLock();
+        try {
+            if (hasVictim) return false;
+            size++;
+            if (put(index, fingerprint) || put(alternate(index, fingerprint), fingerprint)) return true;
+
+            if ((nextRandom() & 1) == 0) index = alternate(index, fingerprint);
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int slot = (int) (nextRandom() & (SLOTS_PER_BUCKET - 1));
+                int displaced = lane(buckets[index], slot);
+                buckets[index] = withLane(buckets[index], slot, fingerprint);
+                fingerprint = displaced;
+                index = alternate(index, fingerprint);
+                if (put(index, fingerprint)) return true;
+            }
+            // The new entry is stored; the fingerprint left over waits here until a removal frees a slot.
+            hasVictim = true;
+            victimIndex = index;
+            victimFingerprint = fingerprint;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes one copy of a previously added entry.
+     *
+     * @param value the entry
+     * @return {@code true} if a matching fingerprint was removed
+     */
+    public boolean remove(CharSequence value) {
+        long hash = hash(value);
+        int fingerprint = fingerprint(hash);
+        int index = (int) hash & mask;
+        int alternate = alternate(index, fingerprint);
+        long stamp = lock.writeLock();
+        try {
+            boolean removed;
+            if (hasVictim && victimFingerprint == fingerprint && (victimIndex == index || victimIndex == alternate)) {
+                hasVictim = false;
+                removed = true;
+            } else {
+                removed = delete(index, fingerprint) || delete(alternate, fingerprint);
+                if (removed && hasVictim) {
+                    hasVictim = !(put(victimIndex, victimFingerprint)
+                            || put(alternate(victimIndex, victimFingerprint), victimFingerprint));
+                }
+            }
+            if (removed) size--;
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return number of entries added and not removed
+     */
+    public long size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return number of fingerprint slots
+     */
+    public long capacity() {
+        return (long) buckets.length * SLOTS_PER_BUCKET;
+    }
+
+    private boolean contains(int index, int fingerprint) {
+        return bucketContains(buckets[index], fingerprint)
+                || bucketContains(buckets[alternate(index, fingerprint)], fingerprint)
+                || (hasVictim && victimFingerprint == fingerprint
+                    && (victimIndex == index || victimIndex == alternate(index, fingerprint)));
+    }
+
+    private boolean put(int index, int fingerprint) {
+        long bucket = buckets[index];
+        for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+            if (lane(bucket, slot) == 0) {
+                buckets[index] = withLane(bucket, slot, fingerprint);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean delete(int index, int fingerprint) {
+        long bucket = buckets[index];
+        for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+            if (lane(bucket, slot) == fingerprint) {
+                buckets[index] = withLane(bucket, slot, 0);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks all four 16-bit lanes at once: XOR zeroes the matching lanes, which the
+     * has-zero-lane test then detects.
+     */
+    static boolean bucketContains(long bucket, int fingerprint) {
+        long diff = bucket ^ (fingerprint * LANE_LOW_BITS);
+        return ((diff - LANE_LOW_BITS) & ~diff & LANE_HIGH_BITS) != 0;
+    }
+
+    private static int lane(long bucket, int slot) {
+        return (int) (bucket >>> (slot << 4)) & 0xFFFF;
+    }
+
+    private static long withLane(long bucket, int slot, int fingerprint) {
+        int shift = slot << 4;
+        return (bucket & ~(0xFFFFL << shift)) | ((long) fingerprint << shift);
+    }
+
+    private int alternate(int index, int fingerprint) {
+        return (index ^ (fingerprint * 0x5BD1_E995)) & mask;
+    }
+
+    /**
+     * @return a non-zero fingerprint; zero marks an empty slot
+     */
+    private static int fingerprint(long hash) {
+        int fingerprint = (int) (hash >>> 48);
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private long nextRandom() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return random;
+    }
+
+    /**
+     * FNV-1a over the characters, finished with the MurmurHash3 mixer so that both the
+     * bucket index (low bits) and the fingerprint (high bits) depend on every character.
+     */
+    static long hash(CharSequence value) {
+        long hash = 0xCBF2_9CE4_8422_2325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x0000_0100_0000_01B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51_AFD7_ED55_8CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CE_B9FE_1A85_EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,12 @@
+package com.ddorokhov.origin.cache;
+
+/**
+ * One of the most requested short codes, as reported by {@link HotKeyTracker}.
+ *
+ * @param shortCode     the short code
+ * @param count         estimated lookups, older ones halved once per half-life
+ * @param ratePerSecond estimated lookups per second, accurate for a steady rate
+ * @param pinned        whether the code is currently exempt from eviction of the redirect cache
+ */
+public record HotKey(String shortCode, long count, double ratePerSecond, boolean pinned) {
+}
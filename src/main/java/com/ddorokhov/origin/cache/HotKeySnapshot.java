@@ -0,0 +1,218 @@
+package com.ddorokhov.origin.cache;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.store.UrlStore;
+import com.github.benmanes.caffeine.cache.Policy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the hottest mappings of the short-to-original cache in a file and loads them back
+ * on startup, so a restarted instance does not send its whole redirect load to the store.
+ * <p>
+ * Every {@code origin.cache.snapshot.interval} and on shutdown, the most frequently used
+ * cached mappings, as ranked by the cache's own W-TinyLFU policy, are streamed hottest first
+ * to a temporary file that then replaces the snapshot. The format is a 4-byte magic followed
+ * by records of {@code byte codeLength}, ASCII code, {@code long expiresAt} in epoch
+ * milliseconds ({@code 0} if the link never expires), {@code int urlLength} and UTF-8 URL,
+ * ended by a zero code length. Links expired by the time of loading are skipped.
+ * <p>
+ * Loading starts on a background thread as soon as the bean is created and reads the records
+ * until {@code max-load-size} bytes of mapping data are read. Mappings deleted since the
+ * snapshot must not be served from the cache, and the {@link ShortCodeFilter} does not stop
+ * them: it can still hold their codes. So the records are checked against the store a page
+ * of codes at a time, and only the mappings it still has are cached, as stored now. The
+ * servers are started only after the load finished, or gave up after {@code load-timeout}.
+ */
+@Slf4j
+public class HotKeySnapshot implements SmartLifecycle {
+    static final int MAGIC = 0x4F484B32;
+    static final int CHECK_PAGE_SIZE = 1000;
+
+    private final UrlCacheProperties.Snapshot properties;
+    private final Cache shortToOriginalCache;
+    private final UrlStore urlStore;
+    private final Path path;
+    private final Thread loader;
+    private volatile boolean running;
+
+    public HotKeySnapshot(UrlCacheProperties.Snapshot properties, Cache shortToOriginalCache, UrlStore urlStore) {
+        this.properties = properties;
+        this.shortToOriginalCache = shortToOriginalCache;
+        this.urlStore = urlStore;
+        this.path = Path.of(properties.getPath());
+        this.loader = new Thread(this::load, "hot-key-loader");
+        this.loader.setDaemon(true);
+        this.loader.start();
+    }
+
+    /**
+     * Waits for the load before the servers start.
+     */
+    @Override
+    public void start() {
+        try {
+            loader.join(properties.getLoadTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (loader.isAlive()) log.warn("Hot key snapshot still loading after {}, starting anyway", properties.getLoadTimeout());
+        running = true;
+    }
+
+    /**
+     * Writes a last snapshot once the servers stopped.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        write();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before, and so stops after, the web servers.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    /**
+     * Writes the hottest cached mappings to the snapshot file.
+     *
+     * @return number of mappings written, or {@code -1} if writing failed
+     */
+    @Scheduled(fixedDelayString = "${origin.cache.snapshot.interval:5m}", initialDelayString = "${origin.cache.snapshot.interval:5m}")
+    public int write() {
+        @SuppressWarnings("unchecked")
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache =
+                (com.github.benmanes.caffeine.cache.Cache<Object, Object>) shortToOriginalCache.getNativeCache();
+        Policy.Eviction<Object, Object> eviction = nativeCache.policy().eviction().orElse(null);
+        if (eviction == null) return 0;
+        // Applies pending reads to the frequency ranking
+        nativeCache.cleanUp();
+
+        long start = System.nanoTime();
+        AtomicInteger written = new AtomicInteger();
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                eviction.hottest(entries -> {
+                    entries.filter(entry -> entry.getValue() instanceof UrlEntity)
+                            .limit(properties.getMaxEntries())
+                            .forEach(entry -> {
+                                writeRecord(out, (UrlEntity) entry.getValue());
+                                written.incrementAndGet();
+                            });
+                    return null;
+                });
+                out.writeByte(0);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not write hot key snapshot {}", path, e);
+            return -1;
+        }
+        log.debug("Wrote {} hot keys to {} in {} ms", written, path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return written.get();
+    }
+
+    private static void writeRecord(DataOutputStream out, UrlEntity urlEntity) {
+        byte[] code = urlEntity.getShortCode().getBytes(StandardCharsets.US_ASCII);
+        byte[] url = urlEntity.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+        try {
+            out.writeByte(code.length);
+            out.write(code);
+            out.writeLong(urlEntity.getExpiresAt() == null ? 0 : urlEntity.getExpiresAt().toEpochMilli());
+            out.writeInt(url.length);
+            out.write(url);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the snapshot into the cache, keeping what was read before a damaged or cut off record.
+     */
+    void load() {
+        long start = System.nanoTime();
+        long budget = properties.getMaxLoadSize().toBytes();
+        long loadedBytes = 0;
+        int loaded = 0;
+        Map<String, UrlEntity> page = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                log.warn("Ignoring {}: not a hot key snapshot", path);
+                return;
+            }
+            int codeLength;
+            while ((codeLength = in.readUnsignedByte()) != 0) {
+                byte[] code = new byte[codeLength];
+                in.readFully(code);
+                long expiresAt = in.readLong();
+                int urlLength = in.readInt();
+                if (urlLength < 0) throw new IOException("Negative URL length " + urlLength);
+                loadedBytes += codeLength + urlLength;
+                if (loadedBytes > budget) break;
+                byte[] url = new byte[urlLength];
+                in.readFully(url);
+                String shortCode = new String(code, StandardCharsets.US_ASCII);
+                UrlEntity urlEntity = new UrlEntity(shortCode, new String(url, StandardCharsets.UTF_8),
+                        expiresAt == 0 ? null : Instant.ofEpochMilli(expiresAt));
+                if (urlEntity.isExpired()) continue;
+                page.put(shortCode, urlEntity);
+                if (page.size() == CHECK_PAGE_SIZE) loaded += cacheStored(page);
+            }
+        } catch (NoSuchFileException e) {
+            log.info("No hot key snapshot at {}, starting with a cold cache", path);
+            return;
+        } catch (IOException e) {
+            log.warn("Hot key snapshot {} is damaged, keeping the keys read before", path, e);
+        }
+        loaded += cacheStored(page);
+        log.info("Loaded {} hot keys from {} in {} ms", loaded, path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Caches those of the read mappings the store still has, with one lookup for the page.
+     *
+     * @return number of mappings cached
+     */
+    private int cacheStored(Map<String, UrlEntity> page) {
+        if (page.isEmpty()) return 0;
+        int cached = 0;
+        for (UrlEntity stored : urlStore.findAllByShortCodeIn(page.keySet())) {
+            if (!page.containsKey(stored.getShortCode()) || stored.isExpired()) continue;
+            shortToOriginalCache.putIfAbsent(stored.getShortCode(), stored);
+            cached++;
+        }
+        page.clear();
+        return cached;
+    }
+}
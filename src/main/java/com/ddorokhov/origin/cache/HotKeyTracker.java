@@ -0,0 +1,250 @@
+package com.ddorokhov.origin.cache;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Finds the most requested short codes in fixed memory, so a link going viral shows up in
+ * the application before it shows up in the database load.
+ * <p>
+ * One in {@code sample-rate} recorded lookups, picked at random, adds the sample rate to a
+ * {@link CountMinSketch}, so a viral code does not have every request thread write the same
+ * shared counters; the other lookups cost one random number. A code whose estimate exceeds the
+ * smallest count of the current top K replaces it in a min-heap of K codes; heap counts are
+ * refreshed from the sketch only when the root is about to be replaced. A code already in the
+ * heap, or estimated below its smallest count, costs the sketch additions and one map
+ * lookup, without locking. A code about to enter the heap only tries its lock and is skipped
+ * while another thread holds it; its next lookup tries again, so request threads never wait.
+ * <p>
+ * Every half-life all counts are halved, so a code requested at a steady rate {@code r} keeps
+ * an estimate between {@code r * halfLife} and twice that, and a code no longer requested
+ * fades out and leaves the heap. Every {@code pin-interval}, and after each halving, the codes
+ * in the heap become the pinned keys, and the codes pinned or unpinned since the previous
+ * update are passed to the pin listener.
+ */
+public class HotKeyTracker {
+    private final boolean enabled;
+    private final boolean pin;
+    private final int capacity;
+    private final int sampleRate;
+    private final long halfLifeNanos;
+    private final CountMinSketch sketch;
+    private final Set<String> members = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    // Min-heap by count, guarded by lock
+    private final String[] codes;
+    private final long[] hashes;
+    private final int[] counts;
+    private int size;
+    private volatile int threshold;
+    private volatile Set<String> pinned = Set.of();
+    private volatile long decayedAt = System.nanoTime();
+    private volatile Consumer<Set<String>> pinListener = changed -> {};
+
+    public HotKeyTracker(UrlCacheProperties.HotKeys properties) {
+        if (properties.getTopK() < 1) throw new IllegalArgumentException("top-k must be positive: " + properties.getTopK());
+        if (properties.getSampleRate() < 1) throw new IllegalArgumentException("sample-rate must be positive: " + properties.getSampleRate());
+        if (!properties.getHalfLife().isPositive()) throw new IllegalArgumentException("half-life must be positive: " + properties.getHalfLife());
+        this.enabled = properties.isEnabled();
+        this.pin = properties.isPin();
+        this.capacity = properties.getTopK();
+        this.sampleRate = properties.getSampleRate();
+        this.halfLifeNanos = properties.getHalfLife().toNanos();
+        this.sketch = new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+        this.codes = new String[capacity];
+        this.hashes = new long[capacity];
+        this.counts = new int[capacity];
+    }
+
+    /**
+     * Counts one lookup of a short code.
+     *
+     * @param shortCode the short code that was found
+     */
+    public void record(String shortCode) {
+        if (!enabled) return;
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) return;
+        long hash = CuckooFilter.hash(shortCode);
+        int count = sketch.add(hash, sampleRate);
+        if (count <= threshold || members.contains(shortCode)) return;
+        offer(shortCode, hash, count);
+    }
+
+    /**
+     * @param key a key of the redirect cache
+     * @return whether the key is one of the hottest short codes and pinning is enabled
+     */
+    public boolean isPinned(Object key) {
+        return pinned.contains(key);
+    }
+
+    /**
+     * @param pinListener called after each update of the pinned keys with the codes pinned or unpinned since the previous one
+     */
+    public void setPinListener(Consumer<Set<String>> pinListener) {
+        this.pinListener = pinListener;
+    }
+
+    /**
+     * @return the tracked short codes, most requested first
+     */
+    public List<HotKey> topK() {
+        List<HotKey> hotKeys = new ArrayList<>(capacity);
+        lock.lock();
+        try {
+            double seconds = (halfLifeNanos + System.nanoTime() - decayedAt) / 1e9;
+            for (int i = 0; i < size; i++) {
+                int count = sketch.estimate(hashes[i]);
+                hotKeys.add(new HotKey(codes[i], count, count / seconds, pinned.contains(codes[i])));
+            }
+        } finally {
+            lock.unlock();
+        }
+        hotKeys.sort(Comparator.comparingLong(HotKey::count).reversed());
+        return hotKeys;
+    }
+
+    /**
+     * Halves all counts, drops the codes that faded out and pins the remaining ones.
+     */
+    @Scheduled(fixedRateString = "${origin.cache.hot-keys.half-life:30s}", initialDelayString = "${origin.cache.hot-keys.half-life:30s}")
+    public void decay() {
+        Set<String> changed = new HashSet<>();
+        lock.lock();
+        try {
+            sketch.halve();
+            decayedAt = System.nanoTime();
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int count = sketch.estimate(hashes[i]);
+                if (count == 0) {
+                    members.remove(codes[i]);
+                    continue;
+                }
+                codes[kept] = codes[i];
+                hashes[kept] = hashes[i];
+                counts[kept++] = count;
+            }
+            for (int i = kept; i < size; i++) {
+                codes[i] = null;
+            }
+            size = kept;
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+            threshold = size == capacity ? counts[0] : 0;
+            updatePinned(changed);
+        } finally {
+            lock.unlock();
+        }
+        if (!changed.isEmpty()) pinListener.accept(changed);
+    }
+
+    /**
+     * Pins the codes in the heap, so a code entering it is pinned without waiting for the next
+     * halving.
+     */
+    @Scheduled(fixedRateString = "${origin.cache.hot-keys.pin-interval:5s}", initialDelayString = "${origin.cache.hot-keys.pin-interval:5s}")
+    public void refreshPinned() {
+        Set<String> changed = new HashSet<>();
+        lock.lock();
+        try {
+            updatePinned(changed);
+        } finally {
+            lock.unlock();
+        }
+        if (!changed.isEmpty()) pinListener.accept(changed);
+    }
+
+    private void updatePinned(Set<String> changed) {
+        Set<String> next = pin ? Set.copyOf(members) : Set.of();
+        for (String code : next) {
+            if (!pinned.contains(code)) changed.add(code);
+        }
+        for (String code : pinned) {
+            if (!next.contains(code)) changed.add(code);
+        }
+        pinned = next;
+    }
+
+    private void offer(String shortCode, long hash, int count) {
+        if (!lock.tryLock()) return;
+        try {
+            if (members.contains(shortCode)) return;
+            if (size < capacity) {
+                set(size, shortCode, hash, count);
+                siftUp(size++);
+            } else {
+                refreshRoot();
+                if (count <= counts[0]) {
+                    threshold = counts[0];
+                    return;
+                }
+                members.remove(codes[0]);
+                set(0, shortCode, hash, count);
+                siftDown(0);
+            }
+            members.add(shortCode);
+            if (size == capacity) threshold = counts[0];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Brings the root count up to date until the root is the smallest by its current estimate;
+     * bounded, as codes keep being counted meanwhile.
+     */
+    private void refreshRoot() {
+        for (int i = 0; i < capacity; i++) {
+            int estimate = sketch.estimate(hashes[0]);
+            if (estimate == counts[0]) return;
+            counts[0] = estimate;
+            siftDown(0);
+        }
+    }
+
+    private void set(int i, String code, long hash, int count) {
+        codes[i] = code;
+        hashes[i] = hash;
+        counts[i] = count;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (counts[parent] <= counts[i]) return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            if (left < size && counts[left] < counts[smallest]) smallest = left;
+            if (left + 1 < size && counts[left + 1] < counts[smallest]) smallest = left + 1;
+            if (smallest == i) return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        String code = codes[i];
+        long hash = hashes[i];
+        int count = counts[i];
+        set(i, codes[j], hashes[j], counts[j]);
+        set(j, code, hash, count);
+    }
+}
@@ -0,0 +1,26 @@
+package com.ddorokhov.origin.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+
+/**
+ * Serves the most requested short codes at {@code /actuator/hotkeys}.
+ */
+@Endpoint(id = "hotkeys")
+public class HotKeysEndpoint {
+    private final HotKeyTracker hotKeyTracker;
+
+    public HotKeysEndpoint(HotKeyTracker hotKeyTracker) {
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    /**
+     * @return the tracked short codes with their estimated counts and rates, most requested first
+     */
+    @ReadOperation
+    public List<HotKey> hotKeys() {
+        return hotKeyTracker.topK();
+    }
+}
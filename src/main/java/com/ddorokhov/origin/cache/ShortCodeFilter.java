@@ -0,0 +1,156 @@
+package com.ddorokhov.origin.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * All existing short codes, kept in a {@link CuckooFilter} and consulted before the cache and
+ * the database.
+ * <p>
+ * A code the filter has never seen is a definite miss and is answered without a lookup and
+ * without caching the miss; codes that may exist take the usual cached path. The filter is
+ * filled from the table at startup by {@link ShortCodeFilterLoader} and kept current by the
+ * service on create and delete, including those of other instances relayed by the
+ * {@link com.ddorokhov.origin.invalidation.InvalidationBus}. Until it is loaded, when disabled,
+ * while bypassed for a rebuild or once it is too full to accept a code, every code is reported
+ * as possibly existing, so a code is never rejected wrongly.
+ */
+@Slf4j
+public class ShortCodeFilter implements MeterBinder {
+    private final UrlCacheProperties.Filter properties;
+    private final LongAdder rejections = new LongAdder();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile CuckooFilter filter;
+    // Filled while bypassed, to replace the filter once it holds every stored code
+    private volatile CuckooFilter next;
+    private volatile boolean saturated;
+
+    public ShortCodeFilter(UrlCacheProperties.Filter properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Replaces the filter with an empty one sized for the existing codes and room to grow,
+     * to be filled with {@link #add(String)}.
+     *
+     * @param existingCodes number of codes about to be added
+     */
+    public void reset(long existingCodes) {
+        if (!properties.isEnabled()) return;
+        filter = new CuckooFilter(Math.max(properties.getExpectedCodes(), 2 * existingCodes));
+        saturated = false;
+    }
+
+    /**
+     * Drops the filter and reports every code as possibly existing until a rebuild completes,
+     * for when codes may have been stored without being added here. Codes added from now on
+     * also go to a new filter, to be filled with the stored codes by {@link #add(CuckooFilter, String)}
+     * and then put in use by {@link #rebuilt(CuckooFilter)}. A later bypass supersedes it.
+     *
+     * @return the new filter, or {@code null} when disabled
+     */
+    CuckooFilter bypass() {
+        if (!properties.isEnabled()) return null;
+        rebuildLock.lock();
+        try {
+            CuckooFilter current = filter;
+            CuckooFilter pending = next;
+            long codes = Math.max(current == null ? 0 : current.size(), pending == null ? 0 : pending.size());
+            CuckooFilter rebuild = new CuckooFilter(Math.max(properties.getExpectedCodes(), 2 * codes));
+            // Set before the filter is dropped, so that no added code misses both
+            next = rebuild;
+            filter = null;
+            saturated = false;
+            return rebuild;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Records a stored code found by the rebuild that filled the given filter.
+     */
+    void add(CuckooFilter rebuild, String shortCode) {
+        if (!rebuild.add(shortCode) && rebuild == next) saturate(rebuild);
+    }
+
+    /**
+     * Puts a filter returned by {@link #bypass()} in use, once it holds every stored code.
+     *
+     * @return {@code false} if bypassed again meanwhile
+     */
+    boolean rebuilt(CuckooFilter rebuild) {
+        rebuildLock.lock();
+        try {
+            if (next != rebuild) return false;
+            // Set before the next filter is cleared, so that no added code misses both
+            filter = rebuild;
+            next = null;
+            return true;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * @param shortCode the short code
+     * @return {@code false} if no mapping with this code exists
+     */
+    public boolean mightExist(String shortCode) {
+        CuckooFilter current = filter;
+        if (current == null || saturated || current.mightContain(shortCode)) return true;
+        rejections.increment();
+        return false;
+    }
+
+    /**
+     * Records a code that is about to be inserted. Must be called before the insert commits,
+     * so that a reader never sees a stored code rejected.
+     */
+    public void add(String shortCode) {
+        CuckooFilter pending = next;
+        if (pending != null) add(pending, shortCode);
+        CuckooFilter current = filter;
+        if (current == null || current == pending || current.add(shortCode)) return;
+        saturate(current);
+    }
+
+    private void saturate(CuckooFilter full) {
+        if (saturated) return;
+        saturated = true;
+        log.warn("Short code filter is full at {} codes, passing all lookups through; raise origin.cache.short-code-filter.expected-codes",
+                full.size());
+    }
+
+    /**
+     * Forgets one {@link #add(String) added} code, after its delete committed or its insert failed.
+     * Not applied to a filter being rebuilt, which may never have been given the code.
+     */
+    public void remove(String shortCode) {
+        CuckooFilter current = filter;
+        if (current != null) current.remove(shortCode);
+    }
+
+    /**
+     * @return number of lookups answered as definite misses
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("origin.shortcode.filter.size", this, f -> f.filter == null ? 0 : f.filter.size())
+                .description("Short codes held by the negative lookup filter")
+                .register(registry);
+        FunctionCounter.builder("origin.shortcode.filter.rejections", this, ShortCodeFilter::getRejectionCount)
+                .description("Short code lookups answered as definite misses without a cache or database lookup")
+                .register(registry);
+    }
+}
@@ -0,0 +1,63 @@
+package com.ddorokhov.origin.cache;
+
+import com.ddorokhov.origin.store.UrlStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the {@link ShortCodeFilter} with every stored short code. Runs once all beans, and
+ * with them the schema, exist, but before the web servers start taking requests.
+ * <p>
+ * A filter that may have missed codes is {@link #rebuild() rebuilt} while serving: it passes
+ * every lookup through while a background scan fills a new one, which also receives the codes
+ * created during the scan, and is put in use once the scan finished.
+ */
+@Slf4j
+public class ShortCodeFilterLoader implements SmartInitializingSingleton {
+    private final ShortCodeFilter shortCodeFilter;
+    private final UrlStore urlStore;
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "short-code-filter-rebuilder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ShortCodeFilterLoader(ShortCodeFilter shortCodeFilter, UrlStore urlStore) {
+        this.shortCodeFilter = shortCodeFilter;
+        this.urlStore = urlStore;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long count = urlStore.count();
+        shortCodeFilter.reset(count);
+        urlStore.forEachShortCode(shortCodeFilter::add);
+        log.info("Loaded {} short codes into the short code filter", count);
+    }
+
+    /**
+     * Bypasses the filter at once and refills it from the store in the background, for when
+     * codes may have been stored without being added to it.
+     */
+    public void rebuild() {
+        CuckooFilter rebuild = shortCodeFilter.bypass();
+        if (rebuild == null) return;
+        rebuilder.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                urlStore.forEachShortCode(shortCode -> shortCodeFilter.add(rebuild, shortCode));
+            } catch (RuntimeException e) {
+                log.warn("Could not rebuild the short code filter, passing all lookups through until the next rebuild", e);
+                return;
+            }
+            if (shortCodeFilter.rebuilt(rebuild)) {
+                log.info("Rebuilt the short code filter with {} codes in {} ms", rebuild.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+    }
+}
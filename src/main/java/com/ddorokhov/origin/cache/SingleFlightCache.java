@@ -0,0 +1,192 @@
+package com.ddorokhov.origin.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache decorator that coalesces concurrent misses for the same key into one load.
+ * <p>
+ * The first caller missing a key runs the value loader; callers arriving while that load is
+ * in flight wait for its result, each bounded by its own timeout, and see the same value or
+ * the same failure. Unlike a loading cache, no lock is held while the loader runs.
+ * <p>
+ * A write or eviction of the key while its load is in flight marks the load stale: its
+ * callers still get the loaded value, but it is not written to the cache, so a mapping
+ * deleted meanwhile is not cached again with the row read before the delete. The mark and
+ * the write of the loaded value are atomic per key.
+ */
+public class SingleFlightCache implements Cache {
+    private final Cache delegate;
+    private final long timeoutNanos;
+    private final ConcurrentHashMap<Object, Flight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * @param delegate     the cache holding the values
+     * @param timeoutNanos how long a coalesced caller waits for the in-flight load
+     */
+    public SingleFlightCache(Cache delegate, long timeoutNanos) {
+        this.delegate = delegate;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = delegate.get(key);
+        if (cached != null) return (T) cached.get();
+
+        Flight flight = new Flight();
+        Flight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalescedLoads.increment();
+            return (T) await(key, existing, valueLoader);
+        }
+
+        try {
+            // A flight for this key may have completed between the lookup and the registration.
+            cached = delegate.get(key);
+            Object value;
+            if (cached != null) {
+                value = cached.get();
+            } else {
+                loads.increment();
+                value = valueLoader.call();
+                Object loaded = value;
+                inFlight.computeIfPresent(key, (k, current) -> {
+                    if (current == flight && !flight.stale) delegate.put(key, loaded);
+                    return current;
+                });
+            }
+            flight.complete(value);
+            return (T) value;
+        } catch (Throwable ex) {
+            flight.completeExceptionally(ex);
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private Object await(Object key, CompletableFuture<Object> flight, Callable<?> valueLoader) {
+        try {
+            return flight.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException ex) {
+            throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+        } catch (TimeoutException ex) {
+            timeouts.increment();
+            throw new ValueRetrievalException(key, valueLoader, new SingleFlightTimeoutException(key, timeoutNanos));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+    }
+
+    /**
+     * Keeps the value of the in-flight load of the key, if any, out of the cache.
+     */
+    private void markStale(Object key) {
+        inFlight.computeIfPresent(key, (k, flight) -> {
+            flight.stale = true;
+            return flight;
+        });
+    }
+
+    /**
+     * @return number of loads actually executed
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * @return number of misses served by joining an in-flight load instead of loading again
+     */
+    public long getCoalescedLoadCount() {
+        return coalescedLoads.sum();
+    }
+
+    /**
+     * @return number of coalesced callers that gave up waiting for the in-flight load
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return the decorated cache
+     */
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        markStale(key);
+        delegate.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        markStale(key);
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        markStale(key);
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        markStale(key);
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        inFlight.keySet().forEach(this::markStale);
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        inFlight.keySet().forEach(this::markStale);
+        return delegate.invalidate();
+    }
+
+    private static final class Flight extends CompletableFuture<Object> {
+        // Guarded by the lock of the key's bin in inFlight
+        private boolean stale;
+    }
+}
@@ -0,0 +1,39 @@
+package com.ddorokhov.origin.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+
+/**
+ * Binds metrics of caches wrapped in {@link SingleFlightCache}, which Spring Boot's Caffeine
+ * support does not recognize: the standard Caffeine {@code cache.*} meters of the wrapped
+ * cache (gets by hit/miss result, evictions, size) plus the single-flight load counters.
+ */
+public class SingleFlightCacheMeterBinderProvider implements CacheMeterBinderProvider<SingleFlightCache> {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public MeterBinder getMeterBinder(SingleFlightCache cache, Iterable<Tag> tags) {
+        Tags cacheTags = Tags.concat(tags, "cache", cache.getName());
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache =
+                (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+        return registry -> {
+            new CaffeineCacheMetrics<>(nativeCache, cache.getName(), tags).bindTo(registry);
+            FunctionCounter.builder("cache.singleflight.loads", cache, SingleFlightCache::getLoadCount)
+                    .description("Loads executed on a miss")
+                    .tags(cacheTags)
+                    .register(registry);
+            FunctionCounter.builder("cache.singleflight.coalesced", cache, SingleFlightCache::getCoalescedLoadCount)
+                    .description("Misses served by joining an in-flight load")
+                    .tags(cacheTags)
+                    .register(registry);
+            FunctionCounter.builder("cache.singleflight.timeouts", cache, SingleFlightCache::getTimeoutCount)
+                    .description("Coalesced callers that gave up waiting for the in-flight load")
+                    .tags(cacheTags)
+                    .register(registry);
+        };
+    }
+}
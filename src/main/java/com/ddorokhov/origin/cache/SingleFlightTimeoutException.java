@@ -0,0 +1,17 @@
+package com.ddorokhov.origin.cache;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+/**
+ * Thrown to a caller that waited too long for a load started by another caller.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class SingleFlightTimeoutException extends RuntimeException {
+
+    public SingleFlightTimeoutException(Object key, long timeoutNanos) {
+        super("Timed out after " + Duration.ofNanos(timeoutNanos) + " waiting for in-flight load of " + key);
+    }
+}
@@ -0,0 +1,138 @@
+package com.ddorokhov.origin.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Sizing and expiration settings of the two URL lookup caches.
+ * <p>
+ * Bound to {@code origin.cache.*} in {@code application.yaml}.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.cache")
+public class UrlCacheProperties {
+    /**
+     * Cache resolving shortened URL to its mapping (redirect path).
+     */
+    private Spec shortToOriginal = new Spec();
+    /**
+     * Cache resolving original URL to its mapping (shorten API).
+     */
+    private Spec originalToShort = new Spec();
+    /**
+     * How long a request waits for a concurrent request already loading the same key.
+     */
+    private Duration loadTimeout = Duration.ofSeconds(2);
+    /**
+     * Filter of existing short codes that answers unknown codes without a lookup.
+     */
+    private Filter shortCodeFilter = new Filter();
+    /**
+     * Snapshot of the hottest short codes that warms the redirect cache on startup.
+     */
+    private Snapshot snapshot = new Snapshot();
+    /**
+     * Tracker of the most requested short codes, which are pinned in the redirect cache.
+     */
+    private HotKeys hotKeys = new HotKeys();
+
+    @Data
+    public static class Spec {
+        /**
+         * Maximum number of entries kept before W-TinyLFU eviction kicks in.
+         */
+        private long maximumSize = 100_000;
+        /**
+         * Lifetime of a cached mapping.
+         */
+        private Duration expireAfterWrite = Duration.ofHours(1);
+        /**
+         * Lifetime of a cached miss, kept short so unknown keys do not occupy the cache.
+         */
+        private Duration negativeTtl = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Filter {
+        /**
+         * Whether unknown short codes are rejected by the filter before the cache and database.
+         * Requires an {@code origin.invalidation.transport}, through which the filter learns
+         * the codes created by other instances.
+         */
+        private boolean enabled = false;
+        /**
+         * Minimum number of codes the filter is sized for; it is sized for at least twice the
+         * codes stored at startup.
+         */
+        private long expectedCodes = 1_000_000;
+    }
+
+    @Data
+    public static class Snapshot {
+        /**
+         * Whether hot keys are written periodically and loaded on startup.
+         */
+        private boolean enabled = true;
+        /**
+         * Snapshot file.
+         */
+        private String path = "./data/hot-keys.snapshot";
+        /**
+         * Delay between snapshots; one more is written on shutdown.
+         */
+        private Duration interval = Duration.ofMinutes(5);
+        /**
+         * Largest number of mappings written, hottest first.
+         */
+        private int maxEntries = 50_000;
+        /**
+         * Largest amount of mapping data loaded on startup.
+         */
+        private DataSize maxLoadSize = DataSize.ofMegabytes(16);
+        /**
+         * How long startup waits for the load before serving with a partly warm cache.
+         */
+        private Duration loadTimeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class HotKeys {
+        /**
+         * Whether redirect lookups are counted and the hottest short codes pinned.
+         */
+        private boolean enabled = true;
+        /**
+         * Number of hottest short codes tracked and pinned.
+         */
+        private int topK = 32;
+        /**
+         * Counters per row of the count-min sketch, a power of two.
+         */
+        private int sketchWidth = 4096;
+        /**
+         * Rows of the count-min sketch.
+         */
+        private int sketchDepth = 4;
+        /**
+         * One in this many lookups is counted, with this weight, so that the sketch counters
+         * of a viral code are written that many times less often. 1 counts every lookup.
+         */
+        private int sampleRate = 16;
+        /**
+         * Interval after which all counts are halved.
+         */
+        private Duration halfLife = Duration.ofSeconds(30);
+        /**
+         * How often the tracked codes become the pinned keys, so a code going viral is pinned
+         * within this delay.
+         */
+        private Duration pinInterval = Duration.ofSeconds(5);
+        /**
+         * Whether the tracked short codes are exempt from size-based eviction of the redirect cache.
+         */
+        private boolean pin = true;
+    }
+}
@@ -0,0 +1,53 @@
+package com.ddorokhov.origin.expiry;
+
+import com.ddorokhov.origin.UrlService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.time.Instant;
+
+/**
+ * Deletes expired links every {@code origin.expiry.purge-interval}.
+ * <p>
+ * Expired links are read from the store's expiry index, earliest first, and deleted with one
+ * statement per {@code purge-batch-size} links; both cache entries of each are evicted.
+ */
+@Component
+@Slf4j
+public class ExpiredUrlPurger {
+    private final UrlService urlService;
+    private final ExpiryProperties properties;
+    private final Counter purged;
+
+    public ExpiredUrlPurger(UrlService urlService, ExpiryProperties properties, MeterRegistry meterRegistry) {
+        this.urlService = urlService;
+        this.properties = properties;
+        this.purged = Counter.builder("origin.expiry.purged")
+                .description("Expired links deleted by the purge")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Purges the links expired by now.
+     *
+     * @return number of links deleted
+     */
+    @Scheduled(fixedDelayString = "${origin.expiry.purge-interval:1m}", initialDelayString = "${origin.expiry.purge-interval:1m}")
+    public int purge() {
+        int deleted;
+        try {
+            deleted = urlService.purgeExpired(Instant.now(), properties.getPurgeBatchSize());
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Purge of expired links failed, retrying in {}", properties.getPurgeInterval(), e);
+            return 0;
+        }
+        purged.increment(deleted);
+        if (deleted > 0) log.debug("Purged {} expired links", deleted);
+        return deleted;
+    }
+}
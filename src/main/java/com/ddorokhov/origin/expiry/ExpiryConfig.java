@@ -0,0 +1,14 @@
+package com.ddorokhov.origin.expiry;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the scheduled purge of expired links configured by {@code origin.expiry.*}.
+ */
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(ExpiryProperties.class)
+public class ExpiryConfig {
+}
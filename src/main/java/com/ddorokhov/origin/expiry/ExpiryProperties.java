@@ -0,0 +1,23 @@
+package com.ddorokhov.origin.expiry;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Link expiry settings, bound to {@code origin.expiry.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.expiry")
+public class ExpiryProperties {
+    /**
+     * Interval between purges of expired links. Expired links are answered as not found
+     * right away; the purge only reclaims their storage.
+     */
+    private Duration purgeInterval = Duration.ofMinutes(1);
+    /**
+     * Maximum number of expired links deleted with one statement.
+     */
+    private int purgeBatchSize = 500;
+}
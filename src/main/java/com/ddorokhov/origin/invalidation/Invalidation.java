@@ -0,0 +1,27 @@
+package com.ddorokhov.origin.invalidation;
+
+import com.ddorokhov.origin.UrlEntity;
+
+/**
+ * A mapping created or deleted on one instance, which its peers may hold stale cache entries
+ * or a stale short code filter for.
+ *
+ * @param type        what happened to the mapping
+ * @param shortCode   the mapping's short code
+ * @param originalUrl the mapping's original URL
+ */
+public record Invalidation(Type type, String shortCode, String originalUrl) {
+
+    public enum Type {
+        CREATED,
+        DELETED
+    }
+
+    public static Invalidation created(UrlEntity urlEntity) {
+        return new Invalidation(Type.CREATED, urlEntity.getShortCode(), urlEntity.getOriginalUrl());
+    }
+
+    public static Invalidation deleted(UrlEntity urlEntity) {
+        return new Invalidation(Type.DELETED, urlEntity.getShortCode(), urlEntity.getOriginalUrl());
+    }
+}
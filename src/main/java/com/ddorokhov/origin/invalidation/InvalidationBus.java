@@ -0,0 +1,242 @@
+package com.ddorokhov.origin.invalidation;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.cache.ShortCodeFilter;
+import com.ddorokhov.origin.cache.ShortCodeFilterLoader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.SmartLifecycle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.ddorokhov.origin.Constants.CACHE_ORIGINAL_TO_SHORT;
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
+
+/**
+ * Tells the other instances of a deployment about mappings created or deleted here, and
+ * applies theirs to the local caches and short code filter.
+ * <p>
+ * The service publishes a change once it committed. Changes are collected for
+ * {@code origin.invalidation.batch-window}, collapsed and sent as few messages of at most
+ * {@code max-message-size} bytes over the configured {@link InvalidationTransport}. A peer
+ * evicts both cache entries of every changed mapping, including cached misses, and adds
+ * created codes to its filter, which would otherwise reject them until its next start.
+ * Deleted codes stay in the peers' filters: removing a code a peer never added could drop
+ * another code's entry, while a leftover code only costs a lookup. Until a change arrived,
+ * peers serve the state they had, for about one batch window.
+ * <p>
+ * Every message carries its sender's sequence number, and an idle sender repeats its last
+ * one every {@code heartbeat-interval}. A peer that sees a number skipped has missed changes
+ * it cannot name, so it clears both caches and rebuilds its filter from the store, passing
+ * every lookup through until the rebuild finished.
+ */
+@Slf4j
+public class InvalidationBus implements SmartLifecycle {
+    private final InvalidationProperties properties;
+    private final InvalidationTransport transport;
+    private final Cache shortToOriginalCache;
+    private final Cache originalToShortCache;
+    private final ShortCodeFilter shortCodeFilter;
+    private final ShortCodeFilterLoader shortCodeFilterLoader;
+    private final long node = ThreadLocalRandom.current().nextLong();
+    private final Queue<Invalidation> pending = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Long> lastSequences = new ConcurrentHashMap<>();
+    private final Counter published;
+    private final Counter applied;
+    private final Counter gaps;
+    private ScheduledExecutorService flusher;
+    private long sequence;
+    private long lastSentNanos = System.nanoTime();
+    private volatile boolean running;
+
+    /**
+     * @param transport the transport, or {@code null} to neither send nor receive anything
+     */
+    public InvalidationBus(InvalidationProperties properties, InvalidationTransport transport, CacheManager cacheManager,
+                           ShortCodeFilter shortCodeFilter, ShortCodeFilterLoader shortCodeFilterLoader, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.transport = transport;
+        this.shortToOriginalCache = cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL);
+        this.originalToShortCache = cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT);
+        this.shortCodeFilter = shortCodeFilter;
+        this.shortCodeFilterLoader = shortCodeFilterLoader;
+        this.published = Counter.builder("origin.invalidation.published")
+                .description("Created and deleted mappings sent to the other instances")
+                .register(meterRegistry);
+        this.applied = Counter.builder("origin.invalidation.applied")
+                .description("Created and deleted mappings of other instances applied to the local caches")
+                .register(meterRegistry);
+        this.gaps = Counter.builder("origin.invalidation.gaps")
+                .description("Lost messages of other instances, each clearing the local caches")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Announces a committed new mapping.
+     */
+    public void created(UrlEntity urlEntity) {
+        if (transport != null) pending.add(Invalidation.created(urlEntity));
+    }
+
+    /**
+     * Announces a committed delete.
+     */
+    public void deleted(UrlEntity urlEntity) {
+        if (transport != null) pending.add(Invalidation.deleted(urlEntity));
+    }
+
+    @Override
+    public void start() {
+        if (transport == null) {
+            running = true;
+            return;
+        }
+        try {
+            transport.start(this::receive);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the invalidation transport", e);
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "invalidation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long windowNanos = properties.getBatchWindow().toNanos();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+        running = true;
+    }
+
+    /**
+     * Sends what is still pending once the servers stopped.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (transport == null) return;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        transport.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before, and so stops after, the web servers.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Could not flush invalidations", e);
+        }
+    }
+
+    /**
+     * Sends the pending changes, or a heartbeat if nothing was sent for a while.
+     *
+     * @return number of changes sent
+     */
+    synchronized int flush() {
+        if (transport == null) return 0;
+        Set<Invalidation> batch = new LinkedHashSet<>();
+        Invalidation next;
+        while ((next = pending.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            if (System.nanoTime() - lastSentNanos >= properties.getHeartbeatInterval().toNanos()) {
+                send(new InvalidationMessage(node, sequence, List.of()));
+            }
+            return 0;
+        }
+
+        long maxSize = properties.getMaxMessageSize().toBytes();
+        List<Invalidation> message = new ArrayList<>();
+        long size = InvalidationMessage.HEADER_SIZE;
+        for (Invalidation invalidation : batch) {
+            int recordSize = InvalidationMessage.sizeOf(invalidation);
+            if (!message.isEmpty() && (size + recordSize > maxSize || message.size() == InvalidationMessage.MAX_INVALIDATIONS)) {
+                send(new InvalidationMessage(node, ++sequence, message));
+                message = new ArrayList<>();
+                size = InvalidationMessage.HEADER_SIZE;
+            }
+            message.add(invalidation);
+            size += recordSize;
+        }
+        send(new InvalidationMessage(node, ++sequence, message));
+        published.increment(batch.size());
+        return batch.size();
+    }
+
+    /**
+     * A message that cannot be sent still used its sequence number, so the peers notice.
+     */
+    private void send(InvalidationMessage message) {
+        lastSentNanos = System.nanoTime();
+        try {
+            transport.send(message.encode());
+        } catch (IOException e) {
+            log.warn("Could not send {} invalidations", message.invalidations().size(), e);
+        }
+    }
+
+    void receive(byte[] bytes) {
+        InvalidationMessage message;
+        try {
+            message = InvalidationMessage.decode(bytes);
+        } catch (IOException e) {
+            log.warn("Ignoring a malformed invalidation message of {} bytes", bytes.length, e);
+            return;
+        }
+        if (message.node() == node) return;
+
+        Long previous = lastSequences.put(message.node(), message.sequence());
+        long expected = message.invalidations().isEmpty() ? message.sequence() : message.sequence() - 1;
+        if (previous != null && previous != expected) missed(message.node(), previous, message.sequence());
+
+        for (Invalidation invalidation : message.invalidations()) {
+            if (invalidation.type() == Invalidation.Type.CREATED) shortCodeFilter.add(invalidation.shortCode());
+            shortToOriginalCache.evict(invalidation.shortCode());
+            originalToShortCache.evict(invalidation.originalUrl());
+        }
+        applied.increment(message.invalidations().size());
+    }
+
+    private void missed(long sender, long previous, long sequence) {
+        gaps.increment();
+        log.warn("Invalidation message {} of node {} follows {}, clearing the caches and rebuilding the short code filter",
+                sequence, Long.toHexString(sender), previous);
+        shortCodeFilterLoader.rebuild();
+        shortToOriginalCache.clear();
+        originalToShortCache.clear();
+    }
+}
@@ -0,0 +1,40 @@
+package com.ddorokhov.origin.invalidation;
+
+import com.ddorokhov.origin.cache.ShortCodeFilter;
+import com.ddorokhov.origin.cache.ShortCodeFilterLoader;
+import com.ddorokhov.origin.cache.UrlCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Creates the {@link InvalidationBus} over the transport selected by
+ * {@code origin.invalidation.transport}.
+ * <p>
+ * Refuses to start with the short code filter enabled but no transport: the filter would
+ * reject the codes created by other instances for good, not just until a cache expires.
+ */
+@Configuration
+@EnableConfigurationProperties(InvalidationProperties.class)
+public class InvalidationConfig {
+
+    @Bean
+    public InvalidationBus invalidationBus(InvalidationProperties properties, UrlCacheProperties cacheProperties,
+                                           CacheManager cacheManager, ShortCodeFilter shortCodeFilter,
+                                           ShortCodeFilterLoader shortCodeFilterLoader, MeterRegistry meterRegistry) {
+        InvalidationTransport transport = switch (properties.getTransport()) {
+            case NONE -> {
+                if (cacheProperties.getShortCodeFilter().isEnabled()) {
+                    throw new IllegalStateException("origin.cache.short-code-filter.enabled requires an origin.invalidation.transport "
+                            + "to learn the codes created by other instances; use loopback for a single instance");
+                }
+                yield null;
+            }
+            case LOOPBACK -> new LoopbackTransport(properties.getLoopback().getChannel());
+            case MULTICAST -> new MulticastTransport(properties.getMulticast());
+        };
+        return new InvalidationBus(properties, transport, cacheManager, shortCodeFilter, shortCodeFilterLoader, meterRegistry);
+    }
+}
@@ -0,0 +1,98 @@
+package com.ddorokhov.origin.invalidation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One message of the {@link InvalidationBus}: a batch of invalidations sent by one instance.
+ * <p>
+ * The format is a 4-byte magic, {@code long node}, {@code long sequence}, {@code short count}
+ * and {@code count} records of {@code byte type}, {@code byte codeLength}, ASCII code,
+ * {@code int urlLength} and UTF-8 URL. A message without records is a heartbeat and repeats
+ * the last sequence number instead of taking a new one.
+ *
+ * @param node          random id of the sending instance, new on every start
+ * @param sequence      number of the message among those of its sender, starting at 1
+ * @param invalidations the invalidations, at most {@value #MAX_INVALIDATIONS}
+ */
+record InvalidationMessage(long node, long sequence, List<Invalidation> invalidations) {
+    static final int MAGIC = 0x4F494E31;
+    static final int HEADER_SIZE = 4 + 8 + 8 + 2;
+    static final int MAX_INVALIDATIONS = Short.MAX_VALUE;
+
+    /**
+     * @return encoded size of one record
+     */
+    static int sizeOf(Invalidation invalidation) {
+        return 1 + 1 + invalidation.shortCode().length() + 4 + utf8Length(invalidation.originalUrl());
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + 64 * invalidations.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeLong(node);
+            out.writeLong(sequence);
+            out.writeShort(invalidations.size());
+            for (Invalidation invalidation : invalidations) {
+                byte[] code = invalidation.shortCode().getBytes(StandardCharsets.US_ASCII);
+                byte[] url = invalidation.originalUrl().getBytes(StandardCharsets.UTF_8);
+                out.writeByte(invalidation.type().ordinal());
+                out.writeByte(code.length);
+                out.write(code);
+                out.writeInt(url.length);
+                out.write(url);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException if the bytes are not a complete message
+     */
+    static InvalidationMessage decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) throw new IOException("Not an invalidation message");
+        long node = in.readLong();
+        long sequence = in.readLong();
+        int count = in.readUnsignedShort();
+        Invalidation.Type[] types = Invalidation.Type.values();
+        List<Invalidation> invalidations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = in.readUnsignedByte();
+            if (type >= types.length) throw new IOException("Unknown invalidation type " + type);
+            byte[] code = new byte[in.readUnsignedByte()];
+            in.readFully(code);
+            int urlLength = in.readInt();
+            if (urlLength < 0 || urlLength > in.available()) throw new IOException("Bad URL length " + urlLength);
+            byte[] url = new byte[urlLength];
+            in.readFully(url);
+            invalidations.add(new Invalidation(types[type], new String(code, StandardCharsets.US_ASCII),
+                    new String(url, StandardCharsets.UTF_8)));
+        }
+        return new InvalidationMessage(node, sequence, invalidations);
+    }
+
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) length++;
+            else if (c < 0x800) length += 2;
+            else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else length += 3;
+        }
+        return length;
+    }
+}
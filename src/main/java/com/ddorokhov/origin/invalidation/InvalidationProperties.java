@@ -0,0 +1,81 @@
+package com.ddorokhov.origin.invalidation;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings of the {@link InvalidationBus} that keeps the caches of several instances in step,
+ * bound to {@code origin.invalidation.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.invalidation")
+public class InvalidationProperties {
+    /**
+     * Transport the changes of this instance are broadcast over and those of its peers are
+     * received from.
+     */
+    private Transport transport = Transport.NONE;
+    /**
+     * How long created and deleted mappings are collected before they are sent together.
+     */
+    private Duration batchWindow = Duration.ofMillis(20);
+    /**
+     * Largest message sent; bigger batches are split. Kept below the network MTU so that a
+     * datagram is never fragmented.
+     */
+    private DataSize maxMessageSize = DataSize.ofBytes(1400);
+    /**
+     * Delay after which an idle instance announces its last sequence number, so that peers
+     * notice a lost message even when nothing follows it.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(1);
+    private Loopback loopback = new Loopback();
+    private Multicast multicast = new Multicast();
+
+    public enum Transport {
+        /**
+         * Single instance: nothing is sent or received.
+         */
+        NONE,
+        /**
+         * Instances running in the same JVM, see {@link LoopbackTransport}.
+         */
+        LOOPBACK,
+        /**
+         * Instances on one network, see {@link MulticastTransport}.
+         */
+        MULTICAST
+    }
+
+    @Data
+    public static class Loopback {
+        /**
+         * Instances joining the same channel receive each other's messages.
+         */
+        private String channel = "origin";
+    }
+
+    @Data
+    public static class Multicast {
+        /**
+         * Multicast group address.
+         */
+        private String group = "239.255.27.1";
+        /**
+         * UDP port every instance sends to and listens on.
+         */
+        private int port = 45627;
+        /**
+         * Network interface to join the group on; empty picks the first multicast capable,
+         * non-loopback interface that is up.
+         */
+        private String networkInterface = "";
+        /**
+         * Number of router hops a message may cross; 1 keeps it on the local network.
+         */
+        private int ttl = 1;
+    }
+}
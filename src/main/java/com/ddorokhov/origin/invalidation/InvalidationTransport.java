@@ -0,0 +1,26 @@
+package com.ddorokhov.origin.invalidation;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Carries the messages of the {@link InvalidationBus} between instances. Delivery is best
+ * effort: messages may be lost, and an instance may receive its own.
+ */
+public interface InvalidationTransport {
+
+    /**
+     * Starts passing received messages to the receiver, which must not block for long.
+     */
+    void start(Consumer<byte[]> receiver) throws IOException;
+
+    /**
+     * Sends a message to all instances; may be called from several threads.
+     */
+    void send(byte[] message) throws IOException;
+
+    /**
+     * Stops receiving and releases the transport's resources.
+     */
+    void stop();
+}
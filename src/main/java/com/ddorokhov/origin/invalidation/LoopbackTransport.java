@@ -0,0 +1,43 @@
+package com.ddorokhov.origin.invalidation;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * Delivers messages to every started transport of the same channel in this JVM, on the
+ * sending thread. Meant for running several application contexts side by side, e.g. in tests.
+ */
+public class LoopbackTransport implements InvalidationTransport {
+    private static final Map<String, Set<LoopbackTransport>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private volatile Consumer<byte[]> receiver;
+
+    public LoopbackTransport(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        CHANNELS.computeIfAbsent(channel, name -> new CopyOnWriteArraySet<>()).add(this);
+    }
+
+    @Override
+    public void send(byte[] message) {
+        for (LoopbackTransport member : CHANNELS.getOrDefault(channel, Set.of())) {
+            member.receiver.accept(message.clone());
+        }
+    }
+
+    @Override
+    public void stop() {
+        CHANNELS.computeIfPresent(channel, (name, members) -> {
+            members.remove(this);
+            return members.isEmpty() ? null : members;
+        });
+    }
+}
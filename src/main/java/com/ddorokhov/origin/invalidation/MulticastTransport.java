@@ -0,0 +1,106 @@
+package com.ddorokhov.origin.invalidation;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.function.Consumer;
+
+/**
+ * Sends every message as one UDP datagram to a multicast group that all instances join.
+ * <p>
+ * One datagram reaches every instance on the network without knowing the peers. Datagrams
+ * may be lost or reordered; the {@link InvalidationBus} detects both from sequence numbers.
+ * Loopback of the own datagrams stays on, so several instances can share a host; the bus
+ * ignores its own messages.
+ */
+@Slf4j
+public class MulticastTransport implements InvalidationTransport {
+    private static final int MAX_DATAGRAM_SIZE = 65_507;
+
+    private final InvalidationProperties.Multicast properties;
+    private DatagramChannel channel;
+    private InetSocketAddress group;
+
+    public MulticastTransport(InvalidationProperties.Multicast properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) throws IOException {
+        InetAddress address = InetAddress.getByName(properties.getGroup());
+        if (!address.isMulticastAddress()) throw new IllegalArgumentException("Not a multicast group: " + properties.getGroup());
+        NetworkInterface networkInterface = networkInterface();
+        channel = DatagramChannel.open(address instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET)
+                .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+                .bind(new InetSocketAddress(properties.getPort()))
+                .setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface)
+                .setOption(StandardSocketOptions.IP_MULTICAST_TTL, properties.getTtl())
+                .setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        channel.join(address, networkInterface);
+        group = new InetSocketAddress(address, properties.getPort());
+
+        Thread thread = new Thread(() -> receive(receiver), "invalidation-receiver");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Joined invalidation group {} on {}", group, networkInterface.getName());
+    }
+
+    private void receive(Consumer<byte[]> receiver) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        while (true) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                receiver.accept(Arrays.copyOf(buffer.array(), buffer.position()));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not receive an invalidation message", e);
+            }
+        }
+    }
+
+    @Override
+    public void send(byte[] message) throws IOException {
+        channel.send(ByteBuffer.wrap(message), group);
+    }
+
+    @Override
+    public void stop() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            log.warn("Could not close the invalidation channel", e);
+        }
+    }
+
+    private NetworkInterface networkInterface() throws SocketException {
+        String name = properties.getNetworkInterface();
+        if (!name.isEmpty()) {
+            NetworkInterface named = NetworkInterface.getByName(name);
+            if (named == null) throw new IllegalArgumentException("Unknown network interface: " + name);
+            return named;
+        }
+        NetworkInterface loopback = null;
+        for (Enumeration<NetworkInterface> all = NetworkInterface.getNetworkInterfaces(); all.hasMoreElements(); ) {
+            NetworkInterface candidate = all.nextElement();
+            if (!candidate.isUp()) continue;
+            if (candidate.isLoopback()) loopback = candidate;
+            else if (candidate.supportsMulticast()) return candidate;
+        }
+        if (loopback == null) throw new SocketException("No network interface to join " + properties.getGroup() + " on");
+        return loopback;
+    }
+}
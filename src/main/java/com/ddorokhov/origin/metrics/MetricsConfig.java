@@ -0,0 +1,24 @@
+package com.ddorokhov.origin.metrics;
+
+import com.ddorokhov.origin.cache.SingleFlightCacheMeterBinderProvider;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables {@code @Timed} on service methods and metrics of the coalescing caches.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public OrderedTimedAspect timedAspect(MeterRegistry registry) {
+        return new OrderedTimedAspect(new TimedAspect(registry));
+    }
+
+    @Bean
+    public SingleFlightCacheMeterBinderProvider singleFlightCacheMeterBinderProvider() {
+        return new SingleFlightCacheMeterBinderProvider();
+    }
+}
@@ -0,0 +1,28 @@
+package com.ddorokhov.origin.metrics;
+
+import io.micrometer.core.aop.TimedAspect;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Applies {@link TimedAspect} to {@code @Timed} methods ahead of the caching and transaction
+ * interceptors, which share its default order. Timers therefore include cache hits and
+ * commits instead of measuring only the method body behind them.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class OrderedTimedAspect {
+    private final TimedAspect timedAspect;
+
+    public OrderedTimedAspect(TimedAspect timedAspect) {
+        this.timedAspect = timedAspect;
+    }
+
+    @Around("execution (@io.micrometer.core.annotation.Timed * *.*(..))")
+    public Object timedMethod(ProceedingJoinPoint pjp) throws Throwable {
+        return timedAspect.timedMethod(pjp);
+    }
+}
@@ -0,0 +1,103 @@
+package com.ddorokhov.origin.migration;
+
+import com.ddorokhov.origin.UrlHasher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Migrates tables created before original URLs were looked up by hash.
+ * <p>
+ * Backfills {@code original_url_hash} for rows that lack it, in pages, rehashes rows stored
+ * with the former MurmurHash3 hash, and drops the legacy full-text index and unique
+ * constraint on {@code original_url}. Does nothing on an up-to-date schema. Runs once all
+ * beans, and with them the schema, exist, but before the web servers start taking requests, so
+ * no lookup or insert sees a row without its current hash.
+ */
+@Component
+@Slf4j
+public class OriginalUrlHashMigration implements SmartInitializingSingleton {
+    static final int PAGE_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OriginalUrlHashMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long backfilled = backfill();
+        if (backfilled > 0) log.info("Backfilled original_url_hash for {} rows", backfilled);
+        long rehashed = rehash();
+        if (rehashed > 0) log.info("Rehashed original_url_hash of {} rows", rehashed);
+        dropLegacyIndexes();
+    }
+
+    /**
+     * @return number of rows updated
+     */
+    long backfill() {
+        long total = 0;
+        while (true) {
+            List<Object[]> page = new ArrayList<>();
+            jdbcTemplate.query("SELECT short_code, original_url FROM url_entity WHERE original_url_hash IS NULL FETCH FIRST " + PAGE_SIZE + " ROWS ONLY",
+                    rs -> {
+                        page.add(new Object[]{UrlHasher.hash(rs.getString(2)), rs.getString(1)});
+                    });
+            if (page.isEmpty()) return total;
+            jdbcTemplate.batchUpdate("UPDATE url_entity SET original_url_hash = ? WHERE short_code = ?", page);
+            total += page.size();
+        }
+    }
+
+    /**
+     * Replaces hashes that differ from the current {@link UrlHasher} hash, in pages by short
+     * code. Rows are rehashed in ascending order, so the last row being current means a
+     * previous run completed and nothing is read.
+     *
+     * @return number of rows updated
+     */
+    long rehash() {
+        List<Boolean> lastCurrent = jdbcTemplate.query(
+                "SELECT original_url, original_url_hash FROM url_entity ORDER BY short_code DESC FETCH FIRST 1 ROWS ONLY",
+                (rs, row) -> Arrays.equals(UrlHasher.hash(rs.getString(1)), rs.getBytes(2)));
+        if (lastCurrent.isEmpty() || lastCurrent.get(0)) return 0;
+
+        long total = 0;
+        String after = "";
+        while (true) {
+            List<Object[]> stale = new ArrayList<>();
+            List<String> codes = jdbcTemplate.query(
+                    "SELECT short_code, original_url, original_url_hash FROM url_entity WHERE short_code > ? ORDER BY short_code FETCH FIRST " + PAGE_SIZE + " ROWS ONLY",
+                    (rs, row) -> {
+                        byte[] hash = UrlHasher.hash(rs.getString(2));
+                        if (!Arrays.equals(hash, rs.getBytes(3))) stale.add(new Object[]{hash, rs.getString(1)});
+                        return rs.getString(1);
+                    },
+                    after);
+            if (codes.isEmpty()) return total;
+            if (!stale.isEmpty()) jdbcTemplate.batchUpdate("UPDATE url_entity SET original_url_hash = ? WHERE short_code = ?", stale);
+            total += stale.size();
+            after = codes.get(codes.size() - 1);
+        }
+    }
+
+    private void dropLegacyIndexes() {
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_original_url");
+        List<String> constraints = jdbcTemplate.queryForList(
+                "SELECT tc.CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc " +
+                        "JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE kcu ON tc.CONSTRAINT_NAME = kcu.CONSTRAINT_NAME " +
+                        "WHERE tc.TABLE_NAME = 'URL_ENTITY' AND tc.CONSTRAINT_TYPE = 'UNIQUE' AND kcu.COLUMN_NAME = 'ORIGINAL_URL'",
+                String.class);
+        for (String constraint : constraints) {
+            log.info("Dropping legacy unique constraint {} on url_entity.original_url", constraint);
+            jdbcTemplate.execute("ALTER TABLE url_entity DROP CONSTRAINT " + constraint);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.ddorokhov.origin.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import static com.ddorokhov.origin.Constants.PATH_SHORTEN;
+import static com.ddorokhov.origin.Constants.PATH_SHORTEN_BATCH;
+
+/**
+ * Rate limits the create endpoints per client as configured by {@code origin.rate-limit.*}.
+ */
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+@ConditionalOnProperty(prefix = "origin.rate-limit", name = "enabled", havingValue = "true")
+public class RateLimitConfig implements WebMvcConfigurer {
+    private final ObjectProvider<RateLimitInterceptor> rateLimitInterceptor;
+
+    public RateLimitConfig(ObjectProvider<RateLimitInterceptor> rateLimitInterceptor) {
+        this.rateLimitInterceptor = rateLimitInterceptor;
+    }
+
+    @Bean
+    public RateLimiter rateLimiter(RateLimitProperties properties) {
+        return new RateLimiter(properties);
+    }
+
+    @Bean
+    public RateLimitInterceptor rateLimitInterceptor(RateLimiter rateLimiter, RateLimitProperties properties, MeterRegistry meterRegistry) {
+        return new RateLimitInterceptor(rateLimiter, properties, meterRegistry);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor.getObject()).addPathPatterns(PATH_SHORTEN, PATH_SHORTEN_BATCH);
+    }
+}
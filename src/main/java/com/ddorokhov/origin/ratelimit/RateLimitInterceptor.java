@@ -0,0 +1,58 @@
+package com.ddorokhov.origin.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects create requests of clients that exceeded their rate with {@code 429 Too Many Requests}
+ * and a {@code Retry-After} in whole seconds.
+ * <p>
+ * Clients are told apart by the configured header if the request carries it, otherwise by
+ * remote address. The interceptor runs only for the create endpoints of the API; redirects
+ * are answered by the redirect filter and server before any handler is chosen.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+    private final RateLimiter rateLimiter;
+    private final String clientHeader;
+    private final Counter rejected;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.clientHeader = properties.getClientHeader();
+        this.rejected = Counter.builder("origin.rate-limit.rejected")
+                .description("Create requests rejected because their client exceeded its rate")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!HttpMethod.POST.matches(request.getMethod())) return true;
+        long waitNanos = rateLimiter.tryAcquire(clientOf(request));
+        if (waitNanos == 0) return true;
+
+        rejected.increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("Rate limit exceeded");
+        return false;
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        if (!clientHeader.isEmpty()) {
+            String client = request.getHeader(clientHeader);
+            if (client != null && !client.isEmpty()) return "header:" + client;
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,45 @@
+package com.ddorokhov.origin.ratelimit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Create API rate limit settings, bound to {@code origin.rate-limit.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.rate-limit")
+public class RateLimitProperties {
+    /**
+     * Whether create requests are rate limited per client. Off by default: behind a load
+     * balancer or proxy every request has the proxy's address, so without a
+     * {@link #clientHeader} all clients would share one bucket.
+     */
+    private boolean enabled = false;
+    /**
+     * Sustained create requests per second allowed to one client.
+     */
+    private double requestsPerSecond = 10;
+    /**
+     * Create requests one client may send at once after being idle.
+     */
+    private int burst = 20;
+    /**
+     * Most clients tracked at once; the least recently seen are forgotten first.
+     */
+    private long maxClients = 100_000;
+    /**
+     * Time after which an idle client is forgotten. A bucket idle for longer than
+     * {@code burst / requests-per-second} is full anyway, so forgetting it changes nothing.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+    /**
+     * Request header whose value identifies the client instead of its address, e.g. an API
+     * key checked by a gateway in front, or a client address header the proxy overwrites on
+     * every request. Must be set by a trusted proxy: clients can send any value themselves.
+     * Empty to always use the address, which only tells clients apart when they connect
+     * directly.
+     */
+    private String clientHeader = "";
+}
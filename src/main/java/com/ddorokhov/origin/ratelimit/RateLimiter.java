@@ -0,0 +1,62 @@
+package com.ddorokhov.origin.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-client token buckets updated without locks.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding its theoretical arrival time (GCRA): the
+ * instant at which the bucket would be full again. A request advances it by one emission
+ * interval ({@code 1 / requests-per-second}) and is allowed if the result lies at most
+ * {@code burst} intervals ahead of now. This is the token bucket with capacity {@code burst}
+ * and refill rate {@code requests-per-second}, decided with one compare-and-set and no
+ * refill bookkeeping. Buckets live in a Caffeine cache bounded by {@code max-clients} that
+ * forgets clients idle for {@code idle-timeout}.
+ */
+public class RateLimiter {
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final Ticker ticker;
+    private final Cache<String, AtomicLong> buckets;
+
+    public RateLimiter(RateLimitProperties properties) {
+        this(properties, Ticker.systemTicker());
+    }
+
+    RateLimiter(RateLimitProperties properties, Ticker ticker) {
+        this.emissionIntervalNanos = Math.round(1e9 / properties.getRequestsPerSecond());
+        this.burstNanos = emissionIntervalNanos * properties.getBurst();
+        this.ticker = ticker;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxClients())
+                .expireAfterAccess(properties.getIdleTimeout())
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Takes one token from the client's bucket if one is left.
+     *
+     * @return {@code 0} if allowed, otherwise the nanoseconds until the next token
+     */
+    public long tryAcquire(String client) {
+        long now = ticker.read();
+        AtomicLong arrival = buckets.get(client, key -> new AtomicLong(now));
+        while (true) {
+            long current = arrival.get();
+            long next = Math.max(current, now) + emissionIntervalNanos;
+            long ahead = next - now;
+            if (ahead > burstNanos) return ahead - burstNanos;
+            if (arrival.compareAndSet(current, next)) return 0;
+        }
+    }
+
+    long trackedClients() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
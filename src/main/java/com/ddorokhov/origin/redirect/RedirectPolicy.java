@@ -0,0 +1,47 @@
+package com.ddorokhov.origin.redirect;
+
+import com.ddorokhov.origin.UrlEntity;
+
+import java.util.Set;
+
+/**
+ * Status and {@code Cache-Control} of short link redirects.
+ * <p>
+ * A redirect may be cached for {@code max-age}, or until its link expires if that comes
+ * first. The header of links without an expiry is built once, so redirects of those allocate
+ * nothing for it.
+ */
+public class RedirectPolicy {
+    static final String NO_STORE = "no-store";
+    private static final Set<Integer> REDIRECT_STATUSES = Set.of(301, 302, 307, 308);
+
+    private final int status;
+    private final long maxAgeSeconds;
+    private final String cacheControl;
+
+    public RedirectPolicy(RedirectProperties properties) {
+        if (!REDIRECT_STATUSES.contains(properties.getStatus())) {
+            throw new IllegalArgumentException("Redirect status must be one of " + REDIRECT_STATUSES + ": " + properties.getStatus());
+        }
+        this.status = properties.getStatus();
+        this.maxAgeSeconds = properties.getMaxAge().toSeconds();
+        this.cacheControl = cacheControl(maxAgeSeconds);
+    }
+
+    public int status() {
+        return status;
+    }
+
+    /**
+     * @return the {@code Cache-Control} value of a redirect to the mapping
+     */
+    public String cacheControl(UrlEntity urlEntity) {
+        if (urlEntity.getExpiresAt() == null || maxAgeSeconds == 0) return cacheControl;
+        long untilExpiry = (urlEntity.getExpiresAt().toEpochMilli() - System.currentTimeMillis()) / 1000;
+        return untilExpiry >= maxAgeSeconds ? cacheControl : cacheControl(untilExpiry);
+    }
+
+    private static String cacheControl(long maxAgeSeconds) {
+        return maxAgeSeconds > 0 ? "public, max-age=" + maxAgeSeconds : NO_STORE;
+    }
+}
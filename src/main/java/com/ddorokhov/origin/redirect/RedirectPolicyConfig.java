@@ -0,0 +1,18 @@
+package com.ddorokhov.origin.redirect;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Provides the {@link RedirectPolicy} configured by {@code origin.redirect.*}.
+ */
+@Configuration
+@EnableConfigurationProperties(RedirectProperties.class)
+public class RedirectPolicyConfig {
+
+    @Bean
+    public RedirectPolicy redirectPolicy(RedirectProperties properties) {
+        return new RedirectPolicy(properties);
+    }
+}
@@ -0,0 +1,27 @@
+package com.ddorokhov.origin.redirect;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * How short links redirect, bound to {@code origin.redirect.*}. Applies to the servlet
+ * filter and the reactive redirect server alike.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.redirect")
+public class RedirectProperties {
+    /**
+     * Redirect status: {@code 301} or {@code 308} (permanent) or {@code 302} or {@code 307}
+     * (temporary). The status alone does not make a redirect cacheable; {@code max-age} does.
+     */
+    private int status = 302;
+    /**
+     * How long browsers and shared caches may reuse a redirect without asking again, capped
+     * by the link's expiry. Also the longest a deleted link keeps redirecting for clients
+     * that cached it. Redirects served from such caches are not counted. {@code 0} forbids
+     * storing redirects.
+     */
+    private Duration maxAge = Duration.ZERO;
+}
@@ -0,0 +1,149 @@
+package com.ddorokhov.origin.redirect;
+
+import com.ddorokhov.origin.ShortUrls;
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlService;
+import com.ddorokhov.origin.analytics.ClickCounter;
+import com.ddorokhov.origin.cache.HotKeyTracker;
+import com.ddorokhov.origin.cache.ShortCodeFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.context.SmartLifecycle;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.resources.LoopResources;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking redirect endpoint for the short domain, listening on its own port next to the
+ * servlet application, which keeps serving the management API.
+ * <p>
+ * Requests are handled on Reactor Netty event loops without a filter chain or dispatcher.
+ * A code rejected by the {@link ShortCodeFilter} or found in the short-to-original cache,
+ * including a cached miss, is answered without leaving the event loop. Only a cache miss
+ * calls {@link UrlService#getOriginal}, which blocks on JDBC and therefore runs on the bounded
+ * elastic scheduler; concurrent misses for one code still share a single query and fill the
+ * cache for the next request. Paths that are not a single short code get a 404. Redirects use
+ * the {@link RedirectPolicy} and are counted and timed like those of the servlet filter, tagged
+ * {@code server=reactive}. Found codes are counted by the {@link HotKeyTracker}, on a cache
+ * hit here and on a miss by {@link UrlService#getOriginal}.
+ */
+@Slf4j
+public class RedirectServer implements SmartLifecycle {
+    private final RedirectServerProperties properties;
+    private final UrlService urlService;
+    private final Cache shortToOriginalCache;
+    private final ShortCodeFilter shortCodeFilter;
+    private final RedirectPolicy redirectPolicy;
+    private final HttpResponseStatus redirectStatus;
+    private final ClickCounter clickCounter;
+    private final HotKeyTracker hotKeyTracker;
+    private final Timer foundTimer;
+    private final Timer notFoundTimer;
+    private LoopResources loopResources;
+    private volatile DisposableServer server;
+
+    public RedirectServer(RedirectServerProperties properties, UrlService urlService, Cache shortToOriginalCache,
+                          ShortCodeFilter shortCodeFilter, RedirectPolicy redirectPolicy, ClickCounter clickCounter,
+                          HotKeyTracker hotKeyTracker, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.urlService = urlService;
+        this.shortToOriginalCache = shortToOriginalCache;
+        this.shortCodeFilter = shortCodeFilter;
+        this.redirectPolicy = redirectPolicy;
+        this.redirectStatus = HttpResponseStatus.valueOf(redirectPolicy.status());
+        this.clickCounter = clickCounter;
+        this.hotKeyTracker = hotKeyTracker;
+        this.foundTimer = redirectTimer(meterRegistry, "found");
+        this.notFoundTimer = redirectTimer(meterRegistry, "not_found");
+    }
+
+    private static Timer redirectTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("origin.redirect")
+                .description("Short domain requests reaching a lookup, excluding the rest of the chain on a miss")
+                .tag("server", "reactive")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        int threads = properties.getEventLoopThreads() > 0
+                ? properties.getEventLoopThreads()
+                : Runtime.getRuntime().availableProcessors();
+        loopResources = LoopResources.create("redirect", threads, true);
+        server = HttpServer.create()
+                .port(properties.getPort())
+                .runOn(loopResources)
+                .handle(this::handle)
+                .bindNow();
+        log.info("Redirect server started on port {} with {} event loop threads", server.port(), threads);
+    }
+
+    @Override
+    public void stop() {
+        server.disposeNow();
+        loopResources.disposeLater().block();
+        server = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * @return the bound port
+     */
+    public int getPort() {
+        return server.port();
+    }
+
+    private Mono<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        String code = ShortUrls.fromPath(request.fullPath());
+        if (code == null) {
+            return response.status(HttpResponseStatus.NOT_FOUND).send();
+        }
+
+        long start = System.nanoTime();
+        if (!shortCodeFilter.mightExist(code)) {
+            return respond(response, code, null, start);
+        }
+        Cache.ValueWrapper cached = shortToOriginalCache.get(code);
+        if (cached != null) {
+            UrlEntity urlEntity = (UrlEntity) cached.get();
+            if (urlEntity != null && !urlEntity.isExpired()) hotKeyTracker.record(code);
+            return respond(response, code, urlEntity, start);
+        }
+        return Mono.fromCallable(() -> urlService.getOriginal(code))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(urlEntity -> respond(response, code, urlEntity.orElse(null), start))
+                .onErrorResume(ex -> {
+                    log.warn("Lookup of short code {} failed", code, ex);
+                    return response.status(HttpResponseStatus.SERVICE_UNAVAILABLE).send();
+                });
+    }
+
+    private Mono<Void> respond(HttpServerResponse response, String code, UrlEntity urlEntity, long start) {
+        if (urlEntity == null || urlEntity.isExpired()) {
+            notFoundTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return response.status(HttpResponseStatus.NOT_FOUND).send();
+        }
+        clickCounter.record(code);
+        foundTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return response.status(redirectStatus)
+                .header(HttpHeaderNames.LOCATION, urlEntity.getOriginalUrl())
+                .header(HttpHeaderNames.CACHE_CONTROL, redirectPolicy.cacheControl(urlEntity))
+                .send();
+    }
+}
@@ -0,0 +1,31 @@
+package com.ddorokhov.origin.redirect;
+
+import com.ddorokhov.origin.UrlService;
+import com.ddorokhov.origin.analytics.ClickCounter;
+import com.ddorokhov.origin.cache.HotKeyTracker;
+import com.ddorokhov.origin.cache.ShortCodeFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
+
+/**
+ * Starts the reactive redirect server configured by {@code origin.redirect-server.*}.
+ */
+@Configuration
+@EnableConfigurationProperties(RedirectServerProperties.class)
+public class RedirectServerConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "origin.redirect-server", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public RedirectServer redirectServer(RedirectServerProperties properties, UrlService urlService, CacheManager cacheManager,
+                                         ShortCodeFilter shortCodeFilter, RedirectPolicy redirectPolicy, ClickCounter clickCounter,
+                                         HotKeyTracker hotKeyTracker, MeterRegistry meterRegistry) {
+        return new RedirectServer(properties, urlService, cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL), shortCodeFilter,
+                redirectPolicy, clickCounter, hotKeyTracker, meterRegistry);
+    }
+}
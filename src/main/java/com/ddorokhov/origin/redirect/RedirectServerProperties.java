@@ -0,0 +1,24 @@
+package com.ddorokhov.origin.redirect;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Reactive redirect server settings, bound to {@code origin.redirect-server.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.redirect-server")
+public class RedirectServerProperties {
+    /**
+     * Whether to start the redirect server next to the servlet application.
+     */
+    private boolean enabled = true;
+    /**
+     * Port of the redirect server; {@code 0} picks a free port.
+     */
+    private int port = 8081;
+    /**
+     * Number of event loop threads; {@code 0} uses one per available processor.
+     */
+    private int eventLoopThreads = 0;
+}
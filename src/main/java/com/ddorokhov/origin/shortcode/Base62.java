@@ -0,0 +1,70 @@
+package com.ddorokhov.origin.shortcode;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Fixed-width base62 encoding of non-negative numbers.
+ */
+@UtilityClass
+public class Base62 {
+    private static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int RADIX = ALPHABET.length;
+
+    /**
+     * Longest code whose value range still fits into a {@code long}.
+     */
+    public static final int MAX_LENGTH = 10;
+
+    /**
+     * Number of distinct codes of the given length.
+     *
+     * @param length code length, at most {@link #MAX_LENGTH}
+     * @return {@code 62^length}
+     */
+    public static long space(int length) {
+        if (length < 1 || length > MAX_LENGTH) throw new IllegalArgumentException("Base62 length must be between 1 and " + MAX_LENGTH + ": " + length);
+        long space = 1;
+        for (int i = 0; i < length; i++) space *= RADIX;
+        return space;
+    }
+
+    /**
+     * Encodes the value left-padded to exactly {@code length} characters.
+     *
+     * @param value  value in {@code [0, 62^length)}
+     * @param length code length
+     * @return base62 representation
+     */
+    public static String encode(long value, int length) {
+        char[] result = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            result[i] = ALPHABET[(int) (value % RADIX)];
+            value /= RADIX;
+        }
+        if (value != 0) throw new IllegalArgumentException("Value does not fit into " + length + " base62 characters");
+        return new String(result);
+    }
+
+    /**
+     * Decodes a base62 string.
+     *
+     * @param code base62 characters
+     * @return decoded value, or {@code -1} if the code contains a non-base62 character
+     */
+    public static long decode(CharSequence code) {
+        long value = 0;
+        for (int i = 0; i < code.length(); i++) {
+            int digit = digit(code.charAt(i));
+            if (digit < 0) return -1;
+            value = value * RADIX + digit;
+        }
+        return value;
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'z') return c - 'a' + 36;
+        return -1;
+    }
+}
@@ -0,0 +1,94 @@
+package com.ddorokhov.origin.shortcode;
+
+/**
+ * Reversible keyed permutation of {@code [0, space)}.
+ * <p>
+ * A balanced Feistel network permutes the smallest even-width bit domain covering the space;
+ * values falling outside the space are walked through the network again until they land
+ * inside it. Consecutive ids therefore map to unrelated, yet unique, values.
+ */
+public class IdScrambler {
+    private static final int ROUNDS = 4;
+
+    private final long space;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    /**
+     * @param space size of the permuted range, at least 2
+     * @param key   secret selecting the permutation
+     */
+    public IdScrambler(long space, long key) {
+        if (space < 2) throw new IllegalArgumentException("Scrambler space must be at least 2: " + space);
+        this.space = space;
+        int bits = 64 - Long.numberOfLeadingZeros(space - 1);
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        long state = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = mix(state);
+        }
+    }
+
+    /**
+     * @param id value in {@code [0, space)}
+     * @return scrambled value in {@code [0, space)}
+     */
+    public long scramble(long id) {
+        checkRange(id);
+        long value = id;
+        do {
+            value = encrypt(value);
+        } while (value >= space);
+        return value;
+    }
+
+    /**
+     * Inverse of {@link #scramble(long)}.
+     *
+     * @param scrambled value in {@code [0, space)}
+     * @return original id
+     */
+    public long unscramble(long scrambled) {
+        checkRange(scrambled);
+        long value = scrambled;
+        do {
+            value = decrypt(value);
+        } while (value >= space);
+        return value;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int i = 0; i < ROUNDS; i++) {
+            long next = left ^ (mix(right ^ roundKeys[i]) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long decrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            long previous = right ^ (mix(left ^ roundKeys[i]) & halfMask);
+            right = left;
+            left = previous;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private void checkRange(long value) {
+        if (value < 0 || value >= space) throw new IllegalArgumentException("Value out of scrambler space: " + value);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,55 @@
+package com.ddorokhov.origin.shortcode;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.ddorokhov.origin.Constants.SHORT_CODE_MAX_LENGTH;
+
+/**
+ * Generates case-randomized alphanumeric codes based on a random UUID.
+ * <p>
+ * Codes may collide, so callers have to check for an existing mapping before use.
+ */
+public class RandomShortCodeGenerator implements ShortCodeGenerator {
+    private final int length;
+
+    /**
+     * @param length code length, at most {@link com.ddorokhov.origin.Constants#SHORT_CODE_MAX_LENGTH}
+     */
+    public RandomShortCodeGenerator(int length) {
+        if (length < 1 || length > SHORT_CODE_MAX_LENGTH) {
+            throw new IllegalArgumentException("Random short code length must be between 1 and " + SHORT_CODE_MAX_LENGTH + ": " + length);
+        }
+        this.length = length;
+    }
+
+    /**
+     * Generates a case-randomized alphanumeric string based on UUID.
+     *
+     * @return randomized shortened ID
+     */
+    @Override
+    public String next() {
+        return randomizeCase(UUID.randomUUID().toString().replace("-", "").substring(0, length));
+    }
+
+    /**
+     * Randomizes the case of each alphabetic character in the input string.
+     *
+     * @param input the base string
+     * @return a string with randomly upper/lowercased letters
+     */
+    protected String randomizeCase(String input) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] result = input.toCharArray();
+
+        for (int i = 0; i < result.length; i++) {
+            char c = result[i];
+            if (Character.isLetter(c)) {
+                result[i] = random.nextBoolean() ? Character.toUpperCase(c) : Character.toLowerCase(c);
+            }
+        }
+
+        return new String(result);
+    }
+}
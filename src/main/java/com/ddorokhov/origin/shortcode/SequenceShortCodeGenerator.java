@@ -0,0 +1,119 @@
+package com.ddorokhov.origin.shortcode;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates collision-free codes from numeric ids reserved in blocks from a database sequence.
+ * <p>
+ * The sequence increments by the block size, so one round trip reserves a whole block of ids
+ * for this instance. Each id is passed through an {@link IdScrambler} and encoded as a
+ * fixed-width base62 code, hence distinct ids always yield distinct codes.
+ */
+@Slf4j
+public class SequenceShortCodeGenerator implements ShortCodeGenerator {
+    public static final String SEQUENCE_NAME = "url_code_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int length;
+    private final long space;
+    private final long blockSize;
+    private final IdScrambler scrambler;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long nextId;
+    private long blockEnd;
+
+    /**
+     * @param jdbcTemplate template of the database holding the sequence
+     * @param length       code length, at most {@link Base62#MAX_LENGTH}
+     * @param blockSize    number of ids reserved per round trip
+     * @param key          secret selecting the id-to-code permutation
+     */
+    public SequenceShortCodeGenerator(JdbcTemplate jdbcTemplate, int length, int blockSize, long key) {
+        if (blockSize < 1) throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        this.jdbcTemplate = jdbcTemplate;
+        this.length = length;
+        this.space = Base62.space(length);
+        this.scrambler = new IdScrambler(space, key);
+        this.blockSize = createSequence(blockSize);
+    }
+
+    @Override
+    public String next() {
+        long id;
+        lock.lock();
+        try {
+            if (nextId >= blockEnd) reserveBlock();
+            id = nextId++;
+        } finally {
+            lock.unlock();
+        }
+        if (id >= space) throw new IllegalStateException("Short code space of length " + length + " is exhausted");
+        return Base62.encode(scrambler.scramble(id), length);
+    }
+
+    @Override
+    public boolean isCollisionFree() {
+        return true;
+    }
+
+    /**
+     * @param shortCode a code, possibly produced by another generator
+     * @return the id this generator turns into the code, or {@code -1} if it never produces it
+     */
+    public long idOf(String shortCode) {
+        if (shortCode.length() != length) return -1;
+        long scrambled = Base62.decode(shortCode);
+        return scrambled < 0 || scrambled >= space ? -1 : scrambler.unscramble(scrambled);
+    }
+
+    /**
+     * Makes sure no id up to {@code maxId} is handed out again, restarting the sequence after
+     * the block holding it if the sequence is behind.
+     *
+     * @param maxId highest id already in use
+     */
+    public void skipPast(long maxId) {
+        long restart = (maxId / blockSize + 1) * blockSize;
+        lock.lock();
+        try {
+            Long next = jdbcTemplate.queryForObject(
+                    "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = UPPER(?)",
+                    Long.class, SEQUENCE_NAME);
+            if (next == null || next < restart) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + SEQUENCE_NAME + " RESTART WITH " + restart);
+                log.info("Restarted sequence {} at {} past stored id {}", SEQUENCE_NAME, restart, maxId);
+            }
+            if (nextId <= maxId) blockEnd = nextId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reserveBlock() {
+        Long start = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + SEQUENCE_NAME, Long.class);
+        if (start == null) throw new IllegalStateException("Sequence " + SEQUENCE_NAME + " returned no value");
+        nextId = start;
+        blockEnd = start + blockSize;
+        log.debug("Reserved short code ids [{}, {})", nextId, blockEnd);
+    }
+
+    /**
+     * Creates the sequence if missing and returns its actual increment, which is the block size
+     * every instance must use to keep reserved blocks disjoint.
+     */
+    private long createSequence(int blockSize) {
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE_NAME + " START WITH 0 MINVALUE 0 INCREMENT BY " + blockSize);
+        Long increment = jdbcTemplate.queryForObject(
+                "SELECT INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = UPPER(?)",
+                Long.class, SEQUENCE_NAME);
+        if (increment == null) throw new IllegalStateException("Sequence " + SEQUENCE_NAME + " not found");
+        if (increment != blockSize) {
+            log.warn("Sequence {} increments by {}, ignoring configured block size {}", SEQUENCE_NAME, increment, blockSize);
+        }
+        return increment;
+    }
+}
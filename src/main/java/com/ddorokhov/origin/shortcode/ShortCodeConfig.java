@@ -0,0 +1,22 @@
+package com.ddorokhov.origin.shortcode;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Selects the {@link ShortCodeGenerator} configured by {@code origin.short-code.generator}.
+ */
+@Configuration
+@EnableConfigurationProperties(ShortCodeProperties.class)
+public class ShortCodeConfig {
+
+    @Bean
+    public ShortCodeGenerator shortCodeGenerator(ShortCodeProperties properties, JdbcTemplate jdbcTemplate) {
+        return switch (properties.getGenerator()) {
+            case SEQUENCE -> new SequenceShortCodeGenerator(jdbcTemplate, properties.getLength(), properties.getBlockSize(), properties.getKey());
+            case RANDOM -> new RandomShortCodeGenerator(properties.getLength());
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package com.ddorokhov.origin.shortcode;
+
+/**
+ * Produces short codes for new URL mappings.
+ */
+public interface ShortCodeGenerator {
+
+    /**
+     * Generates the next short code.
+     *
+     * @return alphanumeric short code
+     */
+    String next();
+
+    /**
+     * Tells whether codes produced by this generator never repeat, so callers may skip
+     * the existence check before inserting a new mapping.
+     *
+     * @return {@code true} if generated codes are unique by construction
+     */
+    default boolean isCollisionFree() {
+        return false;
+    }
+}
@@ -0,0 +1,40 @@
+package com.ddorokhov.origin.shortcode;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Short code generation settings, bound to {@code origin.short-code.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.short-code")
+public class ShortCodeProperties {
+    /**
+     * Generation strategy.
+     */
+    private Strategy generator = Strategy.SEQUENCE;
+    /**
+     * Length of generated codes.
+     */
+    private int length = 6;
+    /**
+     * Number of sequence ids reserved per database round trip.
+     */
+    private int blockSize = 100;
+    /**
+     * Secret selecting the id-to-code permutation. Changing it on a populated database
+     * makes new codes collide with existing ones.
+     */
+    private long key = 0x2545F4914F6CDD1DL;
+
+    public enum Strategy {
+        /**
+         * Block-reserved database sequence ids, scrambled and base62 encoded. Collision free.
+         */
+        SEQUENCE,
+        /**
+         * Case-randomized UUID prefix. Requires an existence check per generated code.
+         */
+        RANDOM
+    }
+}
@@ -0,0 +1,231 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlWriteProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.TransactionException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Writes single inserts of another {@link UrlStore} in shared batches.
+ * <p>
+ * {@link #insertIfAbsent} queues the mapping and blocks until a single writer thread has
+ * stored it. The writer takes the first waiting insert, gathers more for at most
+ * {@code origin.write.group-commit.max-delay} or until {@code max-batch-size} are waiting,
+ * and stores them with one {@link UrlStore#insertAll} call, so the batch shares one commit.
+ * Inserts that would conflict, with each other or with stored mappings, are answered as not
+ * inserted beforehand. If the batch still fails, its inserts are retried one by one, so a
+ * failing insert only fails its own caller. Every other call goes straight to the store.
+ */
+@Slf4j
+public class GroupCommitUrlStore implements UrlStore {
+    private final UrlStore delegate;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingInsert> queue;
+    private final DistributionSummary batchSizes;
+    private final Thread writer = new Thread(this::writeLoop, "url-group-commit");
+    private volatile boolean running = true;
+
+    public GroupCommitUrlStore(UrlStore delegate, UrlWriteProperties.GroupCommit properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxBatchSize = properties.getMaxBatchSize();
+        this.maxDelayNanos = properties.getMaxDelay().toNanos();
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSizes = DistributionSummary.builder("origin.write.group-commit.batch-size")
+                .description("Creates stored per group commit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public Optional<UrlEntity> findByShortCode(String shortCode) {
+        return delegate.findByShortCode(shortCode);
+    }
+
+    @Override
+    public Optional<UrlEntity> findByOriginalUrl(String originalUrl) {
+        return delegate.findByOriginalUrl(originalUrl);
+    }
+
+    @Override
+    public List<UrlEntity> findAllByShortCodeIn(Collection<String> shortCodes) {
+        return delegate.findAllByShortCodeIn(shortCodes);
+    }
+
+    @Override
+    public List<UrlEntity> findAllByOriginalUrlIn(Collection<String> originalUrls) {
+        return delegate.findAllByOriginalUrlIn(originalUrls);
+    }
+
+    /**
+     * Waits for the batch holding the mapping to be stored.
+     */
+    @Override
+    public boolean insertIfAbsent(UrlEntity urlEntity) {
+        if (!running) throw new IllegalStateException("Group commit writer is stopped");
+        PendingInsert pending = new PendingInsert(urlEntity, new CompletableFuture<>());
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing insert of " + urlEntity.getShortCode(), e);
+        }
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    @Override
+    public void insertAll(Collection<UrlEntity> urlEntities) {
+        delegate.insertAll(urlEntities);
+    }
+
+    @Override
+    public void delete(UrlEntity urlEntity) {
+        delegate.delete(urlEntity);
+    }
+
+    @Override
+    public int deleteExpired(Collection<UrlEntity> urlEntities, Instant now) {
+        return delegate.deleteExpired(urlEntities, now);
+    }
+
+    @Override
+    public List<UrlEntity> findExpired(Instant now, int limit) {
+        return delegate.findExpired(now, limit);
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        delegate.forEachShortCode(action);
+    }
+
+    /**
+     * Scheduled here as well, since the wrapped store is not a bean of its own.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${origin.store.log.compaction-interval:1m}")
+    public void compact() {
+        delegate.compact();
+    }
+
+    /**
+     * Lets the writer store the queued inserts, then closes the store.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    private void writeLoop() {
+        List<PendingInsert> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingInsert first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) continue;
+                    PendingInsert next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.result.completeExceptionally(e));
+                return;
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                batch.forEach(pending -> pending.result.completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Answers conflicting inserts, then stores the rest together, falling back to one by one.
+     */
+    void write(List<PendingInsert> batch) {
+        batchSizes.record(batch.size());
+        Map<String, PendingInsert> byOriginalUrl = new HashMap<>();
+        Map<String, PendingInsert> byShortCode = new HashMap<>();
+        for (PendingInsert pending : batch) {
+            String originalUrl = pending.urlEntity.getOriginalUrl();
+            String shortCode = pending.urlEntity.getShortCode();
+            if (byOriginalUrl.containsKey(originalUrl) || byShortCode.containsKey(shortCode)) {
+                pending.result.complete(false);
+            } else {
+                byOriginalUrl.put(originalUrl, pending);
+                byShortCode.put(shortCode, pending);
+            }
+        }
+        for (UrlEntity existing : delegate.findAllByOriginalUrlIn(List.copyOf(byOriginalUrl.keySet()))) {
+            PendingInsert pending = byOriginalUrl.remove(existing.getOriginalUrl());
+            byShortCode.remove(pending.urlEntity.getShortCode());
+            pending.result.complete(false);
+        }
+        for (UrlEntity taken : delegate.findAllByShortCodeIn(List.copyOf(byShortCode.keySet()))) {
+            PendingInsert pending = byShortCode.remove(taken.getShortCode());
+            byOriginalUrl.remove(pending.urlEntity.getOriginalUrl());
+            pending.result.complete(false);
+        }
+        if (byShortCode.isEmpty()) return;
+
+        List<UrlEntity> urlEntities = new ArrayList<>(byShortCode.size());
+        byShortCode.values().forEach(pending -> urlEntities.add(pending.urlEntity));
+        try {
+            delegate.insertAll(urlEntities);
+            byShortCode.values().forEach(pending -> pending.result.complete(true));
+            return;
+        } catch (DataAccessException | TransactionException e) {
+            log.debug("Group commit of {} creates failed, storing them one by one", urlEntities.size(), e);
+        }
+        for (PendingInsert pending : byShortCode.values()) {
+            try {
+                pending.result.complete(delegate.insertIfAbsent(pending.urlEntity));
+            } catch (RuntimeException e) {
+                pending.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    record PendingInsert(UrlEntity urlEntity, CompletableFuture<Boolean> result) {
+    }
+}
@@ -0,0 +1,118 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlRepository;
+import com.ddorokhov.origin.UrlWriteProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Stores mappings in the {@code url_entity} table through {@link UrlRepository}.
+ */
+@Slf4j
+public class JpaUrlStore implements UrlStore {
+    static final int SCAN_PAGE_SIZE = 1000;
+
+    private final UrlRepository urlRepository;
+    private final UrlWriteProperties writeProperties;
+
+    public JpaUrlStore(UrlRepository urlRepository, UrlWriteProperties writeProperties) {
+        this.urlRepository = urlRepository;
+        this.writeProperties = writeProperties;
+    }
+
+    @Override
+    public Optional<UrlEntity> findByShortCode(String shortCode) {
+        return urlRepository.findById(shortCode);
+    }
+
+    @Override
+    public Optional<UrlEntity> findByOriginalUrl(String originalUrl) {
+        return urlRepository.findByOriginalUrl(originalUrl);
+    }
+
+    @Override
+    public List<UrlEntity> findAllByShortCodeIn(Collection<String> shortCodes) {
+        return urlRepository.findAllById(shortCodes);
+    }
+
+    @Override
+    public List<UrlEntity> findAllByOriginalUrlIn(Collection<String> originalUrls) {
+        return urlRepository.findAllByOriginalUrlIn(originalUrls);
+    }
+
+    /**
+     * Inserts with the statement selected by {@code origin.write.upsert} in its own transaction.
+     * A constraint violation, from a taken code or a concurrent insert of the same URL, is
+     * reported as not inserted.
+     */
+    @Override
+    public boolean insertIfAbsent(UrlEntity urlEntity) {
+        try {
+            return switch (writeProperties.getUpsert()) {
+                case MERGE -> urlRepository.insertIfAbsent(urlEntity) == 1;
+                case INSERT -> {
+                    UrlEntity copy = new UrlEntity(urlEntity.getShortCode(), urlEntity.getOriginalUrl(), urlEntity.getExpiresAt());
+                    copy.setCreatedAt(urlEntity.getCreatedAt());
+                    urlRepository.saveAndFlush(copy);
+                    yield true;
+                }
+            };
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Concurrent create of {} or taken code {}", urlEntity.getOriginalUrl(), urlEntity.getShortCode());
+            return false;
+        }
+    }
+
+    /**
+     * Saves with JDBC batching as part of the caller's transaction.
+     */
+    @Override
+    public void insertAll(Collection<UrlEntity> urlEntities) {
+        urlRepository.saveAll(urlEntities);
+    }
+
+    @Override
+    public void delete(UrlEntity urlEntity) {
+        urlRepository.delete(urlEntity);
+    }
+
+    /**
+     * Deletes with a single {@code DELETE ... WHERE short_code IN (...)} statement.
+     */
+    @Override
+    public int deleteExpired(Collection<UrlEntity> urlEntities, Instant now) {
+        return urlRepository.deleteExpired(urlEntities.stream().map(UrlEntity::getShortCode).toList(), now);
+    }
+
+    @Override
+    public List<UrlEntity> findExpired(Instant now, int limit) {
+        return urlRepository.findByExpiresAtLessThanEqualOrderByExpiresAt(now, Limit.of(limit));
+    }
+
+    @Override
+    public long count() {
+        return urlRepository.count();
+    }
+
+    /**
+     * Reads the codes in key order, one page at a time.
+     */
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        String after = "";
+        List<String> page;
+        do {
+            page = urlRepository.findShortCodesAfter(after, SCAN_PAGE_SIZE);
+            page.forEach(action);
+            if (!page.isEmpty()) after = page.get(page.size() - 1);
+        } while (page.size() == SCAN_PAGE_SIZE);
+    }
+}
@@ -0,0 +1,660 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlHasher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Stores mappings in an append-only log of memory-mapped segment files, indexed in memory by
+ * short code and by the {@link UrlHasher} hash of the original URL.
+ * <p>
+ * Record layout: {@code int length} (of everything after it), {@code int crc32c} (of
+ * everything after it), {@code byte type}, {@code byte codeLength}, ASCII code and, for a
+ * {@code PUT}, the UTF-8 original URL. A {@code PUT_EXPIRING} holds the expiry in epoch
+ * milliseconds as a {@code long} between code and URL. A delete appends a {@code DELETE}
+ * tombstone holding only the code. The length is written last, so a record torn by a crash
+ * reads as the end of the log or fails its checksum.
+ * <p>
+ * On open the segments are replayed in order to rebuild both indexes; replay of the last
+ * segment stops at the first invalid record, and appends continue from there. Lookups read
+ * straight from the mapped segments without locking; writes are serialized. Sealed segments
+ * whose share of dead records (overwritten, deleted or tombstones) reaches the compaction
+ * threshold are rewritten by {@link #compact()}: live records are appended again and the
+ * segment file is deleted. Tombstones are carried forward while an older segment may still
+ * hold the record they delete. The retired mapping is released once the lookups that may
+ * still read it have finished: each lookup registers in a per-thread stripe of the current
+ * reader epoch, and compaction advances the epoch and waits for the previous one to drain.
+ * <p>
+ * Expiring mappings are also kept in an in-memory index ordered by expiry, which
+ * {@link #findExpired} reads from its start. Creation times are not kept.
+ * <p>
+ * Writes are not transactional: each is applied as soon as it is made, and a surrounding
+ * {@code @Transactional} that rolls back does not undo it.
+ */
+@Slf4j
+public class LogUrlStore implements UrlStore {
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte PUT_EXPIRING = 3;
+    private static final int EXPIRY_BYTES = 8;
+    private static final int LENGTH_BYTES = 4;
+    private static final int BODY_OFFSET = 8;
+    private static final int CODE_OFFSET = 10;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8})\\.log");
+    private static final int READER_STRIPES = 64;
+    // Counters of one stripe are a cache line apart
+    private static final int STRIPE_SPACING = 16;
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncWrites;
+    private final double compactionThreshold;
+    private final Map<String, Location> byCode = new ConcurrentHashMap<>();
+    private final Map<UrlHash, Location> byUrlHash = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Lookups in progress per reader epoch and thread stripe
+    private final AtomicIntegerArray readers = new AtomicIntegerArray(2 * READER_STRIPES * STRIPE_SPACING);
+    private volatile int readerEpoch;
+    // Guarded by writeLock
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    // Guarded by writeLock
+    private final TreeSet<Expiry> byExpiry = new TreeSet<>();
+    private Segment active;
+
+    private LogUrlStore(StoreProperties.Log properties) {
+        this.directory = Path.of(properties.getDirectory());
+        this.segmentSize = Math.toIntExact(properties.getSegmentSize().toBytes());
+        this.syncWrites = properties.isSyncWrites();
+        this.compactionThreshold = properties.getCompactionThreshold();
+    }
+
+    /**
+     * Opens the log in the configured directory, creating it if needed, and replays it.
+     */
+    public static LogUrlStore open(StoreProperties.Log properties) throws IOException {
+        LogUrlStore store = new LogUrlStore(properties);
+        store.recover();
+        return store;
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) ids.add(Integer.parseInt(matcher.group(1)));
+            });
+        }
+        ids.sort(null);
+        for (int id : ids) {
+            Segment segment = Segment.open(directory, id, segmentSize);
+            segments.put(id, segment);
+            replay(segment);
+        }
+        active = segments.isEmpty() ? newSegment(1) : segments.lastEntry().getValue();
+        log.info("Opened URL log in {}: {} segments, {} mappings", directory, segments.size(), byCode.size());
+    }
+
+    private void replay(Segment segment) {
+        int offset = 0;
+        while (offset + LENGTH_BYTES <= segment.capacity()) {
+            int length = segment.buffer.getInt(offset);
+            if (length == 0) break;
+            if (length < CODE_OFFSET - LENGTH_BYTES || offset + LENGTH_BYTES + length > segment.capacity()
+                    || checksum(segment.buffer, offset, length) != segment.buffer.getInt(offset + LENGTH_BYTES)) {
+                log.warn("Invalid record in {} at offset {}, ignoring the rest of the segment", segment.path, offset);
+                break;
+            }
+            Location location = new Location(segment, offset);
+            String shortCode = location.shortCode();
+            if (location.type() != DELETE) {
+                index(shortCode, location.originalUrl(), location);
+            } else {
+                unindex(shortCode);
+                segment.deadBytes += location.size();
+            }
+            offset += LENGTH_BYTES + length;
+        }
+        segment.writePosition = offset;
+    }
+
+    @Override
+    public Optional<UrlEntity> findByShortCode(String shortCode) {
+        int reader = enterReader();
+        try {
+            Location location = byCode.get(shortCode);
+            return location == null ? Optional.empty() : Optional.of(location.toEntity());
+        } finally {
+            readers.decrementAndGet(reader);
+        }
+    }
+
+    @Override
+    public Optional<UrlEntity> findByOriginalUrl(String originalUrl) {
+        UrlHash urlHash = UrlHash.of(originalUrl);
+        int reader = enterReader();
+        try {
+            Location location = byUrlHash.get(urlHash);
+            if (location == null) return Optional.empty();
+            UrlEntity urlEntity = location.toEntity();
+            return urlEntity.getOriginalUrl().equals(originalUrl) ? Optional.of(urlEntity) : Optional.empty();
+        } finally {
+            readers.decrementAndGet(reader);
+        }
+    }
+
+    /**
+     * Registers a lookup about to read the indexes and the segments they point into.
+     *
+     * @return the counter to decrement once the lookup no longer reads a segment
+     */
+    private int enterReader() {
+        int stripe = (int) (Thread.currentThread().threadId() & (READER_STRIPES - 1));
+        int reader = ((readerEpoch & 1) * READER_STRIPES + stripe) * STRIPE_SPACING;
+        readers.incrementAndGet(reader);
+        return reader;
+    }
+
+    /**
+     * Waits until no lookup can still read a segment the indexes stopped pointing into. Lookups
+     * registered under the next epoch read the indexes after the change, and so do those that
+     * registered under the current one after their counter was seen at zero.
+     */
+    private void awaitReaders() {
+        int epoch = readerEpoch & 1;
+        readerEpoch++;
+        for (int stripe = 0; stripe < READER_STRIPES; stripe++) {
+            int reader = (epoch * READER_STRIPES + stripe) * STRIPE_SPACING;
+            while (readers.get(reader) != 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    @Override
+    public List<UrlEntity> findAllByShortCodeIn(Collection<String> shortCodes) {
+        List<UrlEntity> found = new ArrayList<>();
+        for (String shortCode : shortCodes) {
+            findByShortCode(shortCode).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public List<UrlEntity> findAllByOriginalUrlIn(Collection<String> originalUrls) {
+        List<UrlEntity> found = new ArrayList<>();
+        for (String originalUrl : originalUrls) {
+            findByOriginalUrl(originalUrl).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public boolean insertIfAbsent(UrlEntity urlEntity) {
+        writeLock.lock();
+        try {
+            if (byCode.containsKey(urlEntity.getShortCode()) || byUrlHash.containsKey(UrlHash.of(urlEntity.getOriginalUrl()))) {
+                return false;
+            }
+            Segment segment = active;
+            int from = segment.writePosition;
+            index(urlEntity.getShortCode(), urlEntity.getOriginalUrl(), appendPut(urlEntity));
+            sync(segment, from);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends nothing unless every code and URL is free. With {@code sync-writes} the whole
+     * batch is forced to disk at once.
+     */
+    @Override
+    public void insertAll(Collection<UrlEntity> urlEntities) {
+        writeLock.lock();
+        try {
+            Set<String> codes = new HashSet<>();
+            Set<UrlHash> urlHashes = new HashSet<>();
+            for (UrlEntity urlEntity : urlEntities) {
+                UrlHash urlHash = UrlHash.of(urlEntity.getOriginalUrl());
+                if (byCode.containsKey(urlEntity.getShortCode()) || !codes.add(urlEntity.getShortCode())
+                        || byUrlHash.containsKey(urlHash) || !urlHashes.add(urlHash)) {
+                    throw new DataIntegrityViolationException("Short code or original URL already stored: " + urlEntity);
+                }
+            }
+            Segment segment = active;
+            int from = segment.writePosition;
+            for (UrlEntity urlEntity : urlEntities) {
+                index(urlEntity.getShortCode(), urlEntity.getOriginalUrl(), appendPut(urlEntity));
+            }
+            sync(segment, from);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the mapping if the code still maps to the entity's URL, so a stale entity does
+     * not delete the mapping that replaced it.
+     */
+    @Override
+    public void delete(UrlEntity urlEntity) {
+        writeLock.lock();
+        try {
+            Location location = byCode.get(urlEntity.getShortCode());
+            if (location == null || !location.originalUrl().equals(urlEntity.getOriginalUrl())) return;
+            Segment segment = active;
+            int from = segment.writePosition;
+            appendDelete(urlEntity.getShortCode());
+            sync(segment, from);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends all tombstones before forcing them to disk once.
+     */
+    @Override
+    public int deleteExpired(Collection<UrlEntity> urlEntities, Instant now) {
+        int deleted = 0;
+        writeLock.lock();
+        try {
+            Segment segment = active;
+            int from = segment.writePosition;
+            for (UrlEntity urlEntity : urlEntities) {
+                Location location = byCode.get(urlEntity.getShortCode());
+                if (location == null || location.expiresAt() == 0 || location.expiresAt() > now.toEpochMilli()) continue;
+                appendDelete(urlEntity.getShortCode());
+                deleted++;
+            }
+            sync(segment, from);
+        } finally {
+            writeLock.unlock();
+        }
+        return deleted;
+    }
+
+    @Override
+    public List<UrlEntity> findExpired(Instant now, int limit) {
+        List<UrlEntity> expired = new ArrayList<>();
+        writeLock.lock();
+        try {
+            for (Expiry expiry : byExpiry) {
+                if (expiry.millis > now.toEpochMilli() || expired.size() == limit) break;
+                expired.add(byCode.get(expiry.shortCode).toEntity());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return expired;
+    }
+
+    private void appendDelete(String shortCode) {
+        if (!byCode.containsKey(shortCode)) return;
+        Location tombstone = append(DELETE, ascii(shortCode), 0, new byte[0]);
+        tombstone.segment.deadBytes += tombstone.size();
+        unindex(shortCode);
+    }
+
+    @Override
+    public long count() {
+        return byCode.size();
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        byCode.keySet().forEach(action);
+    }
+
+    /**
+     * Rewrites sealed segments whose dead share reached {@code origin.store.log.compaction-threshold},
+     * oldest first. Writes wait while one segment is rewritten.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${origin.store.log.compaction-interval:1m}")
+    public void compact() {
+        List<Segment> candidates = new ArrayList<>();
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.deadBytes >= compactionThreshold * segment.writePosition) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        for (Segment segment : candidates) {
+            writeLock.lock();
+            try {
+                compact(segment);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void compact(Segment segment) {
+        boolean oldest = segments.firstKey() == segment.id;
+        int copied = 0;
+        int offset = 0;
+        while (offset < segment.writePosition) {
+            Location location = new Location(segment, offset);
+            String shortCode = location.shortCode();
+            if (location.type() != DELETE) {
+                if (location.equals(byCode.get(shortCode))) {
+                    index(shortCode, location.originalUrl(), appendCopy(location));
+                    copied++;
+                }
+            } else if (!oldest && !byCode.containsKey(shortCode)) {
+                Location tombstone = appendCopy(location);
+                tombstone.segment.deadBytes += tombstone.size();
+            }
+            offset += location.size();
+        }
+        // The copies must be on disk before the only other copy is deleted
+        active.buffer.force();
+        segments.remove(segment.id);
+        segment.close();
+        try {
+            Files.delete(segment.path);
+        } catch (IOException e) {
+            log.warn("Could not delete compacted segment {}", segment.path, e);
+        }
+        // The file's disk space is only freed once it is no longer mapped
+        awaitReaders();
+        segment.unmap();
+        log.info("Compacted {}: {} live records moved", segment.path.getFileName(), copied);
+    }
+
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void index(String shortCode, String originalUrl, Location location) {
+        Location previous = byCode.put(shortCode, location);
+        if (previous != null && previous != location) {
+            previous.segment.deadBytes += previous.size();
+            // Replayed over a record whose tombstone was compacted away
+            byUrlHash.remove(UrlHash.of(previous.originalUrl()), previous);
+            if (previous.expiresAt() != 0) byExpiry.remove(new Expiry(previous.expiresAt(), shortCode));
+        }
+        byUrlHash.put(UrlHash.of(originalUrl), location);
+        if (location.expiresAt() != 0) byExpiry.add(new Expiry(location.expiresAt(), shortCode));
+    }
+
+    private void unindex(String shortCode) {
+        Location previous = byCode.remove(shortCode);
+        if (previous == null) return;
+        previous.segment.deadBytes += previous.size();
+        byUrlHash.remove(UrlHash.of(previous.originalUrl()), previous);
+        if (previous.expiresAt() != 0) byExpiry.remove(new Expiry(previous.expiresAt(), shortCode));
+    }
+
+    private Location appendPut(UrlEntity urlEntity) {
+        byte[] url = urlEntity.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+        return urlEntity.getExpiresAt() == null
+                ? append(PUT, ascii(urlEntity.getShortCode()), 0, url)
+                : append(PUT_EXPIRING, ascii(urlEntity.getShortCode()), urlEntity.getExpiresAt().toEpochMilli(), url);
+    }
+
+    /**
+     * @param expiresAt expiry in epoch milliseconds, written for {@code PUT_EXPIRING} only
+     */
+    private Location append(byte type, byte[] code, long expiresAt, byte[] url) {
+        int expiryBytes = type == PUT_EXPIRING ? EXPIRY_BYTES : 0;
+        int length = CODE_OFFSET - LENGTH_BYTES + code.length + expiryBytes + url.length;
+        int offset = reserve(LENGTH_BYTES + length);
+        MappedByteBuffer buffer = active.buffer;
+        buffer.put(offset + BODY_OFFSET, type);
+        buffer.put(offset + BODY_OFFSET + 1, (byte) code.length);
+        buffer.put(offset + CODE_OFFSET, code);
+        if (expiryBytes != 0) buffer.putLong(offset + CODE_OFFSET + code.length, expiresAt);
+        buffer.put(offset + CODE_OFFSET + code.length + expiryBytes, url);
+        return commit(offset, length);
+    }
+
+    private Location appendCopy(Location location) {
+        int length = location.size() - LENGTH_BYTES;
+        int offset = reserve(LENGTH_BYTES + length);
+        active.buffer.put(offset + BODY_OFFSET, location.segment.buffer, location.offset + BODY_OFFSET, length - LENGTH_BYTES);
+        return commit(offset, length);
+    }
+
+    /**
+     * @return offset in the active segment with room for the record, rolling to a new segment if needed
+     */
+    private int reserve(int recordSize) {
+        if (recordSize > segmentSize) throw new IllegalArgumentException("Record of " + recordSize + " bytes exceeds the segment size");
+        if (active.writePosition + recordSize > segmentSize) {
+            if (syncWrites) active.buffer.force();
+            active = newSegment(active.id + 1);
+        }
+        return active.writePosition;
+    }
+
+    private Location commit(int offset, int length) {
+        MappedByteBuffer buffer = active.buffer;
+        buffer.putInt(offset + LENGTH_BYTES, checksum(buffer, offset, length));
+        buffer.putInt(offset, length);
+        active.writePosition = offset + LENGTH_BYTES + length;
+        return new Location(active, offset);
+    }
+
+    /**
+     * With {@code sync-writes}, forces the records appended since {@code from} in {@code segment}.
+     * Segments sealed in between were forced when rolling over.
+     */
+    private void sync(Segment segment, int from) {
+        if (!syncWrites) return;
+        int start = segment == active ? from : 0;
+        active.buffer.force(start, active.writePosition - start);
+    }
+
+    private Segment newSegment(int id) {
+        try {
+            Segment segment = Segment.open(directory, id, segmentSize);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + BODY_OFFSET, length - LENGTH_BYTES));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return {@code Unsafe.invokeCleaner}, or {@code null} if unavailable, leaving mappings
+     *         to the garbage collector
+     */
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Cannot unmap compacted segments, their mappings are released by garbage collection", e);
+            return null;
+        }
+    }
+
+    private static byte[] ascii(String shortCode) {
+        return shortCode.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * One segment file, mapped in full.
+     */
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // Guarded by writeLock
+        int writePosition;
+        long deadBytes;
+
+        private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path directory, int id, int size) throws IOException {
+            Path path = directory.resolve(String.format("segment-%08d.log", id));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int mappedSize = (int) Math.max(size, channel.size());
+            return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize));
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        /**
+         * Closes the file; the mapping stays readable for lookups still holding a location in it.
+         */
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Could not close segment {}", path, e);
+            }
+        }
+
+        /**
+         * Releases the mapping right away rather than once the buffer is garbage collected.
+         * Nothing may read the segment afterwards.
+         */
+        void unmap() {
+            if (INVOKE_CLEANER == null) return;
+            try {
+                INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+            } catch (Throwable e) {
+                log.warn("Could not unmap segment {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * Position of one record. Holds its segment, so a lookup racing with compaction still
+     * reads the record from the old mapping.
+     */
+    private record Location(Segment segment, int offset) {
+
+        byte type() {
+            return segment.buffer.get(offset + BODY_OFFSET);
+        }
+
+        int size() {
+            return LENGTH_BYTES + segment.buffer.getInt(offset);
+        }
+
+        private int codeLength() {
+            return segment.buffer.get(offset + BODY_OFFSET + 1);
+        }
+
+        String shortCode() {
+            byte[] code = new byte[codeLength()];
+            segment.buffer.get(offset + CODE_OFFSET, code);
+            return new String(code, StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * @return expiry in epoch milliseconds, or {@code 0} if the mapping never expires
+         */
+        long expiresAt() {
+            return type() == PUT_EXPIRING ? segment.buffer.getLong(offset + CODE_OFFSET + codeLength()) : 0;
+        }
+
+        String originalUrl() {
+            int start = offset + CODE_OFFSET + codeLength() + (type() == PUT_EXPIRING ? EXPIRY_BYTES : 0);
+            byte[] url = new byte[offset + size() - start];
+            segment.buffer.get(start, url);
+            return new String(url, StandardCharsets.UTF_8);
+        }
+
+        UrlEntity toEntity() {
+            long expiresAt = expiresAt();
+            return new UrlEntity(shortCode(), originalUrl(), expiresAt == 0 ? null : Instant.ofEpochMilli(expiresAt));
+        }
+    }
+
+    /**
+     * Entry of the expiry index, ordered by expiry, then code.
+     */
+    private record Expiry(long millis, String shortCode) implements Comparable<Expiry> {
+
+        @Override
+        public int compareTo(Expiry other) {
+            int byMillis = Long.compare(millis, other.millis);
+            return byMillis != 0 ? byMillis : shortCode.compareTo(other.shortCode);
+        }
+    }
+
+    /**
+     * {@link UrlHasher} hash as a map key.
+     */
+    private record UrlHash(long high, long low) {
+
+        static UrlHash of(String originalUrl) {
+            ByteBuffer hash = ByteBuffer.wrap(UrlHasher.hash(originalUrl));
+            return new UrlHash(hash.getLong(0), hash.getLong(8));
+        }
+    }
+}
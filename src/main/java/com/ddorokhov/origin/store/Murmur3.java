@@ -0,0 +1,125 @@
+package com.ddorokhov.origin.store;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * MurmurHash3 x64 128 (seed 0) over the UTF-8 bytes of a string, used to place short codes and
+ * URL routes on shards. Bytes are encoded on the fly, so hashing allocates nothing but the
+ * 16-byte result.
+ * <p>
+ * Fast but not collision resistant: anyone can compute colliding URLs. A collision only makes
+ * two URLs compete for one route, see {@link ShardedUrlStore}. Placement depends on this exact
+ * function, so it must not change while shards hold data.
+ */
+@UtilityClass
+class Murmur3 {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * @param input the string to hash
+     * @return 16 bytes: the two 64-bit halves of the hash, big-endian
+     */
+    static byte[] hash(String input) {
+        long h1 = 0;
+        long h2 = 0;
+        long k1 = 0;
+        long k2 = 0;
+        int position = 0;
+        long length = 0;
+
+        int i = 0;
+        int chars = input.length();
+        while (i < chars) {
+            char c = input.charAt(i++);
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i < chars && Character.isLowSurrogate(input.charAt(i))) {
+                codePoint = Character.toCodePoint(c, input.charAt(i++));
+            } else if (Character.isSurrogate(c)) {
+                codePoint = '?';
+            }
+
+            int encoded;
+            int count;
+            if (codePoint < 0x80) {
+                encoded = codePoint;
+                count = 1;
+            } else if (codePoint < 0x800) {
+                encoded = (0xC0 | (codePoint >>> 6)) | (0x80 | (codePoint & 0x3F)) << 8;
+                count = 2;
+            } else if (codePoint < 0x10000) {
+                encoded = (0xE0 | (codePoint >>> 12)) | (0x80 | ((codePoint >>> 6) & 0x3F)) << 8 | (0x80 | (codePoint & 0x3F)) << 16;
+                count = 3;
+            } else {
+                encoded = (0xF0 | (codePoint >>> 18)) | (0x80 | ((codePoint >>> 12) & 0x3F)) << 8
+                        | (0x80 | ((codePoint >>> 6) & 0x3F)) << 16 | (0x80 | (codePoint & 0x3F)) << 24;
+                count = 4;
+            }
+
+            for (int b = 0; b < count; b++) {
+                long value = (encoded >>> (8 * b)) & 0xFF;
+                if (position < 8) {
+                    k1 |= value << (8 * position);
+                } else {
+                    k2 |= value << (8 * (position - 8));
+                }
+                length++;
+                if (++position == 16) {
+                    h1 ^= mixK1(k1);
+                    h1 = Long.rotateLeft(h1, 27);
+                    h1 += h2;
+                    h1 = h1 * 5 + 0x52dce729;
+
+                    h2 ^= mixK2(k2);
+                    h2 = Long.rotateLeft(h2, 31);
+                    h2 += h1;
+                    h2 = h2 * 5 + 0x38495ab5;
+
+                    k1 = 0;
+                    k2 = 0;
+                    position = 0;
+                }
+            }
+        }
+
+        if (position > 8) h2 ^= mixK2(k2);
+        if (position > 0) h1 ^= mixK1(k1);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        byte[] result = new byte[16];
+        for (int b = 0; b < 8; b++) {
+            result[b] = (byte) (h1 >>> (56 - 8 * b));
+            result[b + 8] = (byte) (h2 >>> (56 - 8 * b));
+        }
+        return result;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
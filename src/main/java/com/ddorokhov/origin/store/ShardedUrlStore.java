@@ -0,0 +1,546 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.UrlEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spreads mappings over the databases of {@code origin.store.sharded.shards}, see {@link UrlShard}.
+ * <p>
+ * A mapping is stored on the shard its short code routes to: the jump consistent hash of the
+ * code's {@link Murmur3} hash over the number of shards. Its original URL is routed the same
+ * way by the URL's hash, to a {@code url_route} row pointing at the code, so a lookup by URL
+ * reads two shards and compares the URL found. Appending shards only moves keys onto the new
+ * ones. Uniqueness of the code is kept by the mapping's primary key, uniqueness of the URL by
+ * the route's: an insert stores the mapping first and takes it back if the route is already
+ * held by a live mapping. A route left behind by an interrupted delete is taken over, and so
+ * is one held by another URL with the same hash: a collision costs deduplication of the URL
+ * that loses its route, never a failed create.
+ * <p>
+ * Bulk operations query the shards involved in parallel. There are no transactions across
+ * shards: a failing batch insert deletes what it already stored on the other shards.
+ * <p>
+ * After appending shards, {@link #rebalance()} moves the rows stored on a shard they no longer
+ * route to. Until it finished, {@code previous-shard-count} has lookups that miss on the new
+ * owner ask the owner under the old count as well, and deletes remove both copies.
+ */
+@Slf4j
+public class ShardedUrlStore implements UrlStore {
+    static final int SCAN_PAGE_SIZE = 1000;
+    private static final int ROUTE_ATTEMPTS = 3;
+
+    private final List<UrlShard> shards;
+    private final int previousShardCount;
+    private final ExecutorService fanOut;
+    private volatile boolean closed;
+
+    ShardedUrlStore(List<DataSource> dataSources, int previousShardCount, int fanOutThreads) {
+        List<UrlShard> shards = new ArrayList<>();
+        for (DataSource dataSource : dataSources) {
+            UrlShard shard = new UrlShard(shards.size(), dataSource);
+            shard.createSchema();
+            shards.add(shard);
+        }
+        this.shards = List.copyOf(shards);
+        this.previousShardCount = previousShardCount;
+        this.fanOut = Executors.newFixedThreadPool(fanOutThreads, runnable -> {
+            Thread thread = new Thread(runnable, "shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Connects to the configured shards, creating their tables if needed, and starts moving
+     * misplaced mappings if {@code rebalance-on-start} is set.
+     *
+     * @throws IllegalArgumentException if no shard or an invalid shard count is configured
+     */
+    public static ShardedUrlStore open(StoreProperties.Sharded properties) {
+        int count = properties.getShards().size();
+        if (count == 0) {
+            throw new IllegalArgumentException("origin.store.sharded.shards must list at least one database");
+        }
+        if (properties.getPreviousShardCount() < 0 || properties.getPreviousShardCount() > count) {
+            throw new IllegalArgumentException("origin.store.sharded.previous-shard-count must be between 0 and " + count);
+        }
+        if (properties.getFanOutThreads() < 1) {
+            throw new IllegalArgumentException("origin.store.sharded.fan-out-threads must be positive");
+        }
+        List<DataSource> dataSources = new ArrayList<>();
+        for (StoreProperties.Shard shard : properties.getShards()) {
+            dataSources.add(DataSourceBuilder.create()
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .build());
+        }
+        ShardedUrlStore store = new ShardedUrlStore(dataSources, properties.getPreviousShardCount(), properties.getFanOutThreads());
+        log.info("Opened {} URL shards{}", count,
+                store.previousShardCount > 0 ? ", falling back to the layout of " + store.previousShardCount : "");
+        if (properties.isRebalanceOnStart()) {
+            Thread rebalancer = new Thread(store::rebalanceQuietly, "shard-rebalancer");
+            rebalancer.setDaemon(true);
+            rebalancer.start();
+        }
+        return store;
+    }
+
+    /**
+     * Jump consistent hash (Lamping, Veach): maps a key to one of {@code buckets}, so that
+     * growing the number of buckets only moves keys into the new ones.
+     */
+    static int jumpHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    static long keyOf(String shortCode) {
+        return keyOf(Murmur3.hash(shortCode));
+    }
+
+    static long keyOf(byte[] hash) {
+        return ByteBuffer.wrap(hash).getLong(0);
+    }
+
+    UrlShard owner(long key) {
+        return shards.get(jumpHash(key, shards.size()));
+    }
+
+    /**
+     * @return the shard the key was stored on before shards were appended, or {@code null} if
+     * not rebalancing or the same as the owner
+     */
+    private UrlShard previousOwner(long key) {
+        if (previousShardCount == 0) return null;
+        UrlShard previous = shards.get(jumpHash(key, previousShardCount));
+        return previous == owner(key) ? null : previous;
+    }
+
+    @Override
+    public Optional<UrlEntity> findByShortCode(String shortCode) {
+        long key = keyOf(shortCode);
+        Optional<UrlEntity> found = owner(key).find(shortCode);
+        UrlShard previous = previousOwner(key);
+        return found.isEmpty() && previous != null ? previous.find(shortCode) : found;
+    }
+
+    @Override
+    public Optional<UrlEntity> findByOriginalUrl(String originalUrl) {
+        return findRoute(Murmur3.hash(originalUrl))
+                .flatMap(this::findByShortCode)
+                .filter(urlEntity -> urlEntity.getOriginalUrl().equals(originalUrl));
+    }
+
+    private Optional<String> findRoute(byte[] hash) {
+        long key = keyOf(hash);
+        Optional<String> found = owner(key).findRoute(hash);
+        UrlShard previous = previousOwner(key);
+        return found.isEmpty() && previous != null ? previous.findRoute(hash) : found;
+    }
+
+    @Override
+    public List<UrlEntity> findAllByShortCodeIn(Collection<String> shortCodes) {
+        List<UrlEntity> found = fanOut(group(shortCodes, shortCode -> owner(keyOf(shortCode))), UrlShard::findAll);
+        if (previousShardCount == 0) return found;
+        Set<String> missing = new HashSet<>(shortCodes);
+        found.forEach(urlEntity -> missing.remove(urlEntity.getShortCode()));
+        List<UrlEntity> all = new ArrayList<>(found);
+        all.addAll(fanOut(group(missing, shortCode -> previousOwner(keyOf(shortCode))), UrlShard::findAll));
+        return all;
+    }
+
+    @Override
+    public List<UrlEntity> findAllByOriginalUrlIn(Collection<String> originalUrls) {
+        Map<ByteBuffer, String> urlsByHash = new HashMap<>();
+        for (String originalUrl : originalUrls) {
+            urlsByHash.put(ByteBuffer.wrap(Murmur3.hash(originalUrl)), originalUrl);
+        }
+        List<byte[]> hashes = urlsByHash.keySet().stream().map(ByteBuffer::array).toList();
+        List<UrlShard.Route> routes = new ArrayList<>(fanOut(group(hashes, hash -> owner(keyOf(hash))), UrlShard::findRoutes));
+        if (previousShardCount > 0) {
+            Set<ByteBuffer> missing = new HashSet<>(urlsByHash.keySet());
+            routes.forEach(route -> missing.remove(ByteBuffer.wrap(route.originalUrlHash())));
+            List<byte[]> missingHashes = missing.stream().map(ByteBuffer::array).toList();
+            routes.addAll(fanOut(group(missingHashes, hash -> previousOwner(keyOf(hash))), UrlShard::findRoutes));
+        }
+
+        Map<String, String> urlsByCode = new HashMap<>();
+        routes.forEach(route -> urlsByCode.put(route.shortCode(), urlsByHash.get(ByteBuffer.wrap(route.originalUrlHash()))));
+        return findAllByShortCodeIn(urlsByCode.keySet()).stream()
+                .filter(urlEntity -> urlEntity.getOriginalUrl().equals(urlsByCode.get(urlEntity.getShortCode())))
+                .toList();
+    }
+
+    @Override
+    public boolean insertIfAbsent(UrlEntity urlEntity) {
+        long key = keyOf(urlEntity.getShortCode());
+        UrlShard previous = previousOwner(key);
+        if (previous != null && previous.find(urlEntity.getShortCode()).isPresent()) return false;
+        UrlShard owner = owner(key);
+        if (!owner.insert(urlEntity)) return false;
+        if (claimRoute(Murmur3.hash(urlEntity.getOriginalUrl()), urlEntity)) return true;
+        log.debug("Concurrent create of {}, taking back {}", urlEntity.getOriginalUrl(), urlEntity.getShortCode());
+        owner.delete(urlEntity.getShortCode());
+        return false;
+    }
+
+    /**
+     * Points the URL's route at the stored mapping, unless it points at another live mapping
+     * of the URL.
+     */
+    private boolean claimRoute(byte[] hash, UrlEntity urlEntity) {
+        long key = keyOf(hash);
+        UrlShard previous = previousOwner(key);
+        if (previous != null) {
+            Optional<String> previousCode = previous.findRoute(hash);
+            if (previousCode.isPresent() && isLive(previousCode.get(), urlEntity.getOriginalUrl())) return false;
+        }
+        UrlShard owner = owner(key);
+        for (int attempt = 0; attempt < ROUTE_ATTEMPTS; attempt++) {
+            if (owner.insertRoute(hash, urlEntity.getShortCode())) return true;
+            Optional<String> current = owner.findRoute(hash);
+            if (current.isEmpty()) continue;
+            if (isLive(current.get(), urlEntity.getOriginalUrl())) return false;
+            if (owner.replaceRoute(hash, current.get(), urlEntity.getShortCode())) return true;
+        }
+        return false;
+    }
+
+    private boolean isLive(String shortCode, String originalUrl) {
+        return findByShortCode(shortCode).filter(urlEntity -> urlEntity.getOriginalUrl().equals(originalUrl)).isPresent();
+    }
+
+    /**
+     * Inserts the mappings of every shard, then the routes, in one batch and transaction per
+     * shard.
+     */
+    @Override
+    public void insertAll(Collection<UrlEntity> urlEntities) {
+        Map<UrlShard, List<UrlEntity>> mappings = group(urlEntities, urlEntity -> owner(keyOf(urlEntity.getShortCode())));
+        insertEverywhere(mappings, UrlShard::insertAll, (shard, group) -> shard.deleteAll(shortCodes(group)));
+        List<UrlShard.Route> routes = urlEntities.stream()
+                .map(urlEntity -> new UrlShard.Route(Murmur3.hash(urlEntity.getOriginalUrl()), urlEntity.getShortCode()))
+                .toList();
+        try {
+            insertEverywhere(group(routes, route -> owner(keyOf(route.originalUrlHash()))), UrlShard::insertRoutes, UrlShard::deleteRoutes);
+        } catch (RuntimeException e) {
+            fanOut(mappings, (shard, group) -> List.of(shard.deleteAll(shortCodes(group))));
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the inserts of all shards; if one fails, undoes those that succeeded and rethrows
+     * its exception.
+     */
+    private <T> void insertEverywhere(Map<UrlShard, List<T>> groups, BiConsumer<UrlShard, List<T>> insert,
+                                      BiConsumer<UrlShard, List<T>> undo) {
+        List<RuntimeException> failures = new CopyOnWriteArrayList<>();
+        List<UrlShard> inserted = fanOut(groups, (shard, group) -> {
+            try {
+                insert.accept(shard, group);
+                return List.of(shard);
+            } catch (RuntimeException e) {
+                failures.add(e);
+                return List.of();
+            }
+        });
+        if (failures.isEmpty()) return;
+        Map<UrlShard, List<T>> undone = new LinkedHashMap<>();
+        inserted.forEach(shard -> undone.put(shard, groups.get(shard)));
+        fanOut(undone, (shard, group) -> {
+            undo.accept(shard, group);
+            return List.of();
+        });
+        throw failures.get(0);
+    }
+
+    /**
+     * Deletes the mapping, then its route if it still points at the code.
+     */
+    @Override
+    public void delete(UrlEntity urlEntity) {
+        String shortCode = urlEntity.getShortCode();
+        long key = keyOf(shortCode);
+        owner(key).delete(shortCode);
+        UrlShard previous = previousOwner(key);
+        if (previous != null) previous.delete(shortCode);
+
+        byte[] hash = Murmur3.hash(urlEntity.getOriginalUrl());
+        List<UrlShard.Route> route = List.of(new UrlShard.Route(hash, shortCode));
+        long routeKey = keyOf(hash);
+        owner(routeKey).deleteRoutes(route);
+        UrlShard previousRoutes = previousOwner(routeKey);
+        if (previousRoutes != null) previousRoutes.deleteRoutes(route);
+    }
+
+    /**
+     * Deletes on every shard involved in parallel, then the routes of the mappings gone.
+     */
+    @Override
+    public int deleteExpired(Collection<UrlEntity> urlEntities, Instant now) {
+        List<String> shortCodes = shortCodes(urlEntities);
+        BiFunction<UrlShard, List<String>, List<Integer>> delete = (shard, group) -> List.of(shard.deleteExpired(group, now));
+        int deleted = fanOut(group(shortCodes, shortCode -> owner(keyOf(shortCode))), delete)
+                .stream().mapToInt(Integer::intValue).sum();
+        if (previousShardCount > 0) {
+            deleted += fanOut(group(shortCodes, shortCode -> previousOwner(keyOf(shortCode))), delete)
+                    .stream().mapToInt(Integer::intValue).sum();
+        }
+
+        Set<String> remaining = new HashSet<>(shortCodes(findAllByShortCodeIn(shortCodes)));
+        List<UrlShard.Route> routes = urlEntities.stream()
+                .filter(urlEntity -> !remaining.contains(urlEntity.getShortCode()))
+                .map(urlEntity -> new UrlShard.Route(Murmur3.hash(urlEntity.getOriginalUrl()), urlEntity.getShortCode()))
+                .toList();
+        BiFunction<UrlShard, List<UrlShard.Route>, List<Object>> deleteRoutes = (shard, group) -> {
+            shard.deleteRoutes(group);
+            return List.of();
+        };
+        fanOut(group(routes, route -> owner(keyOf(route.originalUrlHash()))), deleteRoutes);
+        if (previousShardCount > 0) fanOut(group(routes, route -> previousOwner(keyOf(route.originalUrlHash()))), deleteRoutes);
+        return deleted;
+    }
+
+    /**
+     * Merges the earliest {@code limit} of every shard.
+     */
+    @Override
+    public List<UrlEntity> findExpired(Instant now, int limit) {
+        return onAllShards(shard -> shard.findExpired(now, limit)).stream()
+                .sorted(Comparator.comparing(UrlEntity::getExpiresAt))
+                .distinct()
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public long count() {
+        return onAllShards(shard -> List.of(shard.count())).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Reads the codes of one shard after the other, in key order, one page at a time.
+     */
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        for (UrlShard shard : shards) {
+            String after = "";
+            List<String> page;
+            do {
+                page = shard.findShortCodesAfter(after, SCAN_PAGE_SIZE);
+                page.forEach(action);
+                if (!page.isEmpty()) after = page.get(page.size() - 1);
+            } while (page.size() == SCAN_PAGE_SIZE);
+        }
+    }
+
+    private void rebalanceQuietly() {
+        try {
+            rebalance();
+        } catch (RuntimeException e) {
+            log.warn("Could not rebalance the URL shards", e);
+        }
+    }
+
+    /**
+     * Moves every mapping and route stored on a shard it does not route to onto its owner,
+     * one page at a time: the rows are copied, copies of rows deleted meanwhile are dropped
+     * again, and the originals are deleted. A row whose key is held by another row on the
+     * owner is left in place and logged.
+     *
+     * @return number of rows moved
+     */
+    public long rebalance() {
+        long moved = 0;
+        for (UrlShard shard : shards) {
+            moved += moveMappings(shard) + moveRoutes(shard);
+        }
+        log.info("Moved {} rows between {} URL shards{}", moved, shards.size(),
+                previousShardCount > 0 ? ", origin.store.sharded.previous-shard-count can be reset to 0" : "");
+        return moved;
+    }
+
+    private long moveMappings(UrlShard source) {
+        long moved = 0;
+        String after = "";
+        List<UrlEntity> page;
+        do {
+            if (closed) return moved;
+            page = source.findAfter(after, SCAN_PAGE_SIZE);
+            if (page.isEmpty()) break;
+            after = page.get(page.size() - 1).getShortCode();
+            Map<UrlShard, List<UrlEntity>> misplaced = group(page, urlEntity -> {
+                UrlShard owner = owner(keyOf(urlEntity.getShortCode()));
+                return owner == source ? null : owner;
+            });
+            for (Map.Entry<UrlShard, List<UrlEntity>> entry : misplaced.entrySet()) {
+                UrlShard target = entry.getKey();
+                List<UrlEntity> rows = entry.getValue();
+                List<String> shortCodes = shortCodes(rows);
+                target.copyAll(rows);
+                Set<String> deletedMeanwhile = new HashSet<>(shortCodes);
+                shortCodes(source.findAll(shortCodes)).forEach(deletedMeanwhile::remove);
+                target.deleteAll(deletedMeanwhile);
+
+                Set<UrlEntity> copied = new HashSet<>(target.findAll(shortCodes));
+                List<String> movable = new ArrayList<>();
+                for (UrlEntity row : rows) {
+                    if (copied.contains(row)) {
+                        movable.add(row.getShortCode());
+                    } else if (!deletedMeanwhile.contains(row.getShortCode())) {
+                        log.warn("Code {} is taken on shard {}, leaving it on shard {}", row.getShortCode(), target.index(), source.index());
+                    }
+                }
+                moved += source.deleteAll(movable);
+            }
+        } while (page.size() == SCAN_PAGE_SIZE);
+        return moved;
+    }
+
+    private long moveRoutes(UrlShard source) {
+        long moved = 0;
+        byte[] after = new byte[0];
+        List<UrlShard.Route> page;
+        do {
+            if (closed) return moved;
+            page = source.findRoutesAfter(after, SCAN_PAGE_SIZE);
+            if (page.isEmpty()) break;
+            after = page.get(page.size() - 1).originalUrlHash();
+            Map<UrlShard, List<UrlShard.Route>> misplaced = group(page, route -> {
+                UrlShard owner = owner(keyOf(route.originalUrlHash()));
+                return owner == source ? null : owner;
+            });
+            for (Map.Entry<UrlShard, List<UrlShard.Route>> entry : misplaced.entrySet()) {
+                UrlShard target = entry.getKey();
+                List<UrlShard.Route> routes = entry.getValue();
+                List<byte[]> hashes = routes.stream().map(UrlShard.Route::originalUrlHash).toList();
+                target.copyRoutes(routes);
+                Map<ByteBuffer, String> remaining = codesByHash(source.findRoutes(hashes));
+                target.deleteRoutes(routes.stream()
+                        .filter(route -> !route.shortCode().equals(remaining.get(ByteBuffer.wrap(route.originalUrlHash()))))
+                        .toList());
+
+                Map<ByteBuffer, String> copied = codesByHash(target.findRoutes(hashes));
+                List<UrlShard.Route> movable = new ArrayList<>();
+                for (UrlShard.Route route : routes) {
+                    ByteBuffer hash = ByteBuffer.wrap(route.originalUrlHash());
+                    if (route.shortCode().equals(copied.get(hash))) {
+                        movable.add(route);
+                    } else if (route.shortCode().equals(remaining.get(hash))) {
+                        log.warn("Route of code {} is taken on shard {}, leaving it on shard {}", route.shortCode(), target.index(), source.index());
+                    }
+                }
+                source.deleteRoutes(movable);
+                moved += movable.size();
+            }
+        } while (page.size() == SCAN_PAGE_SIZE);
+        return moved;
+    }
+
+    /**
+     * Stops the fan-out threads and closes the connection pools.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        fanOut.shutdown();
+        for (UrlShard shard : shards) {
+            if (shard.dataSource() instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Could not close the data source of shard {}", shard.index(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the query for every group, in parallel if there are several.
+     *
+     * @return the results of all groups; the first exception thrown, once every query finished
+     */
+    private <T, R> List<R> fanOut(Map<UrlShard, List<T>> groups, BiFunction<UrlShard, List<T>, List<R>> query) {
+        if (groups.size() == 1) {
+            Map.Entry<UrlShard, List<T>> only = groups.entrySet().iterator().next();
+            return query.apply(only.getKey(), only.getValue());
+        }
+        List<Future<List<R>>> futures = new ArrayList<>();
+        groups.forEach((shard, group) -> futures.add(fanOut.submit(() -> query.apply(shard, group))));
+        List<R> results = new ArrayList<>();
+        RuntimeException failure = null;
+        for (Future<List<R>> future : futures) {
+            try {
+                results.addAll(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the shards", e);
+            }
+        }
+        if (failure != null) throw failure;
+        return results;
+    }
+
+    private <R> List<R> onAllShards(Function<UrlShard, List<R>> query) {
+        Map<UrlShard, List<Object>> everyShard = new LinkedHashMap<>();
+        shards.forEach(shard -> everyShard.put(shard, List.of()));
+        return fanOut(everyShard, (shard, ignored) -> query.apply(shard));
+    }
+
+    /**
+     * @param shardOf shard of an item, or {@code null} to leave it out
+     */
+    private static <T> Map<UrlShard, List<T>> group(Collection<T> items, Function<T, UrlShard> shardOf) {
+        Map<UrlShard, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            UrlShard shard = shardOf.apply(item);
+            if (shard != null) groups.computeIfAbsent(shard, ignored -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    private static List<String> shortCodes(Collection<UrlEntity> urlEntities) {
+        return urlEntities.stream().map(UrlEntity::getShortCode).toList();
+    }
+
+    private static Map<ByteBuffer, String> codesByHash(List<UrlShard.Route> routes) {
+        Map<ByteBuffer, String> codes = new HashMap<>();
+        routes.forEach(route -> codes.put(ByteBuffer.wrap(route.originalUrlHash()), route.shortCode()));
+        return codes;
+    }
+}
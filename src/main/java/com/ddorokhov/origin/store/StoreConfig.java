@@ -0,0 +1,52 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.UrlRepository;
+import com.ddorokhov.origin.UrlWriteProperties;
+import com.ddorokhov.origin.shortcode.SequenceShortCodeGenerator;
+import com.ddorokhov.origin.shortcode.ShortCodeGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Selects the {@link UrlStore} configured by {@code origin.store.engine}, group committing single
+ * creates if {@code origin.write.group-commit.enabled} is set.
+ */
+@Configuration
+@EnableConfigurationProperties(StoreProperties.class)
+public class StoreConfig {
+
+    @Bean
+    public UrlStore urlStore(StoreProperties properties, UrlRepository urlRepository, UrlWriteProperties writeProperties,
+                             ShortCodeGenerator shortCodeGenerator, MeterRegistry meterRegistry) throws IOException {
+        UrlStore store = switch (properties.getEngine()) {
+            case JPA -> new JpaUrlStore(urlRepository, writeProperties);
+            case LOG -> {
+                LogUrlStore logStore = LogUrlStore.open(properties.getLog());
+                if (shortCodeGenerator instanceof SequenceShortCodeGenerator sequence) skipStoredIds(logStore, sequence);
+                yield logStore;
+            }
+            case SHARDED -> {
+                ShardedUrlStore shardedStore = ShardedUrlStore.open(properties.getSharded());
+                if (shortCodeGenerator instanceof SequenceShortCodeGenerator sequence) skipStoredIds(shardedStore, sequence);
+                yield shardedStore;
+            }
+        };
+        UrlWriteProperties.GroupCommit groupCommit = writeProperties.getGroupCommit();
+        return groupCommit.isEnabled() ? new GroupCommitUrlStore(store, groupCommit, meterRegistry) : store;
+    }
+
+    /**
+     * The log and the shards outlive the database holding the sequence, so the sequence is moved past every
+     * id already used by a stored code.
+     */
+    private static void skipStoredIds(UrlStore store, SequenceShortCodeGenerator sequence) {
+        AtomicLong maxId = new AtomicLong(-1);
+        store.forEachShortCode(shortCode -> maxId.accumulateAndGet(sequence.idOf(shortCode), Math::max));
+        if (maxId.get() >= 0) sequence.skipPast(maxId.get());
+    }
+}
@@ -0,0 +1,96 @@
+package com.ddorokhov.origin.store;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistence engine settings, bound to {@code origin.store.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.store")
+public class StoreProperties {
+    /**
+     * Engine holding the URL mappings.
+     */
+    private Engine engine = Engine.JPA;
+    private Log log = new Log();
+    private Sharded sharded = new Sharded();
+
+    public enum Engine {
+        /**
+         * The {@code url_entity} table of the configured data source.
+         */
+        JPA,
+        /**
+         * Append-only log of memory-mapped files with in-memory indexes, see {@link LogUrlStore}.
+         * Not transactional.
+         */
+        LOG,
+        /**
+         * {@code url_entity} tables of several databases, routed by short code, see {@link ShardedUrlStore}.
+         */
+        SHARDED
+    }
+
+    @Data
+    public static class Log {
+        /**
+         * Directory of the segment files.
+         */
+        private String directory = "./data/urls";
+        /**
+         * Size of one segment file; also the largest record.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        /**
+         * Whether every write is forced to disk before it is acknowledged. Without it a
+         * crash of the process loses nothing, a crash of the machine may lose recent writes.
+         */
+        private boolean syncWrites = false;
+        /**
+         * Delay between compaction runs.
+         */
+        private Duration compactionInterval = Duration.ofMinutes(1);
+        /**
+         * Share of dead bytes at which a sealed segment is compacted.
+         */
+        private double compactionThreshold = 0.5;
+    }
+
+    @Data
+    public static class Sharded {
+        /**
+         * Databases of the shards, in routing order. Shards are only ever appended.
+         */
+        private List<Shard> shards = new ArrayList<>();
+        /**
+         * Number of shards before the last ones were appended, while mappings are being moved to
+         * them; lookups missing on the new owner also ask the old one. {@code 0} once balanced.
+         */
+        private int previousShardCount = 0;
+        /**
+         * Whether mappings stored on a shard they no longer route to are moved on startup, in
+         * the background.
+         */
+        private boolean rebalanceOnStart = false;
+        /**
+         * Threads running the per-shard parts of bulk operations in parallel.
+         */
+        private int fanOutThreads = 4;
+    }
+
+    @Data
+    public static class Shard {
+        /**
+         * JDBC URL of the shard's database.
+         */
+        private String url;
+        private String username = "sa";
+        private String password = "";
+    }
+}
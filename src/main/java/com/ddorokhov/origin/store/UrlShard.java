@@ -0,0 +1,247 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.Constants;
+import com.ddorokhov.origin.UrlEntity;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * One database of a {@link ShardedUrlStore}, accessed with plain JDBC.
+ * <p>
+ * {@code url_entity} holds the mappings whose short code routes here, {@code url_route} maps
+ * the hashes of the original URLs routed here to their short codes.
+ */
+class UrlShard {
+    static final int IN_CHUNK_SIZE = 1000;
+
+    private static final String COLUMNS = "short_code, original_url, expires_at, created_at";
+    private static final RowMapper<UrlEntity> URL_ENTITY = (rs, rowNum) -> {
+        UrlEntity urlEntity = new UrlEntity(rs.getString(1), rs.getString(2), rs.getObject(3, Instant.class));
+        urlEntity.setCreatedAt(rs.getObject(4, Instant.class));
+        return urlEntity;
+    };
+    private static final RowMapper<Route> ROUTE = (rs, rowNum) -> new Route(rs.getBytes(1), rs.getString(2));
+
+    private final int index;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    UrlShard(int index, DataSource dataSource) {
+        this.index = index;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    int index() {
+        return index;
+    }
+
+    DataSource dataSource() {
+        return jdbcTemplate.getDataSource();
+    }
+
+    void createSchema() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS url_entity (short_code VARCHAR(16) PRIMARY KEY, " +
+                "original_url VARCHAR(" + Constants.ORIGINAL_URL_MAX_LENGTH + ") NOT NULL, expires_at TIMESTAMP(6) WITH TIME ZONE, created_at TIMESTAMP(6) WITH TIME ZONE)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_url_entity_expires_at ON url_entity (expires_at)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS url_route (original_url_hash VARBINARY(16) PRIMARY KEY, short_code VARCHAR(16) NOT NULL)");
+    }
+
+    Optional<UrlEntity> find(String shortCode) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM url_entity WHERE short_code = ?", URL_ENTITY, shortCode)
+                .stream().findFirst();
+    }
+
+    List<UrlEntity> findAll(Collection<String> shortCodes) {
+        return inChunks(new ArrayList<>(shortCodes), chunk -> jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM url_entity WHERE short_code IN (" + placeholders(chunk.size()) + ")",
+                URL_ENTITY, chunk.toArray()));
+    }
+
+    /**
+     * @return {@code false} if the code is taken
+     */
+    boolean insert(UrlEntity urlEntity) {
+        try {
+            jdbcTemplate.update("INSERT INTO url_entity (" + COLUMNS + ") VALUES (?, ?, ?, ?)", values(urlEntity));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Inserts in one batch and transaction.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if a code is taken; nothing is inserted then
+     */
+    void insertAll(Collection<UrlEntity> urlEntities) {
+        List<Object[]> rows = urlEntities.stream().map(UrlShard::values).toList();
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate("INSERT INTO url_entity (" + COLUMNS + ") VALUES (?, ?, ?, ?)", rows));
+    }
+
+    /**
+     * Copies mappings unless their code is already stored here. The URL is cast without a
+     * length, so that one too long for the column fails the copy instead of being cut.
+     */
+    void copyAll(Collection<UrlEntity> urlEntities) {
+        List<Object[]> rows = urlEntities.stream().map(UrlShard::values).toList();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate("MERGE INTO url_entity t " +
+                "USING (SELECT CAST(? AS VARCHAR(16)) AS short_code, CAST(? AS VARCHAR) AS original_url, " +
+                "CAST(? AS TIMESTAMP(6) WITH TIME ZONE) AS expires_at, CAST(? AS TIMESTAMP(6) WITH TIME ZONE) AS created_at) s " +
+                "ON t.short_code = s.short_code " +
+                "WHEN NOT MATCHED THEN INSERT (" + COLUMNS + ") VALUES (s.short_code, s.original_url, s.expires_at, s.created_at)", rows));
+    }
+
+    int delete(String shortCode) {
+        return jdbcTemplate.update("DELETE FROM url_entity WHERE short_code = ?", shortCode);
+    }
+
+    int deleteAll(Collection<String> shortCodes) {
+        return inChunks(new ArrayList<>(shortCodes), chunk -> List.of(jdbcTemplate.update(
+                "DELETE FROM url_entity WHERE short_code IN (" + placeholders(chunk.size()) + ")", chunk.toArray())))
+                .stream().mapToInt(Integer::intValue).sum();
+    }
+
+    int deleteExpired(Collection<String> shortCodes, Instant now) {
+        return inChunks(new ArrayList<>(shortCodes), chunk -> {
+            List<Object> args = new ArrayList<>(chunk);
+            args.add(now);
+            return List.of(jdbcTemplate.update("DELETE FROM url_entity WHERE short_code IN (" + placeholders(chunk.size()) +
+                    ") AND expires_at <= ?", args.toArray()));
+        }).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    List<UrlEntity> findExpired(Instant now, int limit) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM url_entity WHERE expires_at <= ? ORDER BY expires_at FETCH FIRST ? ROWS ONLY",
+                URL_ENTITY, now, limit);
+    }
+
+    long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM url_entity", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return up to {@code limit} mappings with a code greater than {@code after}, in code order
+     */
+    List<UrlEntity> findAfter(String after, int limit) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM url_entity WHERE short_code > ? ORDER BY short_code FETCH FIRST ? ROWS ONLY",
+                URL_ENTITY, after, limit);
+    }
+
+    /**
+     * @return up to {@code limit} codes greater than {@code after}, in code order
+     */
+    List<String> findShortCodesAfter(String after, int limit) {
+        return jdbcTemplate.queryForList("SELECT short_code FROM url_entity WHERE short_code > ? ORDER BY short_code FETCH FIRST ? ROWS ONLY",
+                String.class, after, limit);
+    }
+
+    Optional<String> findRoute(byte[] originalUrlHash) {
+        return jdbcTemplate.queryForList("SELECT short_code FROM url_route WHERE original_url_hash = ?", String.class, originalUrlHash)
+                .stream().findFirst();
+    }
+
+    List<Route> findRoutes(Collection<byte[]> originalUrlHashes) {
+        return inChunks(new ArrayList<>(originalUrlHashes), chunk -> jdbcTemplate.query(
+                "SELECT original_url_hash, short_code FROM url_route WHERE original_url_hash IN (" + placeholders(chunk.size()) + ")",
+                ROUTE, chunk.toArray()));
+    }
+
+    /**
+     * @return {@code false} if the hash is already routed
+     */
+    boolean insertRoute(byte[] originalUrlHash, String shortCode) {
+        try {
+            jdbcTemplate.update("INSERT INTO url_route (original_url_hash, short_code) VALUES (?, ?)", originalUrlHash, shortCode);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Inserts in one batch and transaction.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if a hash is already routed; nothing is inserted then
+     */
+    void insertRoutes(Collection<Route> routes) {
+        List<Object[]> rows = routes.stream().map(route -> new Object[]{route.originalUrlHash(), route.shortCode()}).toList();
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate("INSERT INTO url_route (original_url_hash, short_code) VALUES (?, ?)", rows));
+    }
+
+    /**
+     * Copies routes unless their hash is already routed here.
+     */
+    void copyRoutes(Collection<Route> routes) {
+        List<Object[]> rows = routes.stream().map(route -> new Object[]{route.originalUrlHash(), route.shortCode()}).toList();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate("MERGE INTO url_route t " +
+                "USING (SELECT CAST(? AS VARBINARY(16)) AS original_url_hash, CAST(? AS VARCHAR(16)) AS short_code) s " +
+                "ON t.original_url_hash = s.original_url_hash " +
+                "WHEN NOT MATCHED THEN INSERT (original_url_hash, short_code) VALUES (s.original_url_hash, s.short_code)", rows));
+    }
+
+    /**
+     * Points a route at a new code, unless it changed since it was read.
+     *
+     * @return {@code true} if replaced
+     */
+    boolean replaceRoute(byte[] originalUrlHash, String previousCode, String shortCode) {
+        return jdbcTemplate.update("UPDATE url_route SET short_code = ? WHERE original_url_hash = ? AND short_code = ?",
+                shortCode, originalUrlHash, previousCode) == 1;
+    }
+
+    /**
+     * Deletes routes that still point at the given codes.
+     */
+    void deleteRoutes(Collection<Route> routes) {
+        List<Object[]> rows = routes.stream().map(route -> new Object[]{route.originalUrlHash(), route.shortCode()}).toList();
+        jdbcTemplate.batchUpdate("DELETE FROM url_route WHERE original_url_hash = ? AND short_code = ?", rows);
+    }
+
+    /**
+     * @return up to {@code limit} routes with a hash greater than {@code after}, in hash order
+     */
+    List<Route> findRoutesAfter(byte[] after, int limit) {
+        return jdbcTemplate.query("SELECT original_url_hash, short_code FROM url_route WHERE original_url_hash > ? " +
+                "ORDER BY original_url_hash FETCH FIRST ? ROWS ONLY", ROUTE, after, limit);
+    }
+
+    private static Object[] values(UrlEntity urlEntity) {
+        return new Object[]{urlEntity.getShortCode(), urlEntity.getOriginalUrl(), urlEntity.getExpiresAt(), urlEntity.getCreatedAt()};
+    }
+
+    private static <K, R> List<R> inChunks(List<K> keys, Function<List<K>, List<R>> query) {
+        if (keys.isEmpty()) return Collections.emptyList();
+        List<R> results = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += IN_CHUNK_SIZE) {
+            results.addAll(query.apply(keys.subList(from, Math.min(keys.size(), from + IN_CHUNK_SIZE))));
+        }
+        return results;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Entry of {@code url_route}.
+     */
+    record Route(byte[] originalUrlHash, String shortCode) {
+    }
+}
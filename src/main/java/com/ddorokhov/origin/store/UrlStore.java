@@ -0,0 +1,80 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.UrlEntity;
+
+import java.io.Closeable;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Persistence engine of the URL mappings, selected by {@code origin.store.engine}.
+ * <p>
+ * Mappings are unique by short code and by original URL.
+ */
+public interface UrlStore extends Closeable {
+
+    Optional<UrlEntity> findByShortCode(String shortCode);
+
+    Optional<UrlEntity> findByOriginalUrl(String originalUrl);
+
+    /**
+     * @return the mappings found, in no particular order; unknown codes are absent
+     */
+    List<UrlEntity> findAllByShortCodeIn(Collection<String> shortCodes);
+
+    /**
+     * @return the mappings found, in no particular order; unknown URLs are absent
+     */
+    List<UrlEntity> findAllByOriginalUrlIn(Collection<String> originalUrls);
+
+    /**
+     * Inserts the mapping unless the original URL is already mapped or the code is taken.
+     *
+     * @return {@code true} if inserted
+     */
+    boolean insertIfAbsent(UrlEntity urlEntity);
+
+    /**
+     * Inserts new mappings whose codes and URLs were checked to be free.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if a code or URL is taken after all
+     */
+    void insertAll(Collection<UrlEntity> urlEntities);
+
+    void delete(UrlEntity urlEntity);
+
+    /**
+     * Deletes those of the mappings that expired at {@code now} at once, skipping mappings
+     * already gone or whose code was taken again.
+     *
+     * @return number of mappings deleted
+     */
+    int deleteExpired(Collection<UrlEntity> urlEntities, Instant now);
+
+    /**
+     * Reads the expiry index, never the whole store.
+     *
+     * @return up to {@code limit} mappings whose expiry is at or before {@code now}, earliest first
+     */
+    List<UrlEntity> findExpired(Instant now, int limit);
+
+    long count();
+
+    /**
+     * Passes every stored short code to the action.
+     */
+    void forEachShortCode(Consumer<String> action);
+
+    /**
+     * Reclaims the space of deleted and replaced mappings, if the engine needs it.
+     */
+    default void compact() {
+    }
+
+    @Override
+    default void close() {
+    }
+}
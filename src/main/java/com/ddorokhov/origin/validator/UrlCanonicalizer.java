@@ -0,0 +1,320 @@
+package com.ddorokhov.origin.validator;
+
+import com.ddorokhov.origin.Constants;
+
+import java.util.Arrays;
+
+/**
+ * Validates {@code http} and {@code https} URLs against the RFC 3986 grammar and brings them to
+ * one canonical form, so equivalent spellings map to the same stored and cached URL.
+ * <p>
+ * The URL is read once from left to right; only the authority is looked ahead in for a user
+ * info. Canonicalization, per RFC 3986 section 6.2.2 and 6.2.3:
+ * <ul>
+ *     <li>scheme and host are lowercased</li>
+ *     <li>percent-encodings are uppercased, those of unreserved characters decoded</li>
+ *     <li>an empty or default port is removed</li>
+ *     <li>a path of just {@code /} is removed, being equivalent to the empty path</li>
+ *     <li>optionally, query parameters are sorted by name, keeping the order of equal names</li>
+ * </ul>
+ * Dot segments are kept, since servers do not all resolve them alike. Non-ASCII characters
+ * other than spaces and controls are accepted as they are, like {@link java.net.URI} does.
+ * URLs longer than {@link Constants#ORIGINAL_URL_MAX_LENGTH}, the stored column, are invalid;
+ * canonicalization never lengthens a URL, so a valid one always fits. Invalid input yields
+ * {@code null} rather than an exception, and a URL that is already canonical is returned as
+ * the same instance, without copying.
+ */
+public class UrlCanonicalizer {
+    private static final byte UNRESERVED = 1;
+    private static final byte SUB_DELIM = 2;
+    private static final byte COLON = 4;
+    private static final byte AT = 8;
+    private static final byte SLASH = 16;
+    private static final byte QUESTION_MARK = 32;
+    private static final int USER_INFO = UNRESERVED | SUB_DELIM | COLON;
+    private static final int REG_NAME = UNRESERVED | SUB_DELIM;
+    private static final int PATH = UNRESERVED | SUB_DELIM | COLON | AT | SLASH;
+    private static final int QUERY = PATH | QUESTION_MARK;
+    private static final byte[] CLASSES = new byte[128];
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final int MAX_PORT = 65535;
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) CLASSES[c] = UNRESERVED;
+        for (char c = 'A'; c <= 'Z'; c++) CLASSES[c] = UNRESERVED;
+        for (char c = '0'; c <= '9'; c++) CLASSES[c] = UNRESERVED;
+        for (char c : "-._~".toCharArray()) CLASSES[c] = UNRESERVED;
+        for (char c : "!$&'()*+,;=".toCharArray()) CLASSES[c] = SUB_DELIM;
+        CLASSES[':'] = COLON;
+        CLASSES['@'] = AT;
+        CLASSES['/'] = SLASH;
+        CLASSES['?'] = QUESTION_MARK;
+    }
+
+    private final boolean sortQueryParameters;
+
+    public UrlCanonicalizer(boolean sortQueryParameters) {
+        this.sortQueryParameters = sortQueryParameters;
+    }
+
+    public boolean isValid(String url) {
+        return canonicalize(url) != null;
+    }
+
+    /**
+     * @return the canonical form of the URL, the URL itself if already canonical, or
+     * {@code null} if it is not a valid {@code http} or {@code https} URL
+     */
+    public String canonicalize(String url) {
+        if (url == null || url.length() > Constants.ORIGINAL_URL_MAX_LENGTH) return null;
+        int length = url.length();
+        int i;
+        int defaultPort;
+        if (url.regionMatches(true, 0, "http://", 0, 7)) {
+            i = 7;
+            defaultPort = 80;
+        } else if (url.regionMatches(true, 0, "https://", 0, 8)) {
+            i = 8;
+            defaultPort = 443;
+        } else {
+            return null;
+        }
+        Output out = new Output(url);
+        for (int s = 0; s < i - 3; s++) {
+            char c = url.charAt(s);
+            if (c >= 'A' && c <= 'Z') out.replace(s, s + 1, (char) (c + ('a' - 'A')));
+        }
+
+        int authorityEnd = i;
+        int at = -1;
+        while (authorityEnd < length) {
+            char c = url.charAt(authorityEnd);
+            if (c == '/' || c == '?' || c == '#') break;
+            if (c == '@') at = authorityEnd;
+            authorityEnd++;
+        }
+        if (at >= 0) {
+            if (scan(url, i, at, USER_INFO, false, out) != at) return null;
+            i = at + 1;
+        }
+
+        int hostStart = i;
+        if (i < authorityEnd && url.charAt(i) == '[') {
+            i = ipLiteral(url, i + 1, authorityEnd, out);
+            if (i < 0) return null;
+        } else {
+            i = scan(url, i, authorityEnd, REG_NAME, true, out);
+            if (i < 0 || i == hostStart) return null;
+        }
+
+        if (i < authorityEnd) {
+            if (url.charAt(i) != ':') return null;
+            int portStart = i + 1;
+            int port = 0;
+            for (int p = portStart; p < authorityEnd; p++) {
+                char c = url.charAt(p);
+                if (c < '0' || c > '9') return null;
+                port = port * 10 + (c - '0');
+                if (port > MAX_PORT) return null;
+            }
+            if (portStart == authorityEnd || port == defaultPort) {
+                out.replace(i, authorityEnd, "");
+            } else if (url.charAt(portStart) == '0' && authorityEnd - portStart > 1) {
+                out.replace(portStart, authorityEnd, Integer.toString(port));
+            }
+        }
+
+        int pathStart = authorityEnd;
+        i = scan(url, pathStart, length, PATH, false, out);
+        if (i < 0) return null;
+        if (i == pathStart + 1 && url.charAt(pathStart) == '/') out.replace(pathStart, i, "");
+
+        if (i < length && url.charAt(i) == '?') {
+            int queryStart = i + 1;
+            int outputStart = out.position(queryStart);
+            i = scan(url, queryStart, length, QUERY, false, out);
+            if (i < 0) return null;
+            if (sortQueryParameters) sortQuery(out, queryStart, i, outputStart);
+        }
+        if (i < length && url.charAt(i) == '#') {
+            i = scan(url, i + 1, length, QUERY, false, out);
+            if (i < 0) return null;
+        }
+        return i == length ? out.result() : null;
+    }
+
+    /**
+     * Validates and normalizes the characters of one component.
+     *
+     * @param mask classes of the characters allowed besides percent-encodings and non-ASCII
+     * @return index of the first character outside the component, or {@code -1} if a
+     * percent-encoding is malformed
+     */
+    private static int scan(String url, int i, int end, int mask, boolean lowerCase, Output out) {
+        while (i < end) {
+            char c = url.charAt(i);
+            if (c < 128) {
+                if ((CLASSES[c] & mask) != 0) {
+                    if (lowerCase && c >= 'A' && c <= 'Z') out.replace(i, i + 1, (char) (c + ('a' - 'A')));
+                    i++;
+                } else if (c == '%') {
+                    i = percentEncoding(url, i, end, lowerCase, out);
+                    if (i < 0) return -1;
+                } else {
+                    return i;
+                }
+            } else if (!Character.isSpaceChar(c) && !Character.isISOControl(c)) {
+                i++;
+            } else {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * @return index after the percent-encoding, or {@code -1} if malformed
+     */
+    private static int percentEncoding(String url, int i, int end, boolean lowerCase, Output out) {
+        if (i + 2 >= end) return -1;
+        int high = hexValue(url.charAt(i + 1));
+        int low = hexValue(url.charAt(i + 2));
+        if (high < 0 || low < 0) return -1;
+        char decoded = (char) (high << 4 | low);
+        if (decoded < 128 && CLASSES[decoded] == UNRESERVED) {
+            if (lowerCase && decoded >= 'A' && decoded <= 'Z') decoded += 'a' - 'A';
+            out.replace(i, i + 3, decoded);
+        } else if (url.charAt(i + 1) != HEX[high] || url.charAt(i + 2) != HEX[low]) {
+            out.replace(i, i + 3, '%', HEX[high], HEX[low]);
+        }
+        return i + 3;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        return -1;
+    }
+
+    /**
+     * Accepts the hex digits, colons and dots of an IPv6 or IPv4 address in brackets,
+     * lowercasing the digits.
+     *
+     * @return index after the closing bracket, or {@code -1} if invalid
+     */
+    private static int ipLiteral(String url, int i, int end, Output out) {
+        int start = i;
+        for (; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == ']') return i > start ? i + 1 : -1;
+            if (c >= 'A' && c <= 'F') {
+                out.replace(i, i + 1, (char) (c + ('a' - 'A')));
+            } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c == ':' || c == '.')) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static void sortQuery(Output out, int start, int end, int outputStart) {
+        String query = out.text(start, end, outputStart);
+        if (query.indexOf('&') < 0) return;
+        String[] parameters = query.split("&", -1);
+        boolean sorted = true;
+        for (int p = 1; p < parameters.length && sorted; p++) {
+            sorted = compareNames(parameters[p - 1], parameters[p]) <= 0;
+        }
+        if (sorted) return;
+        Arrays.sort(parameters, UrlCanonicalizer::compareNames);
+        out.replaceText(outputStart, end, String.join("&", parameters));
+    }
+
+    private static int compareNames(String left, String right) {
+        int leftLength = nameLength(left);
+        int rightLength = nameLength(right);
+        for (int c = 0; c < Math.min(leftLength, rightLength); c++) {
+            int difference = left.charAt(c) - right.charAt(c);
+            if (difference != 0) return difference;
+        }
+        return leftLength - rightLength;
+    }
+
+    private static int nameLength(String parameter) {
+        int equals = parameter.indexOf('=');
+        return equals < 0 ? parameter.length() : equals;
+    }
+
+    /**
+     * The canonical URL, only copied from the input once the first character differs.
+     */
+    private static final class Output {
+        private final String input;
+        private StringBuilder builder;
+        private int copied;
+
+        Output(String input) {
+            this.input = input;
+        }
+
+        /**
+         * Replaces the input characters from {@code start} to {@code end}; calls follow the
+         * input order.
+         */
+        void replace(int start, int end, CharSequence replacement) {
+            copyUpTo(start);
+            builder.append(replacement);
+            copied = end;
+        }
+
+        void replace(int start, int end, char... replacement) {
+            copyUpTo(start);
+            builder.append(replacement);
+            copied = end;
+        }
+
+        /**
+         * @return position in the output that input index {@code i} maps to, for indexes not
+         * replaced yet
+         */
+        int position(int i) {
+            return builder == null ? i : builder.length() + i - copied;
+        }
+
+        /**
+         * @return the output from {@code outputStart}, the position of input index {@code start}, to input index {@code end}
+         */
+        String text(int start, int end, int outputStart) {
+            if (builder == null) return input.substring(start, end);
+            copyUpTo(end);
+            return builder.substring(outputStart);
+        }
+
+        /**
+         * Replaces the output from {@code outputStart} up to input index {@code end}, as
+         * returned by {@link #text}.
+         */
+        void replaceText(int outputStart, int end, String replacement) {
+            if (builder == null) {
+                builder = new StringBuilder(input.length());
+                builder.append(input, 0, outputStart);
+            } else {
+                builder.setLength(outputStart);
+            }
+            builder.append(replacement);
+            copied = end;
+        }
+
+        String result() {
+            if (builder == null) return input;
+            copyUpTo(input.length());
+            return builder.toString();
+        }
+
+        private void copyUpTo(int end) {
+            if (builder == null) builder = new StringBuilder(input.length());
+            builder.append(input, copied, end);
+            copied = end;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.ddorokhov.origin.validator;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Creates the {@link UrlCanonicalizer} applied to original URLs before they are stored,
+ * looked up or cached.
+ */
+@Configuration
+@EnableConfigurationProperties(UrlProperties.class)
+public class UrlCanonicalizerConfig {
+
+    @Bean
+    public UrlCanonicalizer urlCanonicalizer(UrlProperties properties) {
+        return new UrlCanonicalizer(properties.isSortQueryParameters());
+    }
+}
@@ -0,0 +1,18 @@
+package com.ddorokhov.origin.validator;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Original URL handling settings, bound to {@code origin.url.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "origin.url")
+public class UrlProperties {
+    /**
+     * Whether query parameters are sorted by name when canonicalizing, so URLs differing only
+     * in parameter order share one mapping. Off by default, since some servers read parameters
+     * in order.
+     */
+    private boolean sortQueryParameters = false;
+}
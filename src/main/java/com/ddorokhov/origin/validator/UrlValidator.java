@@ -3,21 +3,15 @@ package com.ddorokhov.origin.validator;
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
 
-import java.net.URL;
-
 /**
- * Validates that a given String is a well-formed URL.
+ * Validates that a given String is a well-formed {@code http} or {@code https} URL, see
+ * {@link UrlCanonicalizer}.
  */
 public class UrlValidator implements ConstraintValidator<ValidUrl, String> {
+    private static final UrlCanonicalizer CANONICALIZER = new UrlCanonicalizer(false);
 
     @Override
     public boolean isValid(String value, ConstraintValidatorContext context) {
-        try {
-            if (!value.contains("http://") && !value.contains("https://")) return false;
-            new URL(value).toURI();
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return CANONICALIZER.isValid(value);
     }
-}
\ No newline at end of file
+}
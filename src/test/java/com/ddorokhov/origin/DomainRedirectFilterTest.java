@@ -1,5 +1,9 @@
 package com.ddorokhov.origin;
 
+import com.ddorokhov.origin.analytics.ClickCounter;
+import com.ddorokhov.origin.redirect.RedirectPolicy;
+import com.ddorokhov.origin.redirect.RedirectProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,13 +13,17 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class DomainRedirectFilterTest {
 
     private UrlService urlService;
+    private ClickCounter clickCounter;
     private DomainRedirectFilter filter;
 
     private HttpServletRequest request;
@@ -25,7 +33,8 @@ class DomainRedirectFilterTest {
     @BeforeEach
     void init() {
         urlService = mock(UrlService.class);
-        filter = new DomainRedirectFilter(urlService);
+        clickCounter = mock(ClickCounter.class);
+        filter = new DomainRedirectFilter(urlService, new RedirectPolicy(new RedirectProperties()), clickCounter, new SimpleMeterRegistry());
         request = mock(HttpServletRequest.class);
         response = mock(HttpServletResponse.class);
         chain = mock(FilterChain.class);
@@ -34,31 +43,116 @@ class DomainRedirectFilterTest {
     @Test
     @DisplayName("Should redirect if shorten url found")
     void originalFound() throws ServletException, IOException {
-        String shortUrl = "http://short.ly/a1B2c3";
+        String shortCode = "a1B2c3";
         String originalUrl = "https://www.originenergy.com.au/electricity-gas/plans.html";
 
-        when(request.getRequestURL()).thenReturn(new StringBuffer(shortUrl));
-        when(urlService.getOriginal(shortUrl)).thenReturn(Optional.of(new UrlEntity(shortUrl, originalUrl)));
+        when(request.getHeader("Host")).thenReturn("short.ly");
+        when(request.getRequestURI()).thenReturn("/a1B2c3");
+        when(urlService.getOriginal(shortCode)).thenReturn(Optional.of(new UrlEntity(shortCode, originalUrl)));
 
         filter.doFilterInternal(request, response, chain);
 
         verify(response).setStatus(HttpServletResponse.SC_FOUND);
         verify(response).setHeader("Location", originalUrl);
+        verify(response).setHeader("Cache-Control", "no-store");
+        verify(clickCounter).record(shortCode);
         verify(chain, never()).doFilter(any(), any());
     }
 
+    @Test
+    @DisplayName("Should redirect with the configured status and let caches keep it until the link expires")
+    void cacheableRedirect() throws ServletException, IOException {
+        RedirectProperties properties = new RedirectProperties();
+        properties.setStatus(308);
+        properties.setMaxAge(Duration.ofDays(1));
+        filter = new DomainRedirectFilter(urlService, new RedirectPolicy(properties), clickCounter, new SimpleMeterRegistry());
+        when(request.getHeader("Host")).thenReturn("short.ly");
+        when(request.getRequestURI()).thenReturn("/Camp01", "/Perm01");
+        when(urlService.getOriginal("Camp01")).thenReturn(Optional.of(
+                new UrlEntity("Camp01", "https://example.com/sale", Instant.now().plus(Duration.ofHours(1)))));
+        when(urlService.getOriginal("Perm01")).thenReturn(Optional.of(new UrlEntity("Perm01", "https://example.com/about")));
+
+        filter.doFilterInternal(request, response, chain);
+        filter.doFilterInternal(request, response, chain);
+
+        verify(response, times(2)).setStatus(308);
+        verify(response).setHeader(eq("Cache-Control"), matches("public, max-age=(35\\d\\d|3600)"));
+        verify(response).setHeader("Cache-Control", "public, max-age=86400");
+    }
+
     @Test
     @DisplayName("Should continue filter chain when shorten url not found")
     void originalNotFound() throws ServletException, IOException {
-        String shortUrl = "http://short.ly/doesnotexist";
+        String shortCode = "doesnotexist";
 
-        when(request.getRequestURL()).thenReturn(new StringBuffer(shortUrl));
-        when(urlService.getOriginal(shortUrl)).thenReturn(Optional.empty());
+        when(request.getHeader("Host")).thenReturn("short.ly");
+        when(request.getRequestURI()).thenReturn("/doesnotexist");
+        when(urlService.getOriginal(shortCode)).thenReturn(Optional.empty());
 
         filter.doFilterInternal(request, response, chain);
 
         verify(chain).doFilter(request, response);
         verify(response, never()).setStatus(HttpServletResponse.SC_FOUND);
         verify(response, never()).setHeader(eq("Location"), anyString());
+        verifyNoInteractions(clickCounter);
+    }
+
+    @Test
+    @DisplayName("Should redirect when short domain host carries a port")
+    void originalFoundWithPort() throws ServletException, IOException {
+        String shortCode = "a1B2c3";
+        String originalUrl = "https://www.originenergy.com.au/electricity-gas/plans.html";
+
+        when(request.getHeader("Host")).thenReturn("SHORT.LY:8080");
+        when(request.getRequestURI()).thenReturn("/a1B2c3");
+        when(urlService.getOriginal(shortCode)).thenReturn(Optional.of(new UrlEntity(shortCode, originalUrl)));
+
+        filter.doFilterInternal(request, response, chain);
+
+        verify(response).setHeader("Location", originalUrl);
+        verify(chain, never()).doFilter(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should skip lookup for API host")
+    void apiHostSkipsLookup() throws ServletException, IOException {
+        when(request.getHeader("Host")).thenReturn("localhost");
+
+        filter.doFilterInternal(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        verifyNoInteractions(urlService);
+    }
+
+    @Test
+    @DisplayName("Should skip lookup for short domain paths that are not a code")
+    void nonCodePathSkipsLookup() throws ServletException, IOException {
+        when(request.getHeader("Host")).thenReturn("short.ly");
+        when(request.getRequestURI()).thenReturn("/h2-console/login.do");
+
+        filter.doFilterInternal(request, response, chain);
+
+        verify(chain).doFilter(request, response);
+        verifyNoInteractions(urlService);
+    }
+
+    @Test
+    @DisplayName("Should only accept the exact short domain")
+    void shortDomainMatching() {
+        assertTrue(DomainRedirectFilter.isShortDomain("short.ly"));
+        assertTrue(DomainRedirectFilter.isShortDomain("Short.Ly:80"));
+        assertFalse(DomainRedirectFilter.isShortDomain("short.lyx"));
+        assertFalse(DomainRedirectFilter.isShortDomain("www.short.ly"));
+        assertFalse(DomainRedirectFilter.isShortDomain(null));
+    }
+
+    @Test
+    @DisplayName("Should extract only single alphanumeric path segments")
+    void codeExtraction() {
+        assertEquals("a1B2c3", DomainRedirectFilter.extractCode("/a1B2c3"));
+        assertNull(DomainRedirectFilter.extractCode("/"));
+        assertNull(DomainRedirectFilter.extractCode("/shorten/batch"));
+        assertNull(DomainRedirectFilter.extractCode("/favicon.ico"));
+        assertNull(DomainRedirectFilter.extractCode("/" + "a".repeat(64)));
     }
-}
\ No newline at end of file
+}
@@ -1,27 +1,47 @@
 package com.ddorokhov.origin;
 
+import com.ddorokhov.origin.analytics.ClickCounter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ddorokhov.origin.redirect.RedirectPolicyConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 import static com.ddorokhov.origin.Constants.PATH_ORIGINAL;
+import static com.ddorokhov.origin.Constants.PATH_ORIGINAL_LOOKUP;
 import static com.ddorokhov.origin.Constants.PATH_SHORTEN;
+import static com.ddorokhov.origin.Constants.PATH_SHORTEN_BATCH;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(UrlController.class)
+@Import({SimpleMeterRegistry.class, RedirectPolicyConfig.class})
 class UrlControllerTest {
 
     @Autowired
@@ -30,9 +50,12 @@ class UrlControllerTest {
     @MockitoBean
     private UrlService urlService;
 
+    @MockitoBean
+    private ClickCounter clickCounter;
+
     private final String originalUrl = "https://www.originenergy.com.au/electricity-gas/plans.html";
     private final String shortenedUrl = "http://short.ly/a1B2c3";
-    private final UrlEntity entity = new UrlEntity(shortenedUrl, originalUrl);
+    private final UrlEntity entity = new UrlEntity("a1B2c3", originalUrl);
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Test
@@ -64,7 +87,7 @@ class UrlControllerTest {
     @Test
     @DisplayName("Creates shortened URL if not already mapped (201 Created)")
     void shortenCreated() throws Exception {
-        when(urlService.createOrGet(originalUrl))
+        when(urlService.createOrGet(originalUrl, null))
                 .thenReturn(ResponseEntity.created(null).body(entity));
 
         MvcResult result = mockMvc.perform(post(PATH_SHORTEN).param("originalUrl", originalUrl))
@@ -79,6 +102,23 @@ class UrlControllerTest {
         assertEquals(shortenedUrl, responseEntity.getShortenedUrl());
     }
 
+    @Test
+    @DisplayName("Creates an expiring link when a TTL is given, and rejects a non-positive TTL")
+    void shortenWithTtl() throws Exception {
+        when(urlService.createOrGet(eq(originalUrl), any(Instant.class)))
+                .thenReturn(ResponseEntity.created(null).body(entity));
+
+        mockMvc.perform(post(PATH_SHORTEN).param("originalUrl", originalUrl).param("ttl", "P90D"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post(PATH_SHORTEN).param("originalUrl", originalUrl).param("ttl", "-PT1H"))
+                .andExpect(status().isBadRequest());
+
+        ArgumentCaptor<Instant> expiresAt = ArgumentCaptor.forClass(Instant.class);
+        verify(urlService).createOrGet(eq(originalUrl), expiresAt.capture());
+        Duration remaining = Duration.between(Instant.now(), expiresAt.getValue());
+        assertTrue(remaining.compareTo(Duration.ofDays(89)) > 0 && remaining.compareTo(Duration.ofDays(90)) <= 0);
+    }
+
     @Test
     @DisplayName("Deletes mapping and responds with 200 OK")
     void shortenDeleted() throws Exception {
@@ -91,7 +131,7 @@ class UrlControllerTest {
     @Test
     @DisplayName("Resolves shortened URL to original (200 OK)")
     void originalFound() throws Exception {
-        when(urlService.getOriginal(shortenedUrl)).thenReturn(Optional.of(entity));
+        when(urlService.getOriginal("a1B2c3")).thenReturn(Optional.of(entity));
 
         MvcResult result = mockMvc.perform(get(PATH_ORIGINAL).param("shortenedUrl", shortenedUrl))
                 .andExpect(status().isOk())
@@ -100,14 +140,52 @@ class UrlControllerTest {
         String responseJson = result.getResponse().getContentAsString();
         UrlEntity responseEntity = objectMapper.readValue(responseJson, UrlEntity.class);
 
+        assertEquals("{\"shortenedUrl\":\"" + shortenedUrl + "\",\"originalUrl\":\"" + originalUrl + "\"}", responseJson);
         assertEquals(originalUrl, responseEntity.getOriginalUrl());
         assertEquals(shortenedUrl, responseEntity.getShortenedUrl());
     }
 
+    @Test
+    @DisplayName("Lookups carry validators and answer a matching conditional request with 304")
+    void conditionalLookups() throws Exception {
+        UrlEntity created = new UrlEntity("a1B2c3", originalUrl);
+        created.setCreatedAt(Instant.parse("2025-04-24T00:48:04Z"));
+        when(urlService.getOriginal("a1B2c3")).thenReturn(Optional.of(created));
+        when(urlService.get(originalUrl)).thenReturn(Optional.of(created));
+
+        MvcResult result = mockMvc.perform(get(PATH_ORIGINAL).param("shortenedUrl", shortenedUrl))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(header().string(HttpHeaders.LAST_MODIFIED, "Thu, 24 Apr 2025 00:48:04 GMT"))
+                .andReturn();
+        String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(PATH_ORIGINAL).param("shortenedUrl", shortenedUrl).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(PATH_SHORTEN).param("originalUrl", originalUrl).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(PATH_SHORTEN).param("originalUrl", originalUrl)
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, "Thu, 24 Apr 2025 00:48:04 GMT"))
+                .andExpect(status().isNotModified());
+
+        created.setExpiresAt(Instant.now().plus(Duration.ofDays(1)));
+        mockMvc.perform(get(PATH_ORIGINAL).param("shortenedUrl", shortenedUrl).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Returns 404 for a URL outside the short domain without a lookup")
+    void originalOutsideShortDomain() throws Exception {
+        mockMvc.perform(get(PATH_ORIGINAL).param("shortenedUrl", "http://example.com/a1B2c3"))
+                .andExpect(status().isNotFound());
+
+        verifyNoInteractions(urlService);
+    }
+
     @Test
     @DisplayName("Returns 404 when shortened URL does not exist")
     void originalNotFound() throws Exception {
-        when(urlService.getOriginal(shortenedUrl)).thenReturn(Optional.empty());
+        when(urlService.getOriginal("a1B2c3")).thenReturn(Optional.empty());
 
         mockMvc.perform(get(PATH_ORIGINAL).param("shortenedUrl", shortenedUrl))
                 .andExpect(status().isNotFound());
@@ -124,4 +202,80 @@ class UrlControllerTest {
 
         Assertions.assertTrue(responseBody.contains("Invalid"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Returns 400 for a URL longer than the stored column")
+    void createShortenWithOverlongUrl() throws Exception {
+        String overlongUrl = originalUrl + "?q=" + "a".repeat(Constants.ORIGINAL_URL_MAX_LENGTH);
+
+        mockMvc.perform(post(PATH_SHORTEN).param("originalUrl", overlongUrl))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(urlService);
+    }
+
+    @Test
+    @DisplayName("Shortens a JSON array of URLs in one call")
+    void shortenBatchJson() throws Exception {
+        List<String> urls = List.of(originalUrl, "invalid-url");
+        when(urlService.createOrGetAll(urls, null)).thenReturn(List.of(
+                new BatchShortenResult(shortenedUrl, originalUrl, BatchShortenResult.Status.CREATED),
+                new BatchShortenResult(null, "invalid-url", BatchShortenResult.Status.INVALID)));
+
+        MvcResult result = mockMvc.perform(post(PATH_SHORTEN_BATCH)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(urls)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        BatchShortenResult[] results = objectMapper.readValue(result.getResponse().getContentAsString(), BatchShortenResult[].class);
+
+        assertEquals(2, results.length);
+        assertEquals(BatchShortenResult.Status.CREATED, results[0].getStatus());
+        assertEquals(shortenedUrl, results[0].getShortenedUrl());
+        assertEquals(BatchShortenResult.Status.INVALID, results[1].getStatus());
+    }
+
+    @Test
+    @DisplayName("Shortens an NDJSON stream of URLs in one call")
+    void shortenBatchNdjson() throws Exception {
+        String secondUrl = "http://example.com";
+        when(urlService.createOrGetAll(List.of(originalUrl, secondUrl), null)).thenReturn(List.of(
+                new BatchShortenResult(shortenedUrl, originalUrl, BatchShortenResult.Status.EXISTING),
+                new BatchShortenResult("http://short.ly/Zx81Qa", secondUrl, BatchShortenResult.Status.CREATED)));
+
+        mockMvc.perform(post(PATH_SHORTEN_BATCH)
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("\"" + originalUrl + "\"\n\"" + secondUrl + "\"\n"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Returns 400 for malformed NDJSON")
+    void shortenBatchMalformedNdjson() throws Exception {
+        mockMvc.perform(post(PATH_SHORTEN_BATCH)
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{not json"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Resolves many shortened URLs in one call and marks unknown ones")
+    void originalBatchLookup() throws Exception {
+        String unknown = "http://short.ly/Nope00";
+        List<String> urls = List.of(shortenedUrl, unknown);
+        when(urlService.getOriginalAll(urls)).thenReturn(List.of(
+                new BatchLookupResult(shortenedUrl, originalUrl, true),
+                new BatchLookupResult(unknown, null, false)));
+
+        MvcResult result = mockMvc.perform(post(PATH_ORIGINAL_LOOKUP)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(urls)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        BatchLookupResult[] results = objectMapper.readValue(result.getResponse().getContentAsString(), BatchLookupResult[].class);
+
+        assertEquals(originalUrl, results[0].getOriginalUrl());
+        assertFalse(results[1].isFound());
+    }
+}
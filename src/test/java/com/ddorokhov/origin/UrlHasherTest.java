@@ -0,0 +1,41 @@
+package com.ddorokhov.origin;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlHasherTest {
+
+    @Test
+    @DisplayName("Is the SHA-256 reference digest truncated to 16 bytes")
+    void matchesReferenceVector() {
+        ByteBuffer hash = ByteBuffer.wrap(UrlHasher.hash("The quick brown fox jumps over the lazy dog"));
+
+        assertEquals(UrlHasher.HASH_BYTES, hash.remaining());
+        assertEquals(0xd7a8fbb307d78094L, hash.getLong());
+        assertEquals(0x69ca9abcb0082e4fL, hash.getLong());
+    }
+
+    @Test
+    @DisplayName("Hashes the UTF-8 bytes of non-ASCII URLs")
+    void hashesUtf8Bytes() throws Exception {
+        for (String url : new String[]{"", "http://a.b", "http://пример.рф/путь?q=значение", "http://例子.测试/😀/x", "http://example.com/" + "x".repeat(2000)}) {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            assertArrayEquals(Arrays.copyOf(digest, UrlHasher.HASH_BYTES), UrlHasher.hash(url), url);
+        }
+    }
+
+    @Test
+    @DisplayName("Different URLs hash differently, including URLs crafted to collide under MurmurHash3")
+    void differentUrlsDiffer() {
+        assertFalse(Arrays.equals(UrlHasher.hash("http://example.com/a"), UrlHasher.hash("http://example.com/b")));
+        assertFalse(Arrays.equals(UrlHasher.hash("https://example.com/collisions/xaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"),
+                UrlHasher.hash("https://example.com/collisions/xR2E=@f,~fIS-DCWEnp_VbIvewwvsXWZO")));
+    }
+}
@@ -0,0 +1,238 @@
+package com.ddorokhov.origin;
+
+import com.ddorokhov.origin.cache.ShortCodeFilter;
+import com.ddorokhov.origin.cache.SingleFlightCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.ddorokhov.origin.Constants.CACHE_ORIGINAL_TO_SHORT;
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
+import static com.ddorokhov.origin.Constants.PATH_SHORTEN;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest(properties = {
+        "origin.cache.short-code-filter.enabled=true",
+        "origin.invalidation.transport=loopback",
+        "origin.invalidation.loopback.channel=url-service-integration"})
+@AutoConfigureMockMvc
+class UrlServiceIntegrationTest {
+
+    @Autowired
+    private UrlService urlService;
+
+    @Autowired
+    private UrlRepository urlRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ShortCodeFilter shortCodeFilter;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Batch inserts new mappings and reports them as existing on the next call")
+    void batchRoundTrip() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            urls.add("http://batch.example.com/campaign?id=" + i);
+        }
+
+        List<BatchShortenResult> first = urlService.createOrGetAll(urls);
+        List<BatchShortenResult> second = urlService.createOrGetAll(urls);
+
+        for (int i = 0; i < urls.size(); i++) {
+            assertEquals(BatchShortenResult.Status.CREATED, first.get(i).getStatus());
+            assertEquals(BatchShortenResult.Status.EXISTING, second.get(i).getStatus());
+            assertEquals(first.get(i).getShortenedUrl(), second.get(i).getShortenedUrl());
+        }
+        assertEquals(urls.get(42), urlRepository.findById(ShortUrls.toCode(first.get(42).getShortenedUrl())).orElseThrow().getOriginalUrl());
+    }
+
+    @Test
+    @DisplayName("Batch creates of a rolled back transaction leave nothing in the caches")
+    void rolledBackBatchIsNotCached() {
+        String url = "http://rollback.example.com/batch";
+        List<BatchShortenResult> results = new TransactionTemplate(transactionManager).execute(status -> {
+            status.setRollbackOnly();
+            return urlService.createOrGetAll(List.of(url));
+        });
+        String shortCode = ShortUrls.toCode(results.get(0).getShortenedUrl());
+
+        assertNull(cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT).get(url));
+        assertNull(cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).get(shortCode));
+        assertTrue(urlService.get(url).isEmpty());
+        assertTrue(urlService.getOriginal(shortCode).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A URL too long for the column fails the insert instead of being stored cut")
+    void overlongUrlIsNotTruncated() {
+        UrlEntity overlong = new UrlEntity("Long01", "https://example.com/" + "a".repeat(Constants.ORIGINAL_URL_MAX_LENGTH));
+
+        assertThrows(DataIntegrityViolationException.class, () -> urlRepository.insertIfAbsent(overlong));
+        assertTrue(urlRepository.findById("Long01").isEmpty());
+    }
+
+    @Test
+    @DisplayName("URLs crafted to collide under MurmurHash3 get a mapping each")
+    void murmurCollisionDoesNotBlockUrl() {
+        String crafted = "https://example.com/collisions/xaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+        String target = "https://example.com/collisions/xR2E=@f,~fIS-DCWEnp_VbIvewwvsXWZO";
+
+        UrlEntity first = urlService.createOrGet(crafted).getBody();
+        ResponseEntity<UrlEntity> second = urlService.createOrGet(target);
+
+        assertEquals(HttpStatus.CREATED, second.getStatusCode());
+        assertEquals(target, second.getBody().getOriginalUrl());
+        assertNotEquals(first.getShortenedUrl(), second.getBody().getShortenedUrl());
+        assertEquals(second.getBody(), urlService.get(target).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Creation times are stored for single and batch creates")
+    void storesCreationTime() {
+        Instant before = Instant.now().minusSeconds(1);
+        UrlEntity created = urlService.createOrGet("http://created.example.com/single").getBody();
+        List<BatchShortenResult> batch = urlService.createOrGetAll(List.of("http://created.example.com/batch"));
+
+        assertTrue(urlRepository.findById(created.getShortCode()).orElseThrow().getCreatedAt().isAfter(before));
+        assertTrue(urlRepository.findById(ShortUrls.toCode(batch.get(0).getShortenedUrl())).orElseThrow().getCreatedAt().isAfter(before));
+    }
+
+    @Test
+    @DisplayName("Differently spelled URLs share one canonical mapping")
+    void canonicalizesUrls() {
+        UrlEntity created = urlService.createOrGet("HTTP://Canonical.Example.com:80/").getBody();
+        List<BatchShortenResult> batch = urlService.createOrGetAll(List.of("http://canonical.example.com", "https://canonical.example.com:443"));
+
+        assertEquals("http://canonical.example.com", created.getOriginalUrl());
+        assertEquals(created.getShortenedUrl(), batch.get(0).getShortenedUrl());
+        assertEquals(BatchShortenResult.Status.EXISTING, batch.get(0).getStatus());
+        assertEquals("http://canonical.example.com", batch.get(0).getOriginalUrl());
+        assertEquals(BatchShortenResult.Status.CREATED, batch.get(1).getStatus());
+        assertEquals(created, urlService.get("http://CANONICAL.example.com/").orElseThrow());
+
+        urlService.delete("http://canonical.example.com:80");
+        assertTrue(urlService.get("http://canonical.example.com").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Lookups go through the coalescing cache, unknown codes are stopped by the filter before it")
+    void lookupsAreCached() {
+        SingleFlightCache cache = (SingleFlightCache) cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL);
+        long loadsBefore = cache.getLoadCount();
+        UrlEntity created = urlService.createOrGet("http://cached.example.com").getBody();
+        String unknown = "Unknwn";
+        String falsePositive = "FalsePos";
+        shortCodeFilter.add(falsePositive);
+
+        assertEquals(created, urlService.getOriginal(created.getShortCode()).orElseThrow());
+        assertTrue(urlService.getOriginal(unknown).isEmpty());
+        assertTrue(urlService.getOriginal(falsePositive).isEmpty());
+        assertTrue(urlService.getOriginal(falsePositive).isEmpty());
+
+        assertNull(cache.get(unknown));
+        assertNull(cache.get(falsePositive).get());
+        assertEquals(loadsBefore + 1, cache.getLoadCount());
+    }
+
+    @Test
+    @DisplayName("Expiring links are stored with their expiry and purged once it passed")
+    void expiringLinksArePurged() {
+        Instant expiresAt = Instant.now().plus(Duration.ofDays(90));
+        UrlEntity created = urlService.createOrGet("http://expiring.example.com/campaign", expiresAt).getBody();
+        List<BatchShortenResult> batch = urlService.createOrGetAll(List.of("http://expiring.example.com/batch"), expiresAt);
+        String batchCode = ShortUrls.toCode(batch.get(0).getShortenedUrl());
+
+        assertEquals(expiresAt.toEpochMilli(), urlRepository.findById(created.getShortCode()).orElseThrow().getExpiresAt().toEpochMilli());
+        assertEquals(0, urlService.purgeExpired(Instant.now(), 500));
+        assertEquals(created, urlService.getOriginal(created.getShortCode()).orElseThrow());
+
+        assertTrue(urlService.purgeExpired(expiresAt, 1) >= 2);
+
+        assertTrue(urlRepository.findById(created.getShortCode()).isEmpty());
+        assertTrue(urlRepository.findById(batchCode).isEmpty());
+        assertNull(cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).get(created.getShortCode()));
+    }
+
+    @Test
+    @DisplayName("Concurrent creates of the same URLs agree on one mapping and never fail")
+    void concurrentCreatesAreIdempotent() throws Exception {
+        int threads = 16;
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            urls.add("http://race.example.com/page/" + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<MvcResult>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<String> order = new ArrayList<>(urls);
+            Collections.shuffle(order);
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<MvcResult> results = new ArrayList<>();
+                for (String url : order) {
+                    results.add(mockMvc.perform(post(PATH_SHORTEN).param("originalUrl", url)).andReturn());
+                }
+                return results;
+            }));
+        }
+        start.countDown();
+
+        Map<String, Set<String>> shortenedByOriginal = new HashMap<>();
+        Map<String, Integer> createdByOriginal = new HashMap<>();
+        for (Future<List<MvcResult>> future : futures) {
+            for (MvcResult result : future.get(60, TimeUnit.SECONDS)) {
+                int status = result.getResponse().getStatus();
+                assertTrue(status == 200 || status == 201, "Unexpected status " + status);
+                UrlEntity body = objectMapper.readValue(result.getResponse().getContentAsString(), UrlEntity.class);
+                shortenedByOriginal.computeIfAbsent(body.getOriginalUrl(), k -> new HashSet<>()).add(body.getShortenedUrl());
+                if (status == 201) createdByOriginal.merge(body.getOriginalUrl(), 1, Integer::sum);
+            }
+        }
+        executor.shutdown();
+
+        for (String url : urls) {
+            assertEquals(1, shortenedByOriginal.get(url).size(), "Diverging mappings for " + url);
+            assertEquals(1, createdByOriginal.get(url), "Exactly one create expected for " + url);
+        }
+    }
+}
@@ -1,15 +1,33 @@
 package com.ddorokhov.origin;
 
+import com.ddorokhov.origin.cache.HotKeyTracker;
+import com.ddorokhov.origin.cache.ShortCodeFilter;
+import com.ddorokhov.origin.cache.UrlCacheProperties;
+import com.ddorokhov.origin.invalidation.InvalidationBus;
+import com.ddorokhov.origin.shortcode.RandomShortCodeGenerator;
+import com.ddorokhov.origin.shortcode.ShortCodeGenerator;
+import com.ddorokhov.origin.store.JpaUrlStore;
+import com.ddorokhov.origin.validator.UrlCanonicalizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Optional;
 
+import static com.ddorokhov.origin.Constants.CACHE_ORIGINAL_TO_SHORT;
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -19,12 +37,28 @@ class UrlServiceTest {
     @Mock
     private UrlRepository urlRepository;
 
-    @InjectMocks
+    @Mock
+    private InvalidationBus invalidationBus;
+
+    private CacheManager cacheManager;
+    private ShortCodeFilter shortCodeFilter;
+    private SimpleMeterRegistry meterRegistry;
     private UrlService urlService;
 
     private final String originalUrl = "https://www.originenergy.com.au/electricity-gas/plans.html";
+    private final String shortCode = "a1B2c3";
     private final String shortenedUrl = "http://short.ly/a1B2c3";
-    private final UrlEntity entity = new UrlEntity(shortenedUrl, originalUrl);
+    private final UrlEntity entity = new UrlEntity(shortCode, originalUrl);
+
+    @BeforeEach
+    void init() {
+        cacheManager = new ConcurrentMapCacheManager(CACHE_SHORT_TO_ORIGINAL, CACHE_ORIGINAL_TO_SHORT);
+        meterRegistry = new SimpleMeterRegistry();
+        UrlCacheProperties.Filter filterProperties = new UrlCacheProperties.Filter();
+        filterProperties.setEnabled(true);
+        shortCodeFilter = new ShortCodeFilter(filterProperties);
+        urlService = new UrlService(new JpaUrlStore(urlRepository, new UrlWriteProperties()), cacheManager, shortCodeFilter, new HotKeyTracker(new UrlCacheProperties.HotKeys()), new RandomShortCodeGenerator(6), new UrlCanonicalizer(false), invalidationBus, meterRegistry);
+    }
 
     @Test
     @DisplayName("Returns mapping if original URL exists")
@@ -40,17 +74,19 @@ class UrlServiceTest {
     @Test
     @DisplayName("Resolves shortened URL to original")
     void resolvesShortenedUrl() {
-        when(urlRepository.findById(shortenedUrl)).thenReturn(Optional.of(entity));
+        when(urlRepository.findById(shortCode)).thenReturn(Optional.of(entity));
 
-        Optional<UrlEntity> result = urlService.getOriginal(shortenedUrl);
+        Optional<UrlEntity> result = urlService.getOriginal(shortCode);
 
         assertTrue(result.isPresent());
         assertEquals(originalUrl, result.get().getOriginalUrl());
+        assertEquals(1, meterRegistry.get("origin.url.service").tags("method", "getOriginal", "exception", "none").timer().count());
     }
 
     @Test
     @DisplayName("Returns existing mapping if already shortened")
     void returnsExistingMapping() {
+        when(urlRepository.insertIfAbsent(any(UrlEntity.class))).thenReturn(0);
         when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.of(entity));
 
         ResponseEntity<UrlEntity> response = urlService.createOrGet(originalUrl);
@@ -63,9 +99,7 @@ class UrlServiceTest {
     @Test
     @DisplayName("Creates and saves new mapping when original URL is not found")
     void createsNewMappingIfNotExists() {
-        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.empty());
-        when(urlRepository.findById(any())).thenReturn(Optional.empty());
-        when(urlRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(urlRepository.insertIfAbsent(any(UrlEntity.class))).thenReturn(1);
 
         ResponseEntity<UrlEntity> response = urlService.createOrGet(originalUrl);
 
@@ -73,6 +107,120 @@ class UrlServiceTest {
         assertNotNull(response.getBody());
         assertEquals(originalUrl, response.getBody().getOriginalUrl());
         assertTrue(response.getHeaders().getLocation().toString().startsWith("http://short.ly/"));
+        verify(urlRepository, times(1)).insertIfAbsent(any(UrlEntity.class));
+        verify(urlRepository, never()).findByOriginalUrl(any());
+        verify(urlRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Returns the concurrent winner when the insert loses a race on the same URL")
+    void returnsWinnerOfConcurrentCreate() {
+        when(urlRepository.insertIfAbsent(any(UrlEntity.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.of(entity));
+
+        ResponseEntity<UrlEntity> response = urlService.createOrGet(originalUrl);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(entity, response.getBody());
+    }
+
+    @Test
+    @DisplayName("Retries with a fresh code when the generated code is already taken")
+    void retriesOnTakenCode() {
+        ShortCodeGenerator generator = mock(ShortCodeGenerator.class);
+        when(generator.next()).thenReturn("Taken0", "Zx81Qa");
+        urlService = new UrlService(new JpaUrlStore(urlRepository, new UrlWriteProperties()), cacheManager, shortCodeFilter, new HotKeyTracker(new UrlCacheProperties.HotKeys()), generator, new UrlCanonicalizer(false), invalidationBus, meterRegistry);
+        when(urlRepository.insertIfAbsent(new UrlEntity("Taken0", originalUrl))).thenThrow(new DataIntegrityViolationException("pk"));
+        when(urlRepository.insertIfAbsent(new UrlEntity("Zx81Qa", originalUrl))).thenReturn(1);
+        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.empty());
+        when(urlRepository.findById("Taken0")).thenReturn(Optional.of(new UrlEntity("Taken0", "http://example.com/other")));
+
+        ResponseEntity<UrlEntity> response = urlService.createOrGet(originalUrl);
+
+        assertEquals(201, response.getStatusCode().value());
+        assertEquals("http://short.ly/Zx81Qa", response.getBody().getShortenedUrl());
+        assertEquals(1, meterRegistry.counter("origin.shortcode.collisions").count());
+    }
+
+    @Test
+    @DisplayName("Fails instead of retrying forever when another URL has the same hash")
+    void failsOnOriginalUrlHashCollision() {
+        when(urlRepository.insertIfAbsent(any())).thenReturn(0);
+        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.empty());
+
+        assertThrows(OriginalUrlHashCollisionException.class, () -> urlService.createOrGet(originalUrl));
+        verify(urlRepository, times(2)).insertIfAbsent(any());
+        assertEquals(0, meterRegistry.counter("origin.shortcode.collisions").count());
+    }
+
+    @Test
+    @DisplayName("Insert strategy recovers from the unique constraint violation")
+    void insertStrategyRecoversFromViolation() {
+        UrlWriteProperties writeProperties = new UrlWriteProperties();
+        writeProperties.setUpsert(UrlWriteProperties.UpsertStrategy.INSERT);
+        urlService = new UrlService(new JpaUrlStore(urlRepository, writeProperties), cacheManager, shortCodeFilter, new HotKeyTracker(new UrlCacheProperties.HotKeys()), new RandomShortCodeGenerator(6), new UrlCanonicalizer(false), invalidationBus, meterRegistry);
+        when(urlRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.of(entity));
+
+        ResponseEntity<UrlEntity> response = urlService.createOrGet(originalUrl);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(entity, response.getBody());
+    }
+
+    @Test
+    @DisplayName("Batch collapses duplicates, keeps input order and marks each result")
+    void batchCreatesMissingAndReportsExisting() {
+        String newUrl = "http://example.com/new";
+        when(urlRepository.findAllByOriginalUrlIn(List.of(newUrl, originalUrl))).thenReturn(List.of(entity));
+        when(urlRepository.findAllById(any())).thenReturn(List.of());
+
+        List<BatchShortenResult> results = urlService.createOrGetAll(List.of(newUrl, "invalid-url", originalUrl, newUrl));
+
+        assertEquals(4, results.size());
+        assertEquals(BatchShortenResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(BatchShortenResult.Status.INVALID, results.get(1).getStatus());
+        assertEquals(BatchShortenResult.Status.EXISTING, results.get(2).getStatus());
+        assertEquals(shortenedUrl, results.get(2).getShortenedUrl());
+        assertEquals(results.get(0).getShortenedUrl(), results.get(3).getShortenedUrl());
+        verify(urlRepository).saveAll(argThat(entities -> entities.iterator().next().getOriginalUrl().equals(newUrl)));
+    }
+
+    @Test
+    @DisplayName("Bulk resolve serves cache hits and loads all misses with one query")
+    void bulkResolveLoadsMissesOnce() {
+        UrlEntity cached = new UrlEntity("Cached", "http://example.com/cached");
+        urlService.saveToCache(cached);
+        String unknown = "http://short.ly/Nope00";
+        when(urlRepository.findAllById(List.of(shortCode, "Nope00"))).thenReturn(List.of(entity));
+
+        List<BatchLookupResult> results = urlService.getOriginalAll(List.of(cached.getShortenedUrl(), shortenedUrl, unknown, shortenedUrl, "http://other.example.com/a1B2c3"));
+
+        assertEquals(5, results.size());
+        assertEquals("http://example.com/cached", results.get(0).getOriginalUrl());
+        assertEquals(originalUrl, results.get(1).getOriginalUrl());
+        assertFalse(results.get(2).isFound());
+        assertEquals(unknown, results.get(2).getShortenedUrl());
+        assertTrue(results.get(3).isFound());
+        assertFalse(results.get(4).isFound());
+        verify(urlRepository, times(1)).findAllById(any());
+
+        assertEquals(entity, cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).get(shortCode).get());
+        assertNull(cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).get("Nope00").get());
+    }
+
+    @Test
+    @DisplayName("Bulk lookup by original URL marks unknown URLs as not found")
+    void bulkLookupByOriginal() {
+        String unknown = "http://example.com/unknown";
+        when(urlRepository.findAllByOriginalUrlIn(List.of(originalUrl, unknown))).thenReturn(List.of(entity));
+
+        List<BatchLookupResult> results = urlService.getAll(List.of(originalUrl, unknown));
+
+        assertEquals(shortenedUrl, results.get(0).getShortenedUrl());
+        assertTrue(results.get(0).isFound());
+        assertNull(results.get(1).getShortenedUrl());
+        assertFalse(results.get(1).isFound());
     }
 
     @Test
@@ -85,6 +233,18 @@ class UrlServiceTest {
         verify(urlRepository).delete(entity);
     }
 
+    @Test
+    @DisplayName("Deleting a mapping evicts both cache directions")
+    void deleteEvictsBothCaches() {
+        urlService.saveToCache(entity);
+        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.of(entity));
+
+        urlService.delete(originalUrl);
+
+        assertNull(cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT).get(originalUrl));
+        assertNull(cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).get(shortCode));
+    }
+
     @Test
     @DisplayName("Skips deletion if no mapping found")
     void skipsDeletionIfMappingNotFound() {
@@ -94,28 +254,88 @@ class UrlServiceTest {
     }
 
     @Test
-    @DisplayName("randomizeCase should return mixed-case alphanumeric string")
-    void randomizeCaseProducesValidOutput() {
-        String input = "abc123";
-        String result = urlService.randomizeCase(input);
+    @DisplayName("Codes unknown to the short code filter are not found without a lookup or a cached miss")
+    void filterRejectsUnknownCodes() {
+        shortCodeFilter.reset(0);
 
-        assertEquals(input.length(), result.length());
+        assertTrue(urlService.getOriginal("Nope00").isEmpty());
+        assertFalse(urlService.getOriginalAll(List.of("http://short.ly/Nope00")).get(0).isFound());
 
-        for (int i = 0; i < input.length(); i++) {
-            char original = input.charAt(i);
-            char actual = result.charAt(i);
+        verifyNoInteractions(urlRepository);
+        assertNull(cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).get("Nope00"));
+        assertEquals(2, shortCodeFilter.getRejectionCount());
+    }
+
+    @Test
+    @DisplayName("An expired mapping is not found, and creating its URL again replaces it")
+    void expiredMappingIsReplaced() {
+        UrlEntity expired = new UrlEntity(shortCode, originalUrl, Instant.now().minusSeconds(1));
+        when(urlRepository.findById(shortCode)).thenReturn(Optional.of(expired));
+        assertTrue(urlService.getOriginal(shortCode).isEmpty());
+
+        when(urlRepository.insertIfAbsent(any(UrlEntity.class))).thenReturn(0, 1);
+        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.of(expired));
+        when(urlRepository.deleteExpired(eq(List.of(shortCode)), any())).thenReturn(1);
+        Instant expiresAt = Instant.now().plus(Duration.ofDays(90));
+
+        ResponseEntity<UrlEntity> response = urlService.createOrGet(originalUrl, expiresAt);
 
-            if (Character.isDigit(original)) {
-                assertEquals(original, actual, "Digits should not be changed");
-            }
+        assertEquals(201, response.getStatusCode().value());
+        assertNotEquals(shortCode, response.getBody().getShortCode());
+        assertEquals(expiresAt.truncatedTo(ChronoUnit.MILLIS), response.getBody().getExpiresAt());
+    }
+
+    @Test
+    @DisplayName("Expired mappings are purged one batch per statement and evicted from both caches")
+    void purgesExpiredInBatches() {
+        Instant now = Instant.now();
+        List<UrlEntity> first = List.of(new UrlEntity("Exp001", "http://example.com/1", now.minusSeconds(3)),
+                new UrlEntity("Exp002", "http://example.com/2", now.minusSeconds(2)));
+        List<UrlEntity> second = List.of(new UrlEntity("Exp003", "http://example.com/3", now.minusSeconds(1)));
+        when(urlRepository.findByExpiresAtLessThanEqualOrderByExpiresAt(eq(now), any())).thenReturn(first, second);
+        when(urlRepository.deleteExpired(anyCollection(), eq(now))).thenReturn(2, 1);
+        first.forEach(urlService::saveToCache);
 
-            if (Character.isLetter(original)){
-                assertEquals(Character.toLowerCase(original), Character.toLowerCase(actual), "Letter content should match (ignoring case)");
-            }
-        }
+        assertEquals(3, urlService.purgeExpired(now, 2));
+
+        verify(urlRepository, times(2)).deleteExpired(anyCollection(), eq(now));
+        assertNull(cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).get("Exp001"));
+        assertNull(cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT).get("http://example.com/2"));
+    }
+
+    @Test
+    @DisplayName("Created codes pass the short code filter until they are deleted")
+    void filterFollowsCreateAndDelete() {
+        shortCodeFilter.reset(0);
+        when(urlRepository.insertIfAbsent(any(UrlEntity.class))).thenReturn(1);
+        UrlEntity created = urlService.createOrGet(originalUrl).getBody();
+        assertTrue(shortCodeFilter.mightExist(created.getShortCode()));
+
+        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.of(created));
+        urlService.delete(originalUrl);
+
+        assertFalse(shortCodeFilter.mightExist(created.getShortCode()));
+    }
+
+    @Test
+    @DisplayName("Created, deleted and purged mappings are announced to the other instances")
+    void announcesChanges() {
+        when(urlRepository.insertIfAbsent(any(UrlEntity.class))).thenReturn(1);
+        UrlEntity created = urlService.createOrGet(originalUrl).getBody();
+        when(urlRepository.findAllByOriginalUrlIn(List.of("http://example.com/batch"))).thenReturn(List.of());
+        when(urlRepository.findAllById(any())).thenReturn(List.of());
+        urlService.createOrGetAll(List.of("http://example.com/batch"));
+        when(urlRepository.findByOriginalUrl(originalUrl)).thenReturn(Optional.of(created));
+        urlService.delete(originalUrl);
+        Instant now = Instant.now();
+        UrlEntity expired = new UrlEntity("Exp001", "http://example.com/expired", now.minusSeconds(1));
+        when(urlRepository.findByExpiresAtLessThanEqualOrderByExpiresAt(eq(now), any())).thenReturn(List.of(expired));
+        when(urlRepository.deleteExpired(anyCollection(), eq(now))).thenReturn(1);
+        urlService.purgeExpired(now, 10);
 
-        for (char c : result.toCharArray()) {
-            assertTrue(Character.isLetterOrDigit(c), "Should only contain letters and digits");
-        }
+        verify(invalidationBus).created(created);
+        verify(invalidationBus).created(argThat(urlEntity -> urlEntity.getOriginalUrl().equals("http://example.com/batch")));
+        verify(invalidationBus).deleted(created);
+        verify(invalidationBus).deleted(expired);
     }
 }
@@ -0,0 +1,58 @@
+package com.ddorokhov.origin;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class VirtualThreadPinningTest {
+
+    @Autowired
+    private UrlService urlService;
+
+    @Test
+    @DisplayName("Creates and coalesced lookups on virtual threads never pin their carrier")
+    void serviceDoesNotPin() throws Exception {
+        ConcurrentLinkedQueue<RecordedEvent> pinned = new ConcurrentLinkedQueue<>();
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", pinned::add);
+            recording.startAsync();
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 2000; i++) {
+                    String originalUrl = "http://virtual.example.com/" + (i % 50);
+                    String unknownCode = "Miss" + (i % 20);
+                    futures.add(executor.submit(() -> {
+                        UrlEntity urlEntity = urlService.createOrGet(originalUrl).getBody();
+                        urlService.getOriginal(urlEntity.getShortCode());
+                        urlService.getOriginal(unknownCode);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            }
+            // Events are delivered to the stream with a delay of up to a second
+            Thread.sleep(1500);
+        }
+
+        assertTrue(pinned.isEmpty(), () -> "Pinned carrier threads:\n" + pinned);
+    }
+}
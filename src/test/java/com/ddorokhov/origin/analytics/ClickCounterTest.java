@@ -0,0 +1,58 @@
+package com.ddorokhov.origin.analytics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClickCounterTest {
+
+    private final ClickCounter clickCounter = new ClickCounter();
+
+    @Test
+    @DisplayName("Drain returns the clicks since the previous drain")
+    void drainResets() {
+        clickCounter.record("a1B2c3");
+        clickCounter.record("a1B2c3");
+        clickCounter.record("Zx81Qa");
+
+        assertEquals(2, clickCounter.pending("a1B2c3"));
+        assertEquals(Map.of("a1B2c3", 2L, "Zx81Qa", 1L), clickCounter.drain());
+        assertEquals(0, clickCounter.pending("a1B2c3"));
+        assertTrue(clickCounter.drain().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Restored clicks are drained again")
+    void restore() {
+        clickCounter.record("a1B2c3");
+        Map<String, Long> batch = clickCounter.drain();
+        clickCounter.record("a1B2c3");
+
+        clickCounter.restore(batch);
+
+        assertEquals(Map.of("a1B2c3", 2L), clickCounter.drain());
+    }
+
+    @Test
+    @DisplayName("Concurrent clicks are all counted")
+    void concurrentClicks() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) clickCounter.record("a1B2c3");
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(Map.of("a1B2c3", 80_000L), clickCounter.drain());
+    }
+}
@@ -0,0 +1,71 @@
+package com.ddorokhov.origin.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClickFlusherTest {
+
+    private final ClickCounter clickCounter = new ClickCounter();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private ClickProperties properties;
+
+    @BeforeEach
+    void init() {
+        properties = new ClickProperties();
+        properties.setQueueCapacity(1);
+    }
+
+    private ClickFlusher flusher() {
+        return new ClickFlusher(clickCounter, jdbcTemplate, mock(PlatformTransactionManager.class), properties);
+    }
+
+    @Test
+    @DisplayName("A batch finding the queue full is retained in the counters")
+    void retainsOnFullQueue() {
+        ClickFlusher flusher = flusher();
+        clickCounter.record("a1B2c3");
+        flusher.flush();
+        clickCounter.record("Zx81Qa");
+
+        flusher.flush();
+
+        assertEquals(1, clickCounter.pending("Zx81Qa"));
+        assertEquals(0, clickCounter.getDroppedCount());
+    }
+
+    @Test
+    @DisplayName("A batch finding the queue full is dropped and counted under the drop policy")
+    void dropsOnFullQueue() {
+        properties.setOverflow(ClickProperties.OverflowPolicy.DROP);
+        ClickFlusher flusher = flusher();
+        clickCounter.record("a1B2c3");
+        flusher.flush();
+        clickCounter.record("Zx81Qa");
+        clickCounter.record("Zx81Qa");
+
+        flusher.flush();
+
+        assertEquals(0, clickCounter.pending("Zx81Qa"));
+        assertEquals(2, clickCounter.getDroppedCount());
+    }
+
+    @Test
+    @DisplayName("A failed write reports the batch as not written")
+    void failedWrite() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertFalse(flusher().write(Map.of("a1B2c3", 3L)));
+    }
+}
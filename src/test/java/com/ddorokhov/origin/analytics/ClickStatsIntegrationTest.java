@@ -0,0 +1,95 @@
+package com.ddorokhov.origin.analytics;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlService;
+import com.ddorokhov.origin.cache.HotKeyTracker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
+import static com.ddorokhov.origin.Constants.DOMAIN_SHORT;
+import static com.ddorokhov.origin.Constants.PATH_STATS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ClickStatsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UrlService urlService;
+
+    @Autowired
+    private ClickFlusher clickFlusher;
+
+    @Autowired
+    private UrlClickStatsRepository clickStatsRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private HotKeyTracker hotKeyTracker;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Redirects are counted, flushed to the stats table and served per link")
+    void redirectsAreCounted() throws Exception {
+        UrlEntity urlEntity = urlService.createOrGet("http://clicks.example.com").getBody();
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/" + urlEntity.getShortCode()).header("Host", DOMAIN_SHORT))
+                    .andExpect(status().isFound());
+        }
+        assertEquals(3, stats(urlEntity.getShortenedUrl()).getClicks());
+
+        clickFlusher.flush();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (clickStatsRepository.findById(urlEntity.getShortCode()).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(3, clickStatsRepository.findById(urlEntity.getShortCode()).orElseThrow().getClicks());
+        assertEquals(3, stats(urlEntity.getShortenedUrl()).getClicks());
+    }
+
+    @Test
+    @DisplayName("Reading stats neither caches the link nor counts it as a hot key")
+    void statsBypassRedirectCache() throws Exception {
+        UrlEntity urlEntity = urlService.createOrGet("http://clicks.example.com/stats-only").getBody();
+        Cache cache = cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL);
+        cache.evict(urlEntity.getShortCode());
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, stats(urlEntity.getShortenedUrl()).getClicks());
+        }
+
+        assertNull(cache.get(urlEntity.getShortCode()));
+        assertTrue(hotKeyTracker.topK().stream().noneMatch(hotKey -> hotKey.shortCode().equals(urlEntity.getShortCode())));
+    }
+
+    @Test
+    @DisplayName("Stats of an unknown link are not found")
+    void unknownLink() throws Exception {
+        mockMvc.perform(get(PATH_STATS).param("shortenedUrl", "http://short.ly/Unknwn"))
+                .andExpect(status().isNotFound());
+    }
+
+    private ClickStats stats(String shortenedUrl) throws Exception {
+        String json = mockMvc.perform(get(PATH_STATS).param("shortenedUrl", shortenedUrl))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(json, ClickStats.class);
+    }
+}
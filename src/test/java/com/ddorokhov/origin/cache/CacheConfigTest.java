@@ -0,0 +1,120 @@
+package com.ddorokhov.origin.cache;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static com.ddorokhov.origin.Constants.CACHE_ORIGINAL_TO_SHORT;
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheConfigTest {
+
+    private CacheManager cacheManager;
+    private HotKeyTracker hotKeyTracker;
+
+    @BeforeEach
+    void init() {
+        UrlCacheProperties properties = new UrlCacheProperties();
+        properties.getShortToOriginal().setMaximumSize(10);
+        properties.getShortToOriginal().setExpireAfterWrite(Duration.ofMinutes(10));
+        properties.getShortToOriginal().setNegativeTtl(Duration.ofSeconds(5));
+        properties.getHotKeys().setSampleRate(1);
+        hotKeyTracker = new HotKeyTracker(properties.getHotKeys());
+        cacheManager = new CacheConfig().cacheManager(properties, hotKeyTracker);
+    }
+
+    @Test
+    @DisplayName("Only the two configured caches exist")
+    void onlyConfiguredCachesExist() {
+        assertNotNull(cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL));
+        assertNotNull(cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT));
+        assertNull(cacheManager.getCache("urlEntity"));
+    }
+
+    @Test
+    @DisplayName("Cache is bounded by the configured maximum size")
+    void cacheIsBounded() {
+        Cache<Object, Object> cache = nativeCache(CACHE_SHORT_TO_ORIGINAL);
+        Policy.Eviction<Object, Object> eviction = cache.policy().eviction().orElseThrow();
+
+        assertEquals(10, eviction.getMaximum());
+        assertTrue(cache.policy().isRecordingStats());
+    }
+
+    @Test
+    @DisplayName("Cached misses expire after the negative TTL, mappings after the regular TTL")
+    void negativeEntriesUseShortTtl() {
+        org.springframework.cache.Cache cache = cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL);
+        cache.put("http://short.ly/miss", null);
+        cache.put("http://short.ly/hit", "mapping");
+
+        Policy.VarExpiration<Object, Object> expiration = nativeCache(CACHE_SHORT_TO_ORIGINAL).policy().expireVariably().orElseThrow();
+
+        long missTtl = expiration.getExpiresAfter("http://short.ly/miss", TimeUnit.SECONDS).orElseThrow();
+        long hitTtl = expiration.getExpiresAfter("http://short.ly/hit", TimeUnit.SECONDS).orElseThrow();
+
+        assertTrue(missTtl <= 5);
+        assertTrue(hitTtl > 5 * 60);
+    }
+
+    @Test
+    @DisplayName("An expiring mapping leaves the cache when the link expires")
+    void expiringEntriesLeaveWithTheLink() {
+        org.springframework.cache.Cache cache = cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL);
+        cache.put("soon", new UrlEntity("soon", "https://example.com/soon", Instant.now().plusSeconds(30)));
+        cache.put("later", new UrlEntity("later", "https://example.com/later", Instant.now().plus(Duration.ofDays(1))));
+
+        Policy.VarExpiration<Object, Object> expiration = nativeCache(CACHE_SHORT_TO_ORIGINAL).policy().expireVariably().orElseThrow();
+
+        assertTrue(expiration.getExpiresAfter("soon", TimeUnit.SECONDS).orElseThrow() <= 30);
+        assertTrue(expiration.getExpiresAfter("later", TimeUnit.SECONDS).orElseThrow() <= 10 * 60);
+    }
+
+    @Test
+    @DisplayName("Caches coalesce concurrent misses")
+    void cachesAreSingleFlight() {
+        assertInstanceOf(SingleFlightCache.class, cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL));
+        assertInstanceOf(SingleFlightCache.class, cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT));
+    }
+
+    @Test
+    @DisplayName("Mappings of the hottest short codes are pinned in the redirect cache and unpinned once they cool down")
+    void hotKeysArePinned() {
+        Cache<Object, Object> cache = nativeCache(CACHE_SHORT_TO_ORIGINAL);
+        Policy.Eviction<Object, Object> eviction = cache.policy().eviction().orElseThrow();
+        cache.put("hot", new UrlEntity("hot", "https://example.com/hot"));
+        for (int i = 0; i < 100; i++) {
+            hotKeyTracker.record("hot");
+        }
+
+        hotKeyTracker.decay();
+        for (int i = 0; i < 1000; i++) {
+            cache.put("cold" + i, new UrlEntity("cold" + i, "https://example.com/cold"));
+        }
+        cache.cleanUp();
+
+        assertEquals(0, eviction.weightOf("hot").orElseThrow());
+        assertNotNull(cache.getIfPresent("hot"));
+        assertEquals(11, cache.estimatedSize());
+
+        for (int i = 0; i < 7; i++) {
+            hotKeyTracker.decay();
+        }
+
+        assertEquals(1, eviction.weightOf("hot").orElseThrow());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<Object, Object> nativeCache(String name) {
+        return (Cache<Object, Object>) cacheManager.getCache(name).getNativeCache();
+    }
+}
@@ -0,0 +1,87 @@
+package com.ddorokhov.origin.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CuckooFilterTest {
+
+    @Test
+    @DisplayName("Added entries are always found and unknown ones rarely")
+    void noFalseNegatives() {
+        CuckooFilter filter = new CuckooFilter(100_000);
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.add("code" + i));
+        }
+
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain("code" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other" + i)) falsePositives++;
+        }
+        assertTrue(falsePositives < 100, "false positives: " + falsePositives);
+        assertEquals(100_000, filter.size());
+    }
+
+    @Test
+    @DisplayName("Removed entries are no longer found, other entries are kept")
+    void remove() {
+        CuckooFilter filter = new CuckooFilter(1000);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("code" + i);
+        }
+
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(filter.remove("code" + i));
+        }
+
+        for (int i = 1; i < 1000; i += 2) {
+            assertTrue(filter.mightContain("code" + i));
+        }
+        assertEquals(500, filter.size());
+        assertFalse(filter.mightContain("code0"));
+    }
+
+    @Test
+    @DisplayName("An entry added twice is found until removed twice")
+    void duplicates() {
+        CuckooFilter filter = new CuckooFilter(10);
+        filter.add("a1B2c3");
+        filter.add("a1B2c3");
+
+        filter.remove("a1B2c3");
+        assertTrue(filter.mightContain("a1B2c3"));
+        filter.remove("a1B2c3");
+        assertFalse(filter.mightContain("a1B2c3"));
+    }
+
+    @Test
+    @DisplayName("A full filter refuses new entries but still finds all accepted ones")
+    void full() {
+        CuckooFilter filter = new CuckooFilter(100);
+        int accepted = 0;
+        while (filter.add("code" + accepted)) {
+            accepted++;
+        }
+
+        assertTrue(accepted >= 100);
+        assertTrue(accepted <= filter.capacity() + 1, "capacity plus the displaced entry");
+        for (int i = 0; i < accepted; i++) {
+            assertTrue(filter.mightContain("code" + i), "code" + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Bucket check matches a fingerprint in any of the four slots")
+    void bucketContains() {
+        long bucket = 0x0004_0003_0002_0001L;
+        for (int fingerprint = 1; fingerprint <= 4; fingerprint++) {
+            assertTrue(CuckooFilter.bucketContains(bucket, fingerprint));
+        }
+        assertFalse(CuckooFilter.bucketContains(bucket, 5));
+        assertFalse(CuckooFilter.bucketContains(0L, 0x8001));
+    }
+}
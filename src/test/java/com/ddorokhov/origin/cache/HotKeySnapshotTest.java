@@ -0,0 +1,168 @@
+package com.ddorokhov.origin.cache;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.store.LogUrlStore;
+import com.ddorokhov.origin.store.StoreProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.Cache;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeySnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private UrlCacheProperties properties;
+    private LogUrlStore store;
+
+    @BeforeEach
+    void init() throws IOException {
+        properties = new UrlCacheProperties();
+        properties.getShortToOriginal().setMaximumSize(1000);
+        properties.getSnapshot().setPath(directory.resolve("hot-keys.snapshot").toString());
+        StoreProperties.Log storeProperties = new StoreProperties.Log();
+        storeProperties.setDirectory(directory.resolve("store").toString());
+        store = LogUrlStore.open(storeProperties);
+    }
+
+    @AfterEach
+    void close() {
+        store.close();
+    }
+
+    private void put(Cache cache, UrlEntity urlEntity) {
+        store.insertIfAbsent(urlEntity);
+        cache.put(urlEntity.getShortCode(), urlEntity);
+    }
+
+    private HotKeySnapshot snapshot(Cache cache) {
+        return new HotKeySnapshot(properties.getSnapshot(), cache, store);
+    }
+
+    private Cache newCache() {
+        return new CacheConfig().cacheManager(properties, new HotKeyTracker(properties.getHotKeys())).getCache(CACHE_SHORT_TO_ORIGINAL);
+    }
+
+    private HotKeySnapshot started(Cache cache) {
+        HotKeySnapshot snapshot = snapshot(cache);
+        snapshot.start();
+        return snapshot;
+    }
+
+    @Test
+    @DisplayName("A new instance starts with the hottest mappings of the last one, but no cached misses")
+    void restoresHottestMappings() {
+        Cache cache = newCache();
+        for (int i = 0; i < 100; i++) {
+            put(cache, new UrlEntity("code" + i, "https://example.com/" + i));
+        }
+        cache.put("missing", null);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 10; i++) cache.get("code" + i);
+            // Reads are recorded through a lossy buffer; draining it each round keeps the ranking exact
+            ((com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache()).cleanUp();
+        }
+        properties.getSnapshot().setMaxEntries(10);
+        assertEquals(10, snapshot(cache).write());
+
+        Cache restored = newCache();
+        started(restored);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("https://example.com/" + i, ((UrlEntity) restored.get("code" + i).get()).getOriginalUrl());
+        }
+        assertNull(restored.get("code50"));
+        assertNull(restored.get("missing"));
+    }
+
+    @Test
+    @DisplayName("Loading stops at the memory budget and keeps the records before a cut off one")
+    void boundsAndToleratesDamage() throws IOException {
+        Cache cache = newCache();
+        for (int i = 0; i < 100; i++) {
+            put(cache, new UrlEntity("code" + i, "https://example.com/" + i));
+        }
+        Path file = Path.of(properties.getSnapshot().getPath());
+        assertEquals(100, snapshot(cache).write());
+
+        properties.getSnapshot().setMaxLoadSize(DataSize.ofBytes(300));
+        Cache bounded = newCache();
+        started(bounded);
+        long boundedSize = ((com.github.benmanes.caffeine.cache.Cache<?, ?>) bounded.getNativeCache()).estimatedSize();
+        assertTrue(boundedSize > 0 && boundedSize < 100, "Loaded " + boundedSize);
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        properties.getSnapshot().setMaxLoadSize(DataSize.ofMegabytes(1));
+        Cache truncated = newCache();
+        started(truncated);
+        long truncatedSize = ((com.github.benmanes.caffeine.cache.Cache<?, ?>) truncated.getNativeCache()).estimatedSize();
+        assertTrue(truncatedSize > 0 && truncatedSize < 100, "Loaded " + truncatedSize);
+    }
+
+    @Test
+    @DisplayName("Links that expired since the snapshot was written are not loaded")
+    void skipsExpiredLinks() {
+        Cache cache = newCache();
+        put(cache, new UrlEntity("live01", "https://example.com/live", Instant.now().plus(Duration.ofDays(1))));
+        UrlEntity gone = new UrlEntity("gone01", "https://example.com/gone", Instant.now().plus(Duration.ofDays(1)));
+        put(cache, gone);
+        // Expires between writing and loading the snapshot
+        gone.setExpiresAt(Instant.now().minusSeconds(1));
+        assertEquals(2, snapshot(cache).write());
+
+        Cache restored = newCache();
+        started(restored);
+
+        assertNotNull(((UrlEntity) restored.get("live01").get()).getExpiresAt());
+        assertNull(restored.get("gone01"));
+    }
+
+    @Test
+    @DisplayName("Mappings deleted since the snapshot was written are not loaded")
+    void skipsDeletedMappings() {
+        properties.getShortToOriginal().setMaximumSize(2000);
+        Cache cache = newCache();
+        for (int i = 0; i < HotKeySnapshot.CHECK_PAGE_SIZE + 10; i++) {
+            put(cache, new UrlEntity("code" + i, "https://example.com/" + i));
+        }
+        properties.getSnapshot().setMaxEntries(HotKeySnapshot.CHECK_PAGE_SIZE + 10);
+        assertEquals(HotKeySnapshot.CHECK_PAGE_SIZE + 10, snapshot(cache).write());
+        for (int i = 0; i < HotKeySnapshot.CHECK_PAGE_SIZE + 10; i += 2) {
+            store.delete(new UrlEntity("code" + i, "https://example.com/" + i));
+        }
+
+        Cache restored = newCache();
+        started(restored);
+
+        for (int i = 0; i < HotKeySnapshot.CHECK_PAGE_SIZE + 10; i++) {
+            if (i % 2 == 0) {
+                assertNull(restored.get("code" + i));
+            } else {
+                assertEquals("https://example.com/" + i, ((UrlEntity) restored.get("code" + i).get()).getOriginalUrl());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A missing snapshot leaves the cache cold")
+    void missingSnapshot() {
+        Cache cache = newCache();
+        started(cache);
+        assertEquals(0, ((com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache()).estimatedSize());
+    }
+}
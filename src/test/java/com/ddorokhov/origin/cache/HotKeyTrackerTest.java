@@ -0,0 +1,172 @@
+package com.ddorokhov.origin.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyTrackerTest {
+
+    private HotKeyTracker tracker(int topK) {
+        UrlCacheProperties.HotKeys properties = new UrlCacheProperties.HotKeys();
+        properties.setTopK(topK);
+        properties.setSketchWidth(1024);
+        properties.setSampleRate(1);
+        return new HotKeyTracker(properties);
+    }
+
+    private void record(HotKeyTracker tracker, String shortCode, int times) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(shortCode);
+        }
+    }
+
+    private List<String> codes(List<HotKey> hotKeys) {
+        return hotKeys.stream().map(HotKey::shortCode).toList();
+    }
+
+    @Test
+    @DisplayName("Finds the most requested codes among many rarely requested ones, never undercounting them")
+    void findsHeavyHitters() {
+        HotKeyTracker tracker = tracker(5);
+        for (int round = 0; round < 100; round++) {
+            for (int hot = 0; hot < 5; hot++) {
+                record(tracker, "hot" + hot, 10 + hot);
+            }
+            for (int cold = 0; cold < 50; cold++) {
+                tracker.record("cold" + (round * 50 + cold));
+            }
+        }
+
+        List<HotKey> hotKeys = tracker.topK();
+
+        assertEquals(List.of("hot4", "hot3", "hot2", "hot1", "hot0"), codes(hotKeys));
+        for (HotKey hotKey : hotKeys) {
+            int expected = 100 * (10 + hotKey.shortCode().charAt(3) - '0');
+            assertTrue(hotKey.count() >= expected && hotKey.count() < expected * 1.1, hotKey.toString());
+            assertTrue(hotKey.ratePerSecond() > 0);
+            assertFalse(hotKey.pinned());
+        }
+    }
+
+    @Test
+    @DisplayName("A code becoming hot later displaces the coldest tracked code")
+    void newHotCodeDisplacesColdest() {
+        HotKeyTracker tracker = tracker(3);
+        record(tracker, "a", 30);
+        record(tracker, "b", 20);
+        record(tracker, "c", 10);
+        record(tracker, "d", 5);
+        assertEquals(List.of("a", "b", "c"), codes(tracker.topK()));
+
+        record(tracker, "d", 20);
+        record(tracker, "c", 1);
+
+        assertEquals(List.of("a", "d", "b"), codes(tracker.topK()));
+    }
+
+    @Test
+    @DisplayName("Decay halves counts, drops faded codes and reports the codes pinned and unpinned")
+    void decayPinsTrackedCodes() {
+        HotKeyTracker tracker = tracker(2);
+        List<Set<String>> changes = new ArrayList<>();
+        tracker.setPinListener(changes::add);
+        record(tracker, "a", 8);
+        record(tracker, "b", 1);
+
+        tracker.decay();
+
+        assertEquals(List.of(Set.of("a")), changes);
+        assertTrue(tracker.isPinned("a"));
+        assertFalse(tracker.isPinned("b"));
+        HotKey hotKey = tracker.topK().get(0);
+        assertEquals("a", hotKey.shortCode());
+        assertEquals(4, hotKey.count());
+        assertTrue(hotKey.pinned());
+
+        record(tracker, "c", 20);
+        tracker.decay();
+        tracker.decay();
+        tracker.decay();
+
+        assertEquals(List.of(Set.of("a"), Set.of("c"), Set.of("a")), changes);
+        assertEquals(List.of("c"), codes(tracker.topK()));
+        assertFalse(tracker.isPinned("a"));
+    }
+
+    @Test
+    @DisplayName("A code entering the heap is pinned at the next refresh, before the next halving")
+    void refreshPinsNewCodes() {
+        HotKeyTracker tracker = tracker(2);
+        List<Set<String>> changes = new ArrayList<>();
+        tracker.setPinListener(changes::add);
+        record(tracker, "a", 8);
+
+        tracker.refreshPinned();
+        tracker.refreshPinned();
+
+        assertEquals(List.of(Set.of("a")), changes);
+        assertTrue(tracker.isPinned("a"));
+        assertEquals(8, tracker.topK().get(0).count());
+    }
+
+    @Test
+    @DisplayName("Sampled lookups are counted with the sample rate as weight")
+    void sampledCountsAreUnbiased() {
+        UrlCacheProperties.HotKeys properties = new UrlCacheProperties.HotKeys();
+        properties.setSampleRate(16);
+        HotKeyTracker tracker = new HotKeyTracker(properties);
+        record(tracker, "viral", 16_000);
+
+        HotKey hotKey = tracker.topK().get(0);
+
+        assertEquals("viral", hotKey.shortCode());
+        assertEquals(0, hotKey.count() % 16);
+        assertTrue(hotKey.count() > 14_000 && hotKey.count() < 18_000, hotKey.toString());
+    }
+
+    @Test
+    @DisplayName("Nothing is tracked or pinned when disabled")
+    void disabled() {
+        UrlCacheProperties.HotKeys properties = new UrlCacheProperties.HotKeys();
+        properties.setEnabled(false);
+        HotKeyTracker tracker = new HotKeyTracker(properties);
+        record(tracker, "a", 10);
+        tracker.decay();
+
+        assertTrue(tracker.topK().isEmpty());
+        assertFalse(tracker.isPinned("a"));
+
+        properties.setEnabled(true);
+        properties.setPin(false);
+        properties.setSampleRate(1);
+        tracker = new HotKeyTracker(properties);
+        record(tracker, "a", 10);
+        tracker.decay();
+
+        assertEquals(List.of("a"), codes(tracker.topK()));
+        assertFalse(tracker.isPinned("a"));
+    }
+
+    @Test
+    @DisplayName("Invalid sizes are rejected")
+    void rejectsInvalidProperties() {
+        UrlCacheProperties.HotKeys properties = new UrlCacheProperties.HotKeys();
+        properties.setSketchWidth(1000);
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker(properties));
+        properties.setSketchWidth(1024);
+        properties.setTopK(0);
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker(properties));
+        properties.setTopK(1);
+        properties.setSampleRate(0);
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker(properties));
+        properties.setSampleRate(1);
+        properties.setHalfLife(Duration.ZERO);
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker(properties));
+    }
+}
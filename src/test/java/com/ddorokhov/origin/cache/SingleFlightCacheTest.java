@@ -0,0 +1,148 @@
+package com.ddorokhov.origin.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightCacheTest {
+    private static final int CALLERS = 16;
+
+    private SingleFlightCache cache;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void init() {
+        cache = new SingleFlightCache(new ConcurrentMapCache("test"), Duration.ofSeconds(5).toNanos());
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Concurrent misses for one key share a single load")
+    void concurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = submitAll(() -> cache.get("key", () -> {
+            loads.incrementAndGet();
+            release.await();
+            return "value";
+        }));
+        awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("value", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getLoadCount());
+        assertEquals(CALLERS - 1, cache.getCoalescedLoadCount());
+        assertEquals("value", cache.get("key").get());
+    }
+
+    @Test
+    @DisplayName("A failing load is propagated to every coalesced caller and not cached")
+    void failurePropagatesToAllCallers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("db down");
+
+        List<Future<String>> results = submitAll(() -> cache.get("key", () -> {
+            release.await();
+            throw failure;
+        }));
+        awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            Exception ex = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            Cache.ValueRetrievalException retrieval = assertInstanceOf(Cache.ValueRetrievalException.class, ex.getCause());
+            assertSame(failure, retrieval.getCause());
+        }
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    @DisplayName("Coalesced callers give up after their own timeout")
+    void coalescedCallerTimesOut() throws Exception {
+        cache = new SingleFlightCache(new ConcurrentMapCache("test"), Duration.ofMillis(50).toNanos());
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> cache.get("key", () -> {
+            release.await();
+            return "value";
+        }));
+        while (cache.getLoadCount() == 0) Thread.onSpinWait();
+
+        Cache.ValueRetrievalException ex = assertThrows(Cache.ValueRetrievalException.class,
+                () -> cache.get("key", () -> "other"));
+        assertInstanceOf(SingleFlightTimeoutException.class, ex.getCause());
+        assertEquals(1, cache.getTimeoutCount());
+
+        release.countDown();
+        assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Cached misses are served without loading")
+    void cachedNullIsHit() {
+        cache.put("key", null);
+
+        assertNull(cache.get("key", () -> fail("should not load")));
+        assertEquals(0, cache.getLoadCount());
+    }
+
+    @Test
+    @DisplayName("A load overtaken by an eviction returns its value without caching it")
+    void evictionDuringLoadWins() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> cache.get("key", () -> {
+            loading.countDown();
+            release.await();
+            return "deleted";
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        cache.evict("key");
+        release.countDown();
+
+        assertEquals("deleted", leader.get(5, TimeUnit.SECONDS));
+        assertNull(cache.get("key"));
+        assertEquals("fresh", cache.get("key", () -> "fresh"));
+        assertEquals("fresh", cache.get("key").get());
+    }
+
+    private List<Future<String>> submitAll(java.util.concurrent.Callable<String> call) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(call));
+        }
+        return results;
+    }
+
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.getCoalescedLoadCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.ddorokhov.origin.invalidation;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.cache.CacheConfig;
+import com.ddorokhov.origin.cache.HotKeyTracker;
+import com.ddorokhov.origin.cache.ShortCodeFilter;
+import com.ddorokhov.origin.cache.ShortCodeFilterLoader;
+import com.ddorokhov.origin.cache.UrlCacheProperties;
+import com.ddorokhov.origin.store.UrlStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.ddorokhov.origin.Constants.CACHE_ORIGINAL_TO_SHORT;
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class InvalidationBusTest {
+
+    private InvalidationProperties properties;
+    private final List<InvalidationBus> buses = new ArrayList<>();
+    private final List<String> storedCodes = new ArrayList<>();
+    private final CountDownLatch scanReleased = new CountDownLatch(1);
+
+    @BeforeEach
+    void init() {
+        properties = new InvalidationProperties();
+        // Flushed by the tests themselves
+        properties.setBatchWindow(Duration.ofHours(1));
+        properties.getLoopback().setChannel(UUID.randomUUID().toString());
+    }
+
+    @AfterEach
+    void stop() {
+        buses.forEach(InvalidationBus::stop);
+    }
+
+    private Node node(InvalidationTransport transport) {
+        CacheManager cacheManager = new CacheConfig().cacheManager(new UrlCacheProperties(), new HotKeyTracker(new UrlCacheProperties.HotKeys()));
+        UrlCacheProperties.Filter filterProperties = new UrlCacheProperties.Filter();
+        filterProperties.setEnabled(true);
+        ShortCodeFilter filter = new ShortCodeFilter(filterProperties);
+        filter.reset(0);
+        UrlStore urlStore = mock(UrlStore.class);
+        doAnswer(invocation -> {
+            scanReleased.await();
+            storedCodes.forEach(invocation.<Consumer<String>>getArgument(0));
+            return null;
+        }).when(urlStore).forEachShortCode(any());
+        InvalidationBus bus = new InvalidationBus(properties, transport, cacheManager, filter,
+                new ShortCodeFilterLoader(filter, urlStore), new SimpleMeterRegistry());
+        bus.start();
+        buses.add(bus);
+        return new Node(bus, cacheManager, filter);
+    }
+
+    private Node loopbackNode() {
+        return node(new LoopbackTransport(properties.getLoopback().getChannel()));
+    }
+
+    @Test
+    @DisplayName("The short code filter is refused without a transport to learn codes created elsewhere")
+    void refusesFilterWithoutTransport() {
+        UrlCacheProperties cacheProperties = new UrlCacheProperties();
+        cacheProperties.getShortCodeFilter().setEnabled(true);
+
+        assertThrows(IllegalStateException.class, () -> new InvalidationConfig().invalidationBus(properties, cacheProperties,
+                mock(CacheManager.class), mock(ShortCodeFilter.class), mock(ShortCodeFilterLoader.class), new SimpleMeterRegistry()));
+    }
+
+    @Test
+    @DisplayName("A peer learns created codes and drops cached entries of created and deleted mappings")
+    void appliesPeerChanges() {
+        Node a = loopbackNode();
+        Node b = loopbackNode();
+        UrlEntity created = new UrlEntity("New001", "https://example.com/new");
+        UrlEntity deleted = new UrlEntity("Old001", "https://example.com/old");
+        b.cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT).put(created.getOriginalUrl(), null);
+        b.cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).put(deleted.getShortCode(), deleted);
+        b.cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT).put(deleted.getOriginalUrl(), deleted);
+        assertFalse(b.filter.mightExist(created.getShortCode()));
+
+        a.bus.created(created);
+        a.bus.deleted(deleted);
+        a.bus.created(created);
+        assertEquals(2, a.bus.flush());
+
+        assertTrue(b.filter.mightExist(created.getShortCode()));
+        assertNull(b.cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT).get(created.getOriginalUrl()));
+        assertNull(b.cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).get(deleted.getShortCode()));
+        assertNull(b.cacheManager.getCache(CACHE_ORIGINAL_TO_SHORT).get(deleted.getOriginalUrl()));
+        assertFalse(a.filter.mightExist(created.getShortCode()));
+    }
+
+    @Test
+    @DisplayName("A large batch is split into messages within the size limit")
+    void splitsLargeBatches() throws IOException {
+        properties.setMaxMessageSize(DataSize.ofBytes(200));
+        List<byte[]> sent = new ArrayList<>();
+        Node a = node(new RecordingTransport(sent));
+        for (int i = 0; i < 100; i++) {
+            a.bus.created(new UrlEntity("Code%02d".formatted(i), "https://example.com/page/" + i));
+        }
+
+        assertEquals(100, a.bus.flush());
+
+        assertTrue(sent.size() > 1);
+        Set<String> codes = new HashSet<>();
+        long sequence = 0;
+        for (byte[] bytes : sent) {
+            assertTrue(bytes.length <= 200, "Message of " + bytes.length + " bytes");
+            InvalidationMessage message = InvalidationMessage.decode(bytes);
+            assertEquals(++sequence, message.sequence());
+            message.invalidations().forEach(invalidation -> codes.add(invalidation.shortCode()));
+        }
+        assertEquals(100, codes.size());
+    }
+
+    @Test
+    @DisplayName("A missed message clears the caches and rebuilds the filter, a heartbeat does not")
+    void detectsLostMessages() throws InterruptedException {
+        Node b = node(new RecordingTransport(new ArrayList<>()));
+        UrlEntity cached = new UrlEntity("Hot001", "https://example.com/hot");
+        b.cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).put(cached.getShortCode(), cached);
+        List<Invalidation> one = List.of(Invalidation.created(new UrlEntity("New001", "https://example.com/1")));
+
+        b.bus.receive(new InvalidationMessage(42, 1, one).encode());
+        b.bus.receive(new InvalidationMessage(42, 1, List.of()).encode());
+        b.bus.receive(new InvalidationMessage(42, 2, one).encode());
+        assertNotNull(b.cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).get(cached.getShortCode()));
+        assertFalse(b.filter.mightExist("Unknwn"));
+
+        storedCodes.add("Lost01");
+        b.bus.receive(new InvalidationMessage(42, 3, List.of()).encode());
+
+        assertNull(b.cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).get(cached.getShortCode()));
+        assertTrue(b.filter.mightExist("Unknwn"));
+        // Created while the store is scanned
+        b.filter.add("New002");
+        scanReleased.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (b.filter.mightExist("Unknwn")) {
+            assertTrue(System.nanoTime() < deadline, "Filter not rebuilt within 5s");
+            Thread.sleep(10);
+        }
+        assertTrue(b.filter.mightExist("Lost01"));
+        assertTrue(b.filter.mightExist("New002"));
+    }
+
+    @Test
+    @DisplayName("Without a transport nothing is collected or sent")
+    void disabled() {
+        Node a = node(null);
+        a.bus.created(new UrlEntity("New001", "https://example.com/new"));
+        assertEquals(0, a.bus.flush());
+    }
+
+    private record Node(InvalidationBus bus, CacheManager cacheManager, ShortCodeFilter filter) {
+    }
+
+    private record RecordingTransport(List<byte[]> sent) implements InvalidationTransport {
+        @Override
+        public void start(Consumer<byte[]> receiver) {
+        }
+
+        @Override
+        public void send(byte[] message) {
+            sent.add(message);
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.ddorokhov.origin.invalidation;
+
+import com.ddorokhov.origin.OriginApplication;
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two instances sharing the database, each with its own caches and short code filter.
+ */
+class InvalidationIntegrationTest {
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    private UrlService start(String channel) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(OriginApplication.class)
+                .run("--server.port=0", "--origin.invalidation.transport=loopback", "--origin.cache.short-code-filter.enabled=true",
+                        "--origin.invalidation.loopback.channel=" + channel);
+        contexts.add(context);
+        return context.getBean(UrlService.class);
+    }
+
+    @Test
+    @DisplayName("A link created on one instance resolves on the other, and stops resolving once deleted")
+    void peersFollowCreateAndDelete() throws InterruptedException {
+        String channel = UUID.randomUUID().toString();
+        UrlService first = start(channel);
+        UrlService second = start(channel);
+        String originalUrl = "https://peers.example.com/" + channel;
+
+        UrlEntity created = first.createOrGet(originalUrl).getBody();
+        // Rejected by the second instance's filter until the create arrives
+        await(() -> second.getOriginal(created.getShortCode()).isPresent());
+        assertEquals(originalUrl, second.getOriginal(created.getShortCode()).orElseThrow().getOriginalUrl());
+
+        first.delete(originalUrl);
+        // Cached by the second instance until the delete arrives
+        await(() -> second.getOriginal(created.getShortCode()).isEmpty());
+        assertTrue(second.get(originalUrl).isEmpty());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met within 5s");
+            Thread.sleep(10);
+        }
+    }
+}
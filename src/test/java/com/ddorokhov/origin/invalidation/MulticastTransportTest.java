@@ -0,0 +1,56 @@
+package com.ddorokhov.origin.invalidation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MulticastTransportTest {
+
+    private final List<MulticastTransport> transports = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        transports.forEach(MulticastTransport::stop);
+    }
+
+    private MulticastTransport started(InvalidationProperties.Multicast properties, BlockingQueue<byte[]> received) throws IOException {
+        MulticastTransport transport = new MulticastTransport(properties);
+        transport.start(received::add);
+        transports.add(transport);
+        return transport;
+    }
+
+    @Test
+    @DisplayName("Instances sharing a host and group receive every message, their own included")
+    void deliversToAllMembers() throws Exception {
+        InvalidationProperties.Multicast properties = new InvalidationProperties.Multicast();
+        properties.setPort(ThreadLocalRandom.current().nextInt(40_000, 50_000));
+        BlockingQueue<byte[]> first = new LinkedBlockingQueue<>();
+        BlockingQueue<byte[]> second = new LinkedBlockingQueue<>();
+        MulticastTransport sender = started(properties, first);
+        started(properties, second);
+
+        sender.send(new byte[]{1, 2, 3});
+
+        assertArrayEquals(new byte[]{1, 2, 3}, second.poll(5, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[]{1, 2, 3}, first.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("A unicast group address is rejected")
+    void rejectsUnicastGroup() {
+        InvalidationProperties.Multicast properties = new InvalidationProperties.Multicast();
+        properties.setGroup("127.0.0.1");
+        assertThrows(IllegalArgumentException.class, () -> started(properties, new LinkedBlockingQueue<>()));
+    }
+}
@@ -0,0 +1,88 @@
+package com.ddorokhov.origin.metrics;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static com.ddorokhov.origin.Constants.DOMAIN_SHORT;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UrlService urlService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Service timers include cache hits")
+    void serviceTimerWrapsCache() {
+        UrlEntity urlEntity = urlService.createOrGet("http://metrics.example.com/timer").getBody();
+        long before = getOriginalCount();
+
+        for (int i = 0; i < 3; i++) {
+            urlService.getOriginal(urlEntity.getShortCode());
+        }
+
+        assertEquals(before + 3, getOriginalCount());
+    }
+
+    @Test
+    @DisplayName("Service, redirect, cache and repository metrics are exposed in Prometheus format")
+    void prometheusEndpoint() throws Exception {
+        UrlEntity urlEntity = urlService.createOrGet("http://metrics.example.com/scrape").getBody();
+        mockMvc.perform(get("/" + urlEntity.getShortCode()).header("Host", DOMAIN_SHORT))
+                .andExpect(status().isFound());
+        urlService.get("http://metrics.example.com/unknown");
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.contains("origin_url_service_seconds_bucket{"), "service histogram");
+        assertTrue(scrape.contains("origin_redirect_seconds_bucket{"), "redirect histogram");
+        assertTrue(scrape.contains("origin_shortcode_collisions_total"), "collision counter");
+        assertTrue(scrape.contains("cache_gets_total{cache=\"shortToOriginal\""), "cache hit/miss counters");
+        assertTrue(scrape.contains("cache_singleflight_loads_total{cache=\"originalToShort\""), "single-flight counters");
+        assertTrue(scrape.contains("spring_data_repository_invocations_seconds_bucket{"), "repository histogram");
+    }
+
+    @Test
+    @DisplayName("The most redirected short codes are served by the hot keys endpoint")
+    void hotKeysEndpoint() throws Exception {
+        UrlEntity urlEntity = urlService.createOrGet("http://metrics.example.com/viral").getBody();
+        for (int i = 0; i < 200; i++) {
+            mockMvc.perform(get("/" + urlEntity.getShortCode()).header("Host", DOMAIN_SHORT))
+                    .andExpect(status().isFound());
+        }
+
+        String hotKeys = mockMvc.perform(get("/actuator/hotkeys"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(hotKeys.contains("{\"shortCode\":\"" + urlEntity.getShortCode() + "\",\"count\":"), hotKeys);
+        assertTrue(hotKeys.contains("\"ratePerSecond\":"), hotKeys);
+    }
+
+    private long getOriginalCount() {
+        Timer timer = meterRegistry.find("origin.url.service").tag("method", "getOriginal").timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,57 @@
+package com.ddorokhov.origin.migration;
+
+import com.ddorokhov.origin.UrlHasher;
+import com.ddorokhov.origin.UrlRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class OriginalUrlHashMigrationTest {
+
+    @Autowired
+    private OriginalUrlHashMigration migration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UrlRepository urlRepository;
+
+    @Test
+    @DisplayName("Backfills hashes of legacy rows so they are found by original URL")
+    void backfillsLegacyRows() {
+        int rows = OriginalUrlHashMigration.PAGE_SIZE + 5;
+        for (int i = 0; i < rows; i++) {
+            jdbcTemplate.update("INSERT INTO url_entity (short_code, original_url) VALUES (?, ?)",
+                    "legacy" + i, "http://legacy.example.com/" + i);
+        }
+        assertTrue(urlRepository.findByOriginalUrl("http://legacy.example.com/7").isEmpty());
+
+        assertEquals(rows, migration.backfill());
+
+        assertEquals("http://short.ly/legacy7", urlRepository.findByOriginalUrl("http://legacy.example.com/7").orElseThrow().getShortenedUrl());
+        assertEquals(0, migration.backfill());
+    }
+
+    @Test
+    @DisplayName("Rehashes rows stored with an outdated hash, up to the last short code")
+    void rehashesOutdatedHashes() {
+        byte[] outdated = new byte[UrlHasher.HASH_BYTES];
+        for (int i = 0; i < 3; i++) {
+            outdated[0] = (byte) i;
+            jdbcTemplate.update("INSERT INTO url_entity (short_code, original_url, original_url_hash) VALUES (?, ?, ?)",
+                    "zzzzzzz" + i, "http://rehash.example.com/" + i, outdated);
+        }
+        assertTrue(urlRepository.findByOriginalUrl("http://rehash.example.com/1").isEmpty());
+
+        assertEquals(3, migration.rehash());
+
+        assertEquals("http://short.ly/zzzzzzz1", urlRepository.findByOriginalUrl("http://rehash.example.com/1").orElseThrow().getShortenedUrl());
+        assertEquals(0, migration.rehash());
+    }
+}
@@ -0,0 +1,65 @@
+package com.ddorokhov.origin.ratelimit;
+
+import com.ddorokhov.origin.UrlController;
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlService;
+import com.ddorokhov.origin.analytics.ClickCounter;
+import com.ddorokhov.origin.redirect.RedirectPolicyConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Optional;
+
+import static com.ddorokhov.origin.Constants.PATH_SHORTEN;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(value = UrlController.class, properties = {
+        "origin.rate-limit.enabled=true",
+        "origin.rate-limit.burst=2",
+        "origin.rate-limit.requests-per-second=0.1",
+        "origin.rate-limit.client-header=X-Api-Key"})
+@Import({SimpleMeterRegistry.class, RedirectPolicyConfig.class})
+class RateLimitInterceptorTest {
+    private static final String URL = "http://example.com";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private UrlService urlService;
+
+    @MockitoBean
+    private ClickCounter clickCounter;
+
+    @Test
+    @DisplayName("Creates beyond the burst get 429 with Retry-After; lookups and other clients are not limited")
+    void rejectsCreatesBeyondBurst() throws Exception {
+        when(urlService.createOrGet(anyString(), any())).thenReturn(ResponseEntity.ok(new UrlEntity("a1B2c3", URL)));
+        when(urlService.get(URL)).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post(PATH_SHORTEN).param("originalUrl", URL)).andExpect(status().isOk());
+        }
+        mockMvc.perform(post(PATH_SHORTEN).param("originalUrl", URL))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"));
+
+        mockMvc.perform(get(PATH_SHORTEN).param("originalUrl", URL)).andExpect(status().isNotFound());
+        mockMvc.perform(post(PATH_SHORTEN).param("originalUrl", URL).header("X-Api-Key", "campaign-tool"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,87 @@
+package com.ddorokhov.origin.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private final AtomicLong nanos = new AtomicLong(TimeUnit.DAYS.toNanos(1));
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void init() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRequestsPerSecond(2);
+        properties.setBurst(5);
+        properties.setIdleTimeout(Duration.ofMinutes(1));
+        rateLimiter = new RateLimiter(properties, nanos::get);
+    }
+
+    @Test
+    @DisplayName("A client may send a burst, then one request per emission interval")
+    void allowsBurstThenRate() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("10.0.0.1"));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), rateLimiter.tryAcquire("10.0.0.1"));
+        assertEquals(0, rateLimiter.tryAcquire("10.0.0.2"));
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, rateLimiter.tryAcquire("10.0.0.1"));
+        assertTrue(rateLimiter.tryAcquire("10.0.0.1") > 0);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("10.0.0.1"));
+        }
+        assertTrue(rateLimiter.tryAcquire("10.0.0.1") > 0);
+    }
+
+    @Test
+    @DisplayName("Idle clients are forgotten")
+    void evictsIdleClients() {
+        rateLimiter.tryAcquire("10.0.0.1");
+        rateLimiter.tryAcquire("10.0.0.2");
+        assertEquals(2, rateLimiter.trackedClients());
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertEquals(0, rateLimiter.trackedClients());
+    }
+
+    @Test
+    @DisplayName("Concurrent requests of one client never get more than the burst")
+    void exactUnderContention() throws Exception {
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> allowed = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                allowed.add(executor.submit(() -> {
+                    start.await();
+                    int count = 0;
+                    for (int i = 0; i < 1000; i++) {
+                        if (rateLimiter.tryAcquire("10.0.0.1") == 0) count++;
+                    }
+                    return count;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> count : allowed) total += count.get();
+            assertEquals(5, total);
+        }
+    }
+}
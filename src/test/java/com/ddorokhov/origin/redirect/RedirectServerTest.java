@@ -0,0 +1,95 @@
+package com.ddorokhov.origin.redirect;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlService;
+import com.ddorokhov.origin.analytics.ClickCounter;
+import com.ddorokhov.origin.cache.HotKeyTracker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static com.ddorokhov.origin.Constants.CACHE_SHORT_TO_ORIGINAL;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class RedirectServerTest {
+
+    @Autowired
+    private RedirectServer redirectServer;
+
+    @Autowired
+    private UrlService urlService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockitoSpyBean
+    private ClickCounter clickCounter;
+
+    @MockitoSpyBean
+    private HotKeyTracker hotKeyTracker;
+
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+    }
+
+    @Test
+    @DisplayName("Known code is redirected, counted and tracked as a hot key once each, on a cache miss and on a hit")
+    void redirect() throws Exception {
+        UrlEntity urlEntity = urlService.createOrGet("http://reactive.example.com/target").getBody();
+        String code = urlEntity.getShortCode();
+        cacheManager.getCache(CACHE_SHORT_TO_ORIGINAL).evict(code);
+
+        for (int i = 0; i < 2; i++) {
+            HttpResponse<String> response = send("/" + code);
+            assertEquals(302, response.statusCode());
+            assertEquals("http://reactive.example.com/target", response.headers().firstValue("Location").orElseThrow());
+            assertEquals("no-store", response.headers().firstValue("Cache-Control").orElseThrow());
+        }
+        verify(clickCounter, times(2)).record(code);
+        verify(hotKeyTracker, times(2)).record(code);
+    }
+
+    @Test
+    @DisplayName("Unknown code and paths that are not a code return 404")
+    void notFound() throws Exception {
+        assertEquals(404, send("/Unknwn").statusCode());
+        assertEquals(404, send("/Unknwn").statusCode());
+        assertEquals(404, send("/").statusCode());
+        assertEquals(404, send("/shorten/batch").statusCode());
+        assertEquals(404, send("/favicon.ico").statusCode());
+    }
+
+    @Test
+    @DisplayName("Query string does not prevent the redirect")
+    void queryIgnored() throws Exception {
+        UrlEntity urlEntity = urlService.createOrGet("http://reactive.example.com/query").getBody();
+
+        assertEquals(302, send("/" + urlEntity.getShortCode() + "?utm_source=mail").statusCode());
+    }
+
+    private HttpResponse<String> send(String path) throws Exception {
+        URI uri = URI.create("http://127.0.0.1:" + redirectServer.getPort() + path);
+        return client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
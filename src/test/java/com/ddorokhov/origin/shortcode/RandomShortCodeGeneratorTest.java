@@ -0,0 +1,49 @@
+package com.ddorokhov.origin.shortcode;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomShortCodeGeneratorTest {
+
+    private final RandomShortCodeGenerator generator = new RandomShortCodeGenerator(6);
+
+    @Test
+    @DisplayName("Generates alphanumeric codes of the configured length")
+    void generatesCodesOfConfiguredLength() {
+        String code = generator.next();
+
+        assertEquals(6, code.length());
+        assertFalse(generator.isCollisionFree());
+        for (char c : code.toCharArray()) {
+            assertTrue(Character.isLetterOrDigit(c));
+        }
+    }
+
+    @Test
+    @DisplayName("randomizeCase should return mixed-case alphanumeric string")
+    void randomizeCaseProducesValidOutput() {
+        String input = "abc123";
+        String result = generator.randomizeCase(input);
+
+        assertEquals(input.length(), result.length());
+
+        for (int i = 0; i < input.length(); i++) {
+            char original = input.charAt(i);
+            char actual = result.charAt(i);
+
+            if (Character.isDigit(original)) {
+                assertEquals(original, actual, "Digits should not be changed");
+            }
+
+            if (Character.isLetter(original)){
+                assertEquals(Character.toLowerCase(original), Character.toLowerCase(actual), "Letter content should match (ignoring case)");
+            }
+        }
+
+        for (char c : result.toCharArray()) {
+            assertTrue(Character.isLetterOrDigit(c), "Should only contain letters and digits");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.ddorokhov.origin.shortcode;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class SequenceShortCodeGeneratorTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:seq" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = spy(new JdbcTemplate(dataSource));
+    }
+
+    @Test
+    @DisplayName("Reserves one block of ids per round trip and never repeats a code")
+    void reservesBlocksAndProducesUniqueCodes() {
+        SequenceShortCodeGenerator generator = new SequenceShortCodeGenerator(jdbcTemplate, 6, 50, 42L);
+        Set<String> codes = new HashSet<>();
+
+        for (int i = 0; i < 500; i++) {
+            String code = generator.next();
+            assertEquals(6, code.length());
+            assertTrue(codes.add(code), "Duplicate code " + code);
+        }
+
+        assertTrue(generator.isCollisionFree());
+        verify(jdbcTemplate, times(10)).queryForObject(eq("SELECT NEXT VALUE FOR url_code_seq"), eq(Long.class));
+    }
+
+    @Test
+    @DisplayName("Instances sharing a sequence hand out disjoint codes")
+    void instancesShareSequence() {
+        SequenceShortCodeGenerator first = new SequenceShortCodeGenerator(jdbcTemplate, 6, 10, 42L);
+        SequenceShortCodeGenerator second = new SequenceShortCodeGenerator(jdbcTemplate, 6, 10, 42L);
+        Set<String> codes = new HashSet<>();
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(codes.add(first.next()));
+            assertTrue(codes.add(second.next()));
+        }
+    }
+
+    @Test
+    @DisplayName("Skipping past a used id restarts the sequence after its block")
+    void skipsPastUsedIds() {
+        SequenceShortCodeGenerator generator = new SequenceShortCodeGenerator(jdbcTemplate, 6, 10, 42L);
+        String first = generator.next();
+        assertEquals(0, generator.idOf(first));
+        assertEquals(-1, generator.idOf("abc"));
+
+        generator.skipPast(25);
+
+        assertEquals(30, generator.idOf(generator.next()));
+        generator.skipPast(5);
+        assertEquals(31, generator.idOf(generator.next()));
+    }
+
+    @Test
+    @DisplayName("Scrambler is a bijection on the code space")
+    void scramblerIsReversible() {
+        long space = Base62.space(2);
+        IdScrambler scrambler = new IdScrambler(space, 7L);
+        Set<Long> seen = new HashSet<>();
+
+        for (long id = 0; id < space; id++) {
+            long scrambled = scrambler.scramble(id);
+            assertTrue(scrambled >= 0 && scrambled < space);
+            assertTrue(seen.add(scrambled));
+            assertEquals(id, scrambler.unscramble(scrambled));
+        }
+    }
+
+    @Test
+    @DisplayName("Base62 encodes fixed width and decodes back")
+    void base62RoundTrip() {
+        assertEquals("000000", Base62.encode(0, 6));
+        assertEquals("zzzzzz", Base62.encode(Base62.space(6) - 1, 6));
+        assertEquals(123_456_789L, Base62.decode(Base62.encode(123_456_789L, 6)));
+        assertEquals(-1, Base62.decode("ab-c"));
+    }
+}
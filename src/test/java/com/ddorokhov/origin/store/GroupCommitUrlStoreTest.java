@@ -0,0 +1,107 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlWriteProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class GroupCommitUrlStoreTest {
+
+    private final UrlStore delegate = mock(UrlStore.class);
+    private GroupCommitUrlStore store;
+
+    @BeforeEach
+    void init() {
+        UrlWriteProperties.GroupCommit properties = new UrlWriteProperties.GroupCommit();
+        properties.setMaxBatchSize(64);
+        properties.setMaxDelay(Duration.ofMillis(200));
+        store = new GroupCommitUrlStore(delegate, properties, new SimpleMeterRegistry());
+        when(delegate.findAllByOriginalUrlIn(anyCollection())).thenReturn(List.of());
+        when(delegate.findAllByShortCodeIn(anyCollection())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void close() {
+        store.close();
+    }
+
+    @Test
+    @DisplayName("Concurrent creates are stored together and each caller learns its own result")
+    void batchesConcurrentInserts() throws Exception {
+        int callers = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+            for (int i = 0; i < callers; i++) {
+                String id = String.valueOf(i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return store.insertIfAbsent(new UrlEntity("code" + id, "https://example.com/" + id));
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        }
+
+        verify(delegate, atMost(4)).insertAll(anyCollection());
+        verify(delegate, never()).insertIfAbsent(any());
+    }
+
+    @Test
+    @DisplayName("Conflicting creates in a batch are answered as not inserted, the rest are stored")
+    void answersConflictsBeforeWriting() {
+        when(delegate.findAllByOriginalUrlIn(anyCollection()))
+                .thenReturn(List.of(new UrlEntity("stored", "https://example.com/stored")));
+        List<GroupCommitUrlStore.PendingInsert> batch = List.of(
+                pending("first1", "https://example.com/new"),
+                pending("second", "https://example.com/new"),
+                pending("third1", "https://example.com/stored"),
+                pending("first1", "https://example.com/other"));
+
+        store.write(batch);
+
+        assertEquals(List.of(true, false, false, false), batch.stream().map(p -> p.result().join()).toList());
+        verify(delegate).insertAll(List.of(batch.getFirst().urlEntity()));
+    }
+
+    @Test
+    @DisplayName("A failed batch is retried one by one, so a failing create fails alone")
+    void isolatesFailures() {
+        doThrow(new DataIntegrityViolationException("batch")).when(delegate).insertAll(anyCollection());
+        when(delegate.insertIfAbsent(new UrlEntity("good01", "https://example.com/good"))).thenReturn(true);
+        when(delegate.insertIfAbsent(new UrlEntity("bad001", "https://example.com/bad"))).thenThrow(new DataAccessResourceFailureException("down"));
+        List<GroupCommitUrlStore.PendingInsert> batch = List.of(
+                pending("good01", "https://example.com/good"),
+                pending("bad001", "https://example.com/bad"));
+
+        store.write(batch);
+
+        assertTrue(batch.get(0).result().join());
+        assertTrue(batch.get(1).result().isCompletedExceptionally());
+    }
+
+    private static GroupCommitUrlStore.PendingInsert pending(String shortCode, String originalUrl) {
+        return new GroupCommitUrlStore.PendingInsert(new UrlEntity(shortCode, originalUrl), new CompletableFuture<>());
+    }
+}
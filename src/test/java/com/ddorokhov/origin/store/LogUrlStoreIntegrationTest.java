@@ -0,0 +1,59 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.BatchShortenResult;
+import com.ddorokhov.origin.ShortUrls;
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlRepository;
+import com.ddorokhov.origin.UrlService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class LogUrlStoreIntegrationTest {
+
+    @TempDir
+    static Path directory;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("origin.store.engine", () -> "log");
+        registry.add("origin.store.log.directory", directory::toString);
+    }
+
+    @Autowired
+    private UrlService urlService;
+
+    @Autowired
+    private UrlStore urlStore;
+
+    @Autowired
+    private UrlRepository urlRepository;
+
+    @Test
+    @DisplayName("The service keeps its mappings in the log instead of the table")
+    void serviceUsesLog() {
+        UrlEntity created = urlService.createOrGet("http://log.example.com").getBody();
+        List<BatchShortenResult> batch = urlService.createOrGetAll(List.of("http://log.example.com/a", "http://log.example.com"));
+
+        assertInstanceOf(LogUrlStore.class, urlStore);
+        assertTrue(urlRepository.findById(created.getShortCode()).isEmpty());
+        assertEquals(created, urlStore.findByShortCode(created.getShortCode()).orElseThrow());
+        assertEquals(BatchShortenResult.Status.EXISTING, batch.get(1).getStatus());
+        assertTrue(urlStore.findByShortCode(ShortUrls.toCode(batch.get(0).getShortenedUrl())).isPresent());
+        assertEquals(created, urlService.getOriginal(created.getShortCode()).orElseThrow());
+
+        urlService.delete("http://log.example.com");
+        assertTrue(urlService.getOriginal(created.getShortCode()).isEmpty());
+        assertTrue(urlStore.findByOriginalUrl("http://log.example.com").isEmpty());
+    }
+}
@@ -0,0 +1,253 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.UrlEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class LogUrlStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private LogUrlStore store;
+
+    @AfterEach
+    void close() {
+        if (store != null) store.close();
+    }
+
+    private LogUrlStore open(int segmentBytes) throws IOException {
+        if (store != null) store.close();
+        StoreProperties.Log properties = new StoreProperties.Log();
+        properties.setDirectory(directory.toString());
+        properties.setSegmentSize(DataSize.ofBytes(segmentBytes));
+        store = LogUrlStore.open(properties);
+        return store;
+    }
+
+    @Test
+    @DisplayName("Finds mappings by code and URL, and rejects taken codes and URLs")
+    void insertsAndFinds() throws IOException {
+        open(4096);
+
+        assertTrue(store.insertIfAbsent(new UrlEntity("abc123", "https://example.com/a")));
+        assertFalse(store.insertIfAbsent(new UrlEntity("abc123", "https://example.com/b")));
+        assertFalse(store.insertIfAbsent(new UrlEntity("xyz789", "https://example.com/a")));
+
+        assertEquals("https://example.com/a", store.findByShortCode("abc123").orElseThrow().getOriginalUrl());
+        assertEquals("abc123", store.findByOriginalUrl("https://example.com/a").orElseThrow().getShortCode());
+        assertTrue(store.findByShortCode("xyz789").isEmpty());
+        assertEquals(1, store.count());
+    }
+
+    @Test
+    @DisplayName("Expiring mappings keep their expiry across a reopen and are deleted from the expiry index")
+    void expiresMappings() throws IOException {
+        open(4096);
+        Instant now = Instant.now();
+        store.insertIfAbsent(new UrlEntity("late01", "https://example.com/late", now.minusSeconds(10)));
+        store.insertIfAbsent(new UrlEntity("early1", "https://example.com/early", now.minusSeconds(20)));
+        store.insertIfAbsent(new UrlEntity("future", "https://example.com/future", now.plusSeconds(60)));
+        store.insertIfAbsent(new UrlEntity("never1", "https://example.com/never"));
+
+        open(4096);
+        assertEquals(now.plusSeconds(60).toEpochMilli(), store.findByShortCode("future").orElseThrow().getExpiresAt().toEpochMilli());
+        assertNull(store.findByShortCode("never1").orElseThrow().getExpiresAt());
+        List<UrlEntity> expired = store.findExpired(now, 10);
+        assertEquals(List.of("early1", "late01"), expired.stream().map(UrlEntity::getShortCode).toList());
+
+        assertEquals(2, store.deleteExpired(List.of(expired.get(0), expired.get(1),
+                new UrlEntity("future", "https://example.com/future")), now));
+        assertTrue(store.findExpired(now, 10).isEmpty());
+        assertEquals(2, store.count());
+
+        open(4096);
+        assertTrue(store.findByShortCode("early1").isEmpty());
+        assertEquals("https://example.com/future", store.findByShortCode("future").orElseThrow().getOriginalUrl());
+    }
+
+    @Test
+    @DisplayName("A batch with a taken code is rejected as a whole")
+    void insertAllIsAtomic() throws IOException {
+        open(4096);
+        store.insertIfAbsent(new UrlEntity("taken1", "https://example.com/taken"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> store.insertAll(List.of(
+                new UrlEntity("fresh1", "https://example.com/fresh"),
+                new UrlEntity("taken1", "https://example.com/other"))));
+
+        assertTrue(store.findByShortCode("fresh1").isEmpty());
+        assertEquals(1, store.count());
+    }
+
+    @Test
+    @DisplayName("Reopening replays inserts and deletes across segments")
+    void recoversAfterReopen() throws IOException {
+        open(256);
+        for (int i = 0; i < 20; i++) {
+            store.insertIfAbsent(new UrlEntity("code" + i, "https://example.com/" + i));
+        }
+        store.delete(new UrlEntity("code3", "https://example.com/3"));
+
+        open(256);
+
+        assertEquals(19, store.count());
+        assertTrue(store.findByShortCode("code3").isEmpty());
+        assertTrue(store.findByOriginalUrl("https://example.com/3").isEmpty());
+        assertEquals("https://example.com/19", store.findByShortCode("code19").orElseThrow().getOriginalUrl());
+        assertTrue(store.insertIfAbsent(new UrlEntity("code3", "https://example.com/3-again")));
+    }
+
+    @Test
+    @DisplayName("A torn record at the end of the log is dropped and overwritten")
+    void ignoresTornTail() throws IOException {
+        open(4096);
+        store.insertIfAbsent(new UrlEntity("first1", "https://example.com/first"));
+        store.insertIfAbsent(new UrlEntity("second", "https://example.com/second"));
+        store.close();
+        store = null;
+
+        Path segment = segmentFiles().getFirst();
+        byte[] bytes = Files.readAllBytes(segment);
+        int at = indexOf(bytes, "https://example.com/second".getBytes(StandardCharsets.UTF_8));
+        bytes[at] ^= 1;
+        Files.write(segment, bytes);
+
+        open(4096);
+        assertTrue(store.findByShortCode("second").isEmpty());
+        assertTrue(store.insertIfAbsent(new UrlEntity("third1", "https://example.com/third")));
+
+        open(4096);
+        assertEquals(Set.of("first1", "third1"), shortCodes());
+    }
+
+    @Test
+    @DisplayName("Compaction drops dead segments and keeps every live mapping")
+    void compactsDeadSegments() throws IOException {
+        open(256);
+        for (int i = 0; i < 40; i++) {
+            store.insertIfAbsent(new UrlEntity("code" + i, "https://example.com/" + i));
+        }
+        for (int i = 0; i < 40; i++) {
+            if (i % 10 != 0) store.delete(new UrlEntity("code" + i, "https://example.com/" + i));
+        }
+        int before = segmentFiles().size();
+
+        store.compact();
+
+        assertTrue(segmentFiles().size() < before, "No segment was compacted");
+        Set<String> expected = Set.of("code0", "code10", "code20", "code30");
+        assertEquals(expected, shortCodes());
+        open(256);
+        assertEquals(expected, shortCodes());
+        assertEquals("code20", store.findByOriginalUrl("https://example.com/20").orElseThrow().getShortCode());
+    }
+
+    @Test
+    @DisplayName("Compacted segments are unmapped, so their disk space is freed")
+    void unmapsCompactedSegments() throws IOException {
+        Path maps = Path.of("/proc/self/maps");
+        assumeTrue(Files.isReadable(maps), "Mappings are only listed on Linux");
+        open(256);
+        for (int i = 0; i < 40; i++) {
+            store.insertIfAbsent(new UrlEntity("code" + i, "https://example.com/" + i));
+            store.delete(new UrlEntity("code" + i, "https://example.com/" + i));
+        }
+        List<Path> before = segmentFiles();
+
+        store.compact();
+
+        List<Path> retired = new ArrayList<>(before);
+        retired.removeAll(segmentFiles());
+        assertFalse(retired.isEmpty(), "No segment was compacted");
+        String mapped = Files.readString(maps);
+        for (Path segment : retired) {
+            assertFalse(mapped.contains(segment.toString()), segment + " is still mapped");
+        }
+    }
+
+    @Test
+    @DisplayName("Deleting a stale entity leaves the mapping that replaced it")
+    void staleDeleteKeepsReplacement() throws IOException {
+        open(4096);
+        store.insertIfAbsent(new UrlEntity("reused", "https://example.com/old"));
+        store.delete(new UrlEntity("reused", "https://example.com/old"));
+        store.insertIfAbsent(new UrlEntity("reused", "https://example.com/new"));
+
+        store.delete(new UrlEntity("reused", "https://example.com/old"));
+
+        assertEquals("https://example.com/new", store.findByShortCode("reused").orElseThrow().getOriginalUrl());
+        open(4096);
+        assertEquals("https://example.com/new", store.findByShortCode("reused").orElseThrow().getOriginalUrl());
+    }
+
+    @Test
+    @DisplayName("A code deleted and reused keeps no index entry for its old URL once its tombstone is compacted away")
+    void reusedCodeSurvivesCompactionAndReopen() throws IOException {
+        open(256);
+        store.insertIfAbsent(new UrlEntity("reused", "https://example.com/old"));
+        for (int i = 0; i < 10; i++) {
+            store.insertIfAbsent(new UrlEntity("keep" + i, "https://example.com/keep/" + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            store.insertIfAbsent(new UrlEntity("temp" + i, "https://example.com/temp/" + i));
+        }
+        store.delete(new UrlEntity("reused", "https://example.com/old"));
+        for (int i = 0; i < 10; i++) {
+            store.delete(new UrlEntity("temp" + i, "https://example.com/temp/" + i));
+        }
+        store.insertIfAbsent(new UrlEntity("reused", "https://example.com/new"));
+        for (int i = 10; i < 20; i++) {
+            store.insertIfAbsent(new UrlEntity("keep" + i, "https://example.com/keep/" + i));
+        }
+
+        store.compact();
+        open(256);
+
+        assertEquals("https://example.com/new", store.findByShortCode("reused").orElseThrow().getOriginalUrl());
+        assertTrue(store.findByOriginalUrl("https://example.com/old").isEmpty());
+        assertEquals("reused", store.findByOriginalUrl("https://example.com/new").orElseThrow().getShortCode());
+        assertTrue(store.insertIfAbsent(new UrlEntity("other1", "https://example.com/old")));
+    }
+
+    private Set<String> shortCodes() {
+        Set<String> codes = new HashSet<>();
+        store.forEachShortCode(codes::add);
+        return codes;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.sorted().toList());
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        outer:
+        for (int i = 0; i <= bytes.length - part.length; i++) {
+            for (int j = 0; j < part.length; j++) {
+                if (bytes[i + j] != part[j]) continue outer;
+            }
+            return i;
+        }
+        throw new AssertionError("Not found");
+    }
+}
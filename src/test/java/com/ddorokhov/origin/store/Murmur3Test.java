@@ -0,0 +1,89 @@
+package com.ddorokhov.origin.store;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Murmur3Test {
+    /**
+     * Two URLs with the same hash: the second's last two blocks are solved backwards from the
+     * state the first one ends in.
+     */
+    static final String[] COLLIDING_URLS = {
+            "https://example.com/collisions/xaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa",
+            "https://example.com/collisions/xR2E=@f,~fIS-DCWEnp_VbIvewwvsXWZO"};
+
+    @Test
+    @DisplayName("Matches the MurmurHash3 x64 128 reference vector")
+    void matchesReferenceVector() {
+        ByteBuffer hash = ByteBuffer.wrap(Murmur3.hash("The quick brown fox jumps over the lazy dog"));
+
+        assertEquals(0xe34bbc7bbc071b6cL, hash.getLong());
+        assertEquals(0x7a433ca9c49a9347L, hash.getLong());
+    }
+
+    @Test
+    @DisplayName("Hashes the UTF-8 bytes of non-ASCII URLs")
+    void hashesUtf8Bytes() {
+        for (String url : new String[]{"", "http://a.b", "http://пример.рф/путь?q=значение", "http://例子.测试/😀/x", "http://example.com/" + "x".repeat(2000)}) {
+            assertArrayEquals(reference(url.getBytes(StandardCharsets.UTF_8)), Murmur3.hash(url), url);
+        }
+    }
+
+    @Test
+    @DisplayName("Colliding URLs can be computed")
+    void collisionsCanBeComputed() {
+        assertArrayEquals(Murmur3.hash(COLLIDING_URLS[0]), Murmur3.hash(COLLIDING_URLS[1]));
+    }
+
+    /**
+     * Straightforward block-wise MurmurHash3 x64 128 over a byte array.
+     */
+    private static byte[] reference(byte[] data) {
+        long c1 = 0x87c37b91114253d5L;
+        long c2 = 0x4cf5ad432745937fL;
+        long h1 = 0;
+        long h2 = 0;
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int blocks = data.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = buffer.getLong(i * 16);
+            long k2 = buffer.getLong(i * 16 + 8);
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        int tail = blocks * 16;
+        for (int i = data.length - 1; i >= tail; i--) {
+            long value = data[i] & 0xFFL;
+            int offset = i - tail;
+            if (offset >= 8) k2 |= value << (8 * (offset - 8));
+            else k1 |= value << (8 * offset);
+        }
+        int remaining = data.length - tail;
+        if (remaining > 8) { k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2; }
+        if (remaining > 0) { k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1; }
+        h1 ^= data.length; h2 ^= data.length;
+        h1 += h2; h2 += h1;
+        h1 = fmix(h1); h2 = fmix(h2);
+        h1 += h2; h2 += h1;
+        return ByteBuffer.allocate(16).putLong(h1).putLong(h2).array();
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
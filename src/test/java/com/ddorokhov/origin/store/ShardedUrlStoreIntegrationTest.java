@@ -0,0 +1,58 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.BatchShortenResult;
+import com.ddorokhov.origin.ShortUrls;
+import com.ddorokhov.origin.UrlEntity;
+import com.ddorokhov.origin.UrlRepository;
+import com.ddorokhov.origin.UrlService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ShardedUrlStoreIntegrationTest {
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("origin.store.engine", () -> "sharded");
+        for (int i = 0; i < 3; i++) {
+            String url = "jdbc:h2:mem:integration-shard-" + i + ";DB_CLOSE_DELAY=-1";
+            registry.add("origin.store.sharded.shards[%d].url".formatted(i), () -> url);
+        }
+    }
+
+    @Autowired
+    private UrlService urlService;
+
+    @Autowired
+    private UrlStore urlStore;
+
+    @Autowired
+    private UrlRepository urlRepository;
+
+    @Test
+    @DisplayName("The service keeps its mappings in the shards instead of the table")
+    void serviceUsesShards() {
+        UrlEntity created = urlService.createOrGet("http://shards.example.com").getBody();
+        List<BatchShortenResult> batch = urlService.createOrGetAll(List.of(
+                "http://shards.example.com/a", "http://shards.example.com/b", "http://shards.example.com"));
+
+        assertInstanceOf(ShardedUrlStore.class, urlStore);
+        assertTrue(urlRepository.findById(created.getShortCode()).isEmpty());
+        assertEquals(created, urlStore.findByShortCode(created.getShortCode()).orElseThrow());
+        assertEquals(BatchShortenResult.Status.EXISTING, batch.get(2).getStatus());
+        assertTrue(urlStore.findByShortCode(ShortUrls.toCode(batch.get(1).getShortenedUrl())).isPresent());
+        assertEquals(created, urlService.getOriginal(created.getShortCode()).orElseThrow());
+
+        urlService.delete("http://shards.example.com");
+        assertTrue(urlService.getOriginal(created.getShortCode()).isEmpty());
+        assertTrue(urlStore.findByOriginalUrl("http://shards.example.com").isEmpty());
+    }
+}
@@ -0,0 +1,194 @@
+package com.ddorokhov.origin.store;
+
+import com.ddorokhov.origin.Constants;
+import com.ddorokhov.origin.UrlEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedUrlStoreTest {
+
+    private final String databases = UUID.randomUUID().toString();
+    private final List<ShardedUrlStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        stores.forEach(ShardedUrlStore::close);
+    }
+
+    private ShardedUrlStore open(int shards, int previousShardCount) {
+        StoreProperties.Sharded properties = new StoreProperties.Sharded();
+        for (int i = 0; i < shards; i++) {
+            StoreProperties.Shard shard = new StoreProperties.Shard();
+            shard.setUrl("jdbc:h2:mem:" + databases + "-" + i + ";DB_CLOSE_DELAY=-1");
+            properties.getShards().add(shard);
+        }
+        properties.setPreviousShardCount(previousShardCount);
+        ShardedUrlStore store = ShardedUrlStore.open(properties);
+        stores.add(store);
+        return store;
+    }
+
+    private static List<UrlEntity> mappings(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new UrlEntity("code%03d".formatted(i), "https://example.com/page/" + i))
+                .toList();
+    }
+
+    @Test
+    @DisplayName("Growing the shard count only moves keys onto the new shards")
+    void jumpHashIsConsistent() {
+        int[] perShard = new int[4];
+        for (long key = 0; key < 10_000; key++) {
+            long hashed = ShardedUrlStore.keyOf("code" + key);
+            int three = ShardedUrlStore.jumpHash(hashed, 3);
+            int four = ShardedUrlStore.jumpHash(hashed, 4);
+            assertTrue(four == three || four == 3, "Key moved from " + three + " to " + four);
+            perShard[four]++;
+        }
+        for (int count : perShard) {
+            assertTrue(count > 2000 && count < 3000, "Unbalanced shard of " + count + " keys");
+        }
+    }
+
+    @Test
+    @DisplayName("Finds mappings by code and URL across shards, and rejects taken codes and URLs")
+    void insertsAndFinds() {
+        ShardedUrlStore store = open(3, 0);
+        List<UrlEntity> mappings = mappings(30);
+        mappings.forEach(urlEntity -> assertTrue(store.insertIfAbsent(urlEntity)));
+
+        assertFalse(store.insertIfAbsent(new UrlEntity("code000", "https://example.com/other")));
+        assertFalse(store.insertIfAbsent(new UrlEntity("fresh01", "https://example.com/page/1")));
+        assertTrue(store.findByShortCode("fresh01").isEmpty());
+
+        assertEquals("https://example.com/page/7", store.findByShortCode("code007").orElseThrow().getOriginalUrl());
+        assertEquals("code012", store.findByOriginalUrl("https://example.com/page/12").orElseThrow().getShortCode());
+        assertEquals(Set.copyOf(mappings), Set.copyOf(store.findAllByShortCodeIn(mappings.stream().map(UrlEntity::getShortCode).toList())));
+        assertEquals(Set.copyOf(mappings), Set.copyOf(store.findAllByOriginalUrlIn(mappings.stream().map(UrlEntity::getOriginalUrl).toList())));
+        assertEquals(30, store.count());
+        Set<String> codes = new HashSet<>();
+        store.forEachShortCode(codes::add);
+        assertEquals(30, codes.size());
+
+        store.delete(mappings.get(5));
+        assertTrue(store.findByOriginalUrl("https://example.com/page/5").isEmpty());
+        assertTrue(store.insertIfAbsent(new UrlEntity("again05", "https://example.com/page/5")));
+        assertEquals("again05", store.findByOriginalUrl("https://example.com/page/5").orElseThrow().getShortCode());
+    }
+
+    @Test
+    @DisplayName("A URL whose hash collides with a stored one takes over its route instead of failing")
+    void collidingUrlTakesOverRoute() {
+        ShardedUrlStore store = open(3, 0);
+        assertTrue(store.insertIfAbsent(new UrlEntity("crafted", Murmur3Test.COLLIDING_URLS[0])));
+
+        assertTrue(store.insertIfAbsent(new UrlEntity("target1", Murmur3Test.COLLIDING_URLS[1])));
+
+        assertEquals("target1", store.findByOriginalUrl(Murmur3Test.COLLIDING_URLS[1]).orElseThrow().getShortCode());
+        assertTrue(store.findByOriginalUrl(Murmur3Test.COLLIDING_URLS[0]).isEmpty());
+        assertEquals(Murmur3Test.COLLIDING_URLS[0], store.findByShortCode("crafted").orElseThrow().getOriginalUrl());
+    }
+
+    @Test
+    @DisplayName("A batch with a taken code or URL is rejected as a whole, on every shard")
+    void rejectsBatchAsWhole() {
+        ShardedUrlStore store = open(3, 0);
+        store.insertIfAbsent(new UrlEntity("taken01", "https://example.com/taken"));
+        List<UrlEntity> batch = new ArrayList<>(mappings(20));
+        batch.add(new UrlEntity("taken01", "https://example.com/new"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> store.insertAll(batch));
+        assertEquals(1, store.count());
+
+        List<UrlEntity> sameUrl = new ArrayList<>(mappings(20));
+        sameUrl.add(new UrlEntity("other01", "https://example.com/taken"));
+        assertThrows(DataIntegrityViolationException.class, () -> store.insertAll(sameUrl));
+        assertEquals(1, store.count());
+        assertTrue(store.findByOriginalUrl("https://example.com/page/3").isEmpty());
+
+        store.insertAll(mappings(20));
+        assertEquals(21, store.count());
+        assertEquals("code003", store.findByOriginalUrl("https://example.com/page/3").orElseThrow().getShortCode());
+    }
+
+    @Test
+    @DisplayName("Expired mappings of all shards are found earliest first and deleted with their routes")
+    void expiresMappings() {
+        ShardedUrlStore store = open(3, 0);
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        List<UrlEntity> expired = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            UrlEntity urlEntity = new UrlEntity("gone%03d".formatted(i), "https://example.com/gone/" + i, now.minusSeconds(100 - i));
+            store.insertIfAbsent(urlEntity);
+            expired.add(urlEntity);
+        }
+        store.insertIfAbsent(new UrlEntity("future1", "https://example.com/future", now.plusSeconds(60)));
+
+        List<UrlEntity> earliest = store.findExpired(now, 4);
+        assertEquals(expired.subList(0, 4), earliest);
+
+        assertEquals(10, store.deleteExpired(store.findExpired(now, 100), now));
+        assertEquals(1, store.count());
+        assertTrue(store.findByOriginalUrl("https://example.com/gone/3").isEmpty());
+        assertTrue(store.insertIfAbsent(new UrlEntity("back003", "https://example.com/gone/3")));
+    }
+
+    @Test
+    @DisplayName("After appending a shard, lookups fall back to the old layout until the rebalance moved the rows")
+    void rebalancesOntoNewShard() {
+        ShardedUrlStore two = open(2, 0);
+        List<UrlEntity> mappings = mappings(200);
+        two.insertAll(mappings);
+        two.close();
+
+        ShardedUrlStore three = open(3, 2);
+        assertEquals("https://example.com/page/42", three.findByShortCode("code042").orElseThrow().getOriginalUrl());
+        assertEquals(Set.copyOf(mappings), Set.copyOf(three.findAllByOriginalUrlIn(mappings.stream().map(UrlEntity::getOriginalUrl).toList())));
+        assertFalse(three.insertIfAbsent(new UrlEntity("fresh01", "https://example.com/page/42")));
+        three.delete(mappings.get(0));
+
+        long moved = three.rebalance();
+        assertTrue(moved > 0);
+        assertEquals(0, three.rebalance());
+
+        ShardedUrlStore balanced = open(3, 0);
+        assertEquals(199, balanced.count());
+        assertTrue(balanced.findByShortCode("code000").isEmpty());
+        for (UrlEntity urlEntity : mappings.subList(1, mappings.size())) {
+            assertEquals(urlEntity, balanced.findByOriginalUrl(urlEntity.getOriginalUrl()).orElseThrow());
+        }
+    }
+
+    @Test
+    @DisplayName("A URL too long for the column fails inserts and copies instead of being stored cut")
+    void rejectsOverlongUrls() {
+        UrlShard shard = new UrlShard(0, new DriverManagerDataSource("jdbc:h2:mem:" + databases + "-long;DB_CLOSE_DELAY=-1", "sa", ""));
+        shard.createSchema();
+        UrlEntity overlong = new UrlEntity("long001", "https://example.com/" + "a".repeat(Constants.ORIGINAL_URL_MAX_LENGTH));
+
+        assertThrows(DataIntegrityViolationException.class, () -> shard.insert(overlong));
+        assertThrows(DataIntegrityViolationException.class, () -> shard.copyAll(List.of(overlong)));
+        assertTrue(shard.find("long001").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Invalid shard settings are rejected")
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> open(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> open(2, 3));
+    }
+}